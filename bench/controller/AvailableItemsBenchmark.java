@@ -0,0 +1,70 @@
+package controller;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import model.Ingredient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.AvailableItems.AvailableIngredients;
+
+/**
+ * Measures looking up items of the list models by ID, which the views and
+ * the change events do all the time.
+ * 
+ * @author 217262
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AvailableItemsBenchmark {
+
+	private static final int INGREDIENTS = 10000;
+	private static final int RECIPES = 1000;
+
+	/**
+	 * Number of IDs looked up in turn, a power of two.
+	 */
+	private static final int LOOKUPS = 4096;
+
+	private AvailableIngredients ingredients;
+	/** IDs in random order, some of which do not exist. */
+	private int[] IDs;
+	private int next;
+
+	@Setup
+	public void setUp() throws SQLException {
+		System.setProperty(DatabaseConnector.DB_PATH_PROPERTY, CatalogGenerator
+				.toURL(CatalogGenerator.getDatabase(INGREDIENTS, RECIPES,
+						CatalogGenerator.DEFAULT_SEED)));
+		this.ingredients = AvailableIngredients.getInstance();
+		this.ingredients.reload().join();
+
+		Random random = new Random(CatalogGenerator.DEFAULT_SEED);
+		this.IDs = new int[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			// one in ten misses
+			this.IDs[i] = 1 + random.nextInt(INGREDIENTS + INGREDIENTS / 10);
+		}
+	}
+
+	@Benchmark
+	public Ingredient getItemByID() {
+		this.next = (this.next + 1) & (LOOKUPS - 1);
+		return this.ingredients.getItemByID(this.IDs[this.next]);
+	}
+}
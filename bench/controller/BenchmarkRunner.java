@@ -0,0 +1,60 @@
+package controller;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the main class of JMH does, taking the same
+ * options, but writes the results as JSON to {@link #DEFAULT_RESULT} unless
+ * told otherwise, so that runs can be compared to find regressions.
+ * 
+ * @author 217262
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * The file the results are written to by default.
+	 */
+	static final String DEFAULT_RESULT = "jmh-result.json";
+
+	/**
+	 * @param args
+	 *            the options of JMH, like a regular expression of the
+	 *            benchmarks to run, or <code>-h</code> for help
+	 */
+	public static void main(String[] args) throws RunnerException,
+			IOException {
+		CommandLineOptions commandLine;
+		try {
+			commandLine = new CommandLineOptions(args);
+		} catch (CommandLineOptionException e) {
+			System.err.println("Error parsing command line: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT);
+		}
+		Runner runner = new Runner(options.build());
+
+		if (commandLine.shouldHelp()) {
+			commandLine.showHelp();
+		} else if (commandLine.shouldList()) {
+			runner.list();
+		} else {
+			runner.run();
+		}
+	}
+}
@@ -0,0 +1,480 @@
+package controller;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import model.Amount;
+import model.Ingredient;
+import model.Recipe;
+import model.RecipeIngredients;
+import model.Unit;
+import controller.DatabaseConnector.DBConst;
+import controller.DatabaseConnector.DBConst.INGREDIENT_TABLE;
+import controller.DatabaseConnector.DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE;
+
+/**
+ * Generates synthetic catalogs of ingredients and recipes, either as model
+ * objects or as SQLite databases with the schema of <code>sipper.db</code>.
+ * The same seed always generates the same catalog. <br>
+ * Recipes have 2 to 10 ingredients, 4 on average unless told otherwise, and
+ * some ingredients are used much more often than others, as in real bars. <br>
+ * Run as a program, it writes a database of the given size, for example for
+ * the {@link LoadDriver}:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar controller.CatalogGenerator \
+ *     --ingredients 50000 --recipes 1000000 catalog.db
+ * </pre>
+ * 
+ * @author 217262
+ */
+class CatalogGenerator {
+
+	/**
+	 * The seed used unless told otherwise.
+	 */
+	static final long DEFAULT_SEED = 217262L;
+
+	/**
+	 * The average number of ingredients in a recipe unless told otherwise.
+	 */
+	static final double DEFAULT_MEAN_INGREDIENTS = 4;
+
+	/**
+	 * Part of the names of the generated databases, to be increased whenever
+	 * the generated catalogs change so that older databases are not reused.
+	 */
+	static final int GENERATOR_VERSION = 2;
+
+	/** The fewest ingredients in a recipe. */
+	static final int MIN_INGREDIENTS = 2;
+	/** The most ingredients in a recipe. */
+	static final int MAX_INGREDIENTS = 10;
+
+	/** The size of the catalog written by {@link #main(String[])}. */
+	private static final int DEFAULT_INGREDIENT_COUNT = 50000;
+	private static final int DEFAULT_RECIPE_COUNT = 1000000;
+
+	private static final String USAGE = "Usage: CatalogGenerator [options] file\n"
+			+ "  --ingredients N       number of ingredients (default "
+			+ DEFAULT_INGREDIENT_COUNT + ")\n"
+			+ "  --recipes N           number of recipes (default "
+			+ DEFAULT_RECIPE_COUNT + ")\n"
+			+ "  --mean-ingredients X  average ingredients in a recipe, "
+			+ MIN_INGREDIENTS + " to " + MAX_INGREDIENTS + " (default "
+			+ DEFAULT_MEAN_INGREDIENTS + ")\n"
+			+ "  --seed N              seed of the catalog (default "
+			+ DEFAULT_SEED + ")";
+
+	/**
+	 * The tables of <code>sipper.db</code>, which the application expects to
+	 * exist already.
+	 */
+	private static final String[] SCHEMA = {
+			"CREATE TABLE \"ingredients\" (\"ID\" INTEGER PRIMARY KEY ,\"name\" TEXT,"
+					+ "\"containerPrice\" DOUBLE,\"containerSizeValue\" DOUBLE,"
+					+ "\"containerSizeUnit\" TEXT,\"alcoholContent\" DOUBLE,"
+					+ "\"store\" TEXT, \"comment\" TEXT NOT NULL  DEFAULT \" \")",
+			"CREATE TABLE \"recipes\" (\"ID\" INTEGER PRIMARY KEY  AUTOINCREMENT ,"
+					+ " \"name\" TEXT NOT NULL  UNIQUE , \"instructions\" TEXT)",
+			"CREATE TABLE \"recipeIngredients\" (\"recipeID\" INTEGER  NOT NULL,"
+					+ "\"ingredientID\" INTEGER  NOT NULL,\"amountValue\" DOUBLE,"
+					+ "\"amountUnit\" TEXT, FOREIGN KEY(recipeID) REFERENCES"
+					+ " recipes(ID) ON DELETE CASCADE ON UPDATE CASCADE,"
+					+ " FOREIGN KEY(ingredientID) REFERENCES ingredients(ID)"
+					+ " ON DELETE CASCADE ON UPDATE CASCADE)",
+			"CREATE VIEW \"ingredientsToRecipes\" AS  SELECT recipes.name AS"
+					+ " recipeName, i.*, recipeIngredients.* FROM ingredients"
+					+ " AS i JOIN recipeIngredients ON"
+					+ " recipeIngredients.ingredientID = i.ID JOIN recipes ON"
+					+ " recipeIngredients.recipeID = recipes.ID" };
+
+	private static final String[] SPIRITS = { "Gin", "Vodka", "Rum", "Whisky",
+			"Tequila", "Brandy", "Vermouth", "Liqueur", "Bitters", "Juice",
+			"Syrup", "Tonic", "Soda", "Cream" };
+	private static final String[] STYLES = { "Dry", "Spiced", "Aged", "White",
+			"Dark", "Sweet", "Orange", "Lime", "Cherry", "Coffee", "Herbal",
+			"Smoked" };
+	private static final String[] STORES = { "Alko", "Super", "Tax-free",
+			"Market" };
+	private static final Unit[] CONTAINER_UNITS = { Unit.CL, Unit.L, Unit.ML };
+	private static final Unit[] RECIPE_UNITS = { Unit.CL, Unit.CL, Unit.OZ,
+			Unit.ML, Unit.TSP, Unit.DL };
+
+	/** Number of rows written to the database in one batch. */
+	private static final int BATCH_SIZE = 10000;
+
+	private final Random random;
+
+	/**
+	 * The chance of each of the optional ingredients being in a recipe.
+	 */
+	private final double extraIngredientChance;
+
+	/**
+	 * Creates a generator of the catalog of the given seed.
+	 * 
+	 * @param seed
+	 *            the seed of the random numbers
+	 */
+	CatalogGenerator(long seed) {
+		this(seed, DEFAULT_MEAN_INGREDIENTS);
+	}
+
+	/**
+	 * Creates a generator of the catalog of the given seed, with recipes of
+	 * the given size on average.
+	 * 
+	 * @param seed
+	 *            the seed of the random numbers
+	 * @param meanIngredients
+	 *            the average number of ingredients in a recipe, from
+	 *            {@link #MIN_INGREDIENTS} to {@link #MAX_INGREDIENTS}
+	 */
+	CatalogGenerator(long seed, double meanIngredients) {
+		if (!(meanIngredients >= MIN_INGREDIENTS
+				&& meanIngredients <= MAX_INGREDIENTS)) {
+			throw new IllegalArgumentException(
+					"Average number of ingredients must be from "
+							+ MIN_INGREDIENTS + " to " + MAX_INGREDIENTS + ": "
+							+ meanIngredients);
+		}
+		this.random = new Random(seed);
+		this.extraIngredientChance = (meanIngredients - MIN_INGREDIENTS)
+				/ (MAX_INGREDIENTS - MIN_INGREDIENTS);
+	}
+
+	/**
+	 * Generates an ingredient.
+	 * 
+	 * @param ID
+	 *            the ID of the ingredient, also making its name unique
+	 * @return the ingredient
+	 */
+	Ingredient newIngredient(int ID) {
+		String name = STYLES[this.random.nextInt(STYLES.length)] + " "
+				+ SPIRITS[this.random.nextInt(SPIRITS.length)] + " " + ID;
+		Unit unit = CONTAINER_UNITS[this.random.nextInt(CONTAINER_UNITS.length)];
+		double size = unit == Unit.L ? 1 : unit == Unit.CL ? 50 + 20 * this.random
+				.nextInt(3) : 200 + 50 * this.random.nextInt(10);
+		// whole cents
+		double price = (100 + this.random.nextInt(5000)) / 100.0;
+		// a fraction, from 5 % up to 60 %
+		double alcoholContent = this.random.nextInt(3) == 0 ? 0
+				: (5 + this.random.nextInt(56)) / 100.0;
+
+		return new Ingredient(ID, name, alcoholContent, new Amount(size, unit),
+				price, STORES[this.random.nextInt(STORES.length)], " ");
+	}
+
+	/**
+	 * Generates a list of ingredients with the IDs from 1 up.
+	 * 
+	 * @param count
+	 *            the number of ingredients
+	 * @return the ingredients
+	 */
+	List<Ingredient> newIngredients(int count) {
+		List<Ingredient> ingredients = new ArrayList<Ingredient>(count);
+		for (int i = 1; i <= count; i++) {
+			ingredients.add(this.newIngredient(i));
+		}
+		return ingredients;
+	}
+
+	/**
+	 * Generates a recipe using some of the given ingredients.
+	 * 
+	 * @param ID
+	 *            the ID of the recipe, also making its name unique
+	 * @param ingredients
+	 *            the ingredients to choose from
+	 * @return the recipe
+	 */
+	Recipe newRecipe(int ID, List<Ingredient> ingredients) {
+		return this.newRecipe(ID, ingredients, this.nextIngredientCount());
+	}
+
+	/**
+	 * Generates a recipe with the given number of ingredients.
+	 * 
+	 * @param ID
+	 *            the ID of the recipe, also making its name unique
+	 * @param ingredients
+	 *            the ingredients to choose from
+	 * @param count
+	 *            the number of ingredients in the recipe, at most the number
+	 *            to choose from
+	 * @return the recipe
+	 */
+	Recipe newRecipe(int ID, List<Ingredient> ingredients, int count) {
+		count = Math.min(count, ingredients.size());
+		RecipeIngredients recipeIngredients = new RecipeIngredients();
+		while (recipeIngredients.getRowCount() < count) {
+			// squaring skews the choice towards the first ingredients
+			double skewed = this.random.nextDouble();
+			skewed *= skewed;
+			Ingredient ingredient = ingredients.get((int) (skewed * ingredients
+					.size()));
+
+			if (!recipeIngredients.keySet().contains(ingredient)) {
+				Unit unit = RECIPE_UNITS[this.random
+						.nextInt(RECIPE_UNITS.length)];
+				recipeIngredients.put(ingredient, new Amount(
+						1 + this.random.nextInt(6), unit));
+			}
+		}
+
+		return new Recipe(ID, "Recipe " + ID, recipeIngredients,
+				"Shake with ice and strain.");
+	}
+
+	/**
+	 * @return a number of ingredients for a recipe, the minimum plus the
+	 *         number of optional ingredients chosen, each with the same
+	 *         chance. Most recipes are near the average, with a few short and
+	 *         long ones.
+	 */
+	private int nextIngredientCount() {
+		int count = MIN_INGREDIENTS;
+		for (int i = MIN_INGREDIENTS; i < MAX_INGREDIENTS; i++) {
+			if (this.random.nextDouble() < this.extraIngredientChance) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a new database with a generated catalog. The indexes are left to
+	 * the {@link SchemaMigrator}, which adds them when the database is first
+	 * opened by a {@link DatabaseConnector}.
+	 * 
+	 * @param file
+	 *            the database file, which must not exist yet
+	 * @param ingredientCount
+	 *            the number of ingredients
+	 * @param recipeCount
+	 *            the number of recipes
+	 * @throws SQLException
+	 *             if writing the database failed
+	 */
+	void writeDatabase(File file, int ingredientCount, int recipeCount)
+			throws SQLException {
+		try {
+			Class.forName("org.sqlite.JDBC");
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("SQLite driver not found", e);
+		}
+
+		Connection conn = DriverManager.getConnection(toURL(file));
+		try {
+			Statement stat = conn.createStatement();
+			for (String sql : SCHEMA) {
+				stat.executeUpdate(sql);
+			}
+			stat.close();
+
+			conn.setAutoCommit(false);
+			List<Ingredient> ingredients = this.newIngredients(ingredientCount);
+			this.writeIngredients(conn, ingredients);
+			this.writeRecipes(conn, ingredients, recipeCount);
+			conn.commit();
+		} finally {
+			conn.close();
+		}
+	}
+
+	/**
+	 * Writes the ingredients, in batches.
+	 */
+	private void writeIngredients(Connection conn, List<Ingredient> ingredients)
+			throws SQLException {
+		PreparedStatement prep = conn.prepareStatement(INGREDIENT_TABLE.INSERT);
+		try {
+			for (Ingredient ingredient : ingredients) {
+				prep.setInt(1, ingredient.getID());
+				prep.setString(2, ingredient.getName());
+				prep.setDouble(3, ingredient.getContainerPrize());
+				prep.setDouble(4, ingredient.getContainerSize().getQuantity());
+				prep.setString(5, ingredient.getContainerSize().getUnit()
+						.name());
+				prep.setDouble(6, ingredient.getAlcoholContent());
+				prep.setString(7, ingredient.getStore());
+				prep.setString(8, ingredient.getComment());
+				prep.addBatch();
+
+				if (ingredient.getID() % BATCH_SIZE == 0) {
+					prep.executeBatch();
+				}
+			}
+			prep.executeBatch();
+		} finally {
+			prep.close();
+		}
+	}
+
+	/**
+	 * Generates and writes the recipes one at a time, in batches.
+	 */
+	private void writeRecipes(Connection conn, List<Ingredient> ingredients,
+			int recipeCount) throws SQLException {
+		PreparedStatement recipePrep = conn
+				.prepareStatement(DBConst.RECIPE_TABLE.INSERT);
+		PreparedStatement ingredientPrep = conn
+				.prepareStatement(RECIPE_INGREDIENT_RELATIONSHIP_TABLE.INSERT);
+		try {
+			for (int ID = 1; ID <= recipeCount; ID++) {
+				Recipe recipe = this.newRecipe(ID, ingredients);
+
+				recipePrep.setInt(1, ID);
+				recipePrep.setString(2, recipe.getName());
+				recipePrep.setString(3, recipe.getInstructions());
+				recipePrep.addBatch();
+
+				for (Entry<Ingredient, Amount> entry : recipe.getIngredients()
+						.entrySet()) {
+					ingredientPrep.setInt(1, ID);
+					ingredientPrep.setInt(2, entry.getKey().getID());
+					ingredientPrep.setDouble(3, entry.getValue().getQuantity());
+					ingredientPrep.setString(4, entry.getValue().getUnit()
+							.name());
+					ingredientPrep.addBatch();
+				}
+
+				if (ID % BATCH_SIZE == 0) {
+					recipePrep.executeBatch();
+					ingredientPrep.executeBatch();
+				}
+			}
+			recipePrep.executeBatch();
+			ingredientPrep.executeBatch();
+		} finally {
+			recipePrep.close();
+			ingredientPrep.close();
+		}
+	}
+
+	/**
+	 * Gets a generated database of the given size, generating it only if it
+	 * has not been generated before. The databases are kept in the directory
+	 * <code>sipper-bench</code> of the temporary directory, and a database is
+	 * only moved there once it is complete.
+	 * 
+	 * @param ingredientCount
+	 *            the number of ingredients
+	 * @param recipeCount
+	 *            the number of recipes
+	 * @param seed
+	 *            the seed of the catalog
+	 * @return the database file
+	 * @throws SQLException
+	 *             if writing the database failed
+	 */
+	static File getDatabase(int ingredientCount, int recipeCount, long seed)
+			throws SQLException {
+		return getDatabase(ingredientCount, recipeCount,
+				DEFAULT_MEAN_INGREDIENTS, seed);
+	}
+
+	/**
+	 * Gets a generated database of the given size and recipe size, generating
+	 * it only if it has not been generated before.
+	 * 
+	 * @param ingredientCount
+	 *            the number of ingredients
+	 * @param recipeCount
+	 *            the number of recipes
+	 * @param meanIngredients
+	 *            the average number of ingredients in a recipe
+	 * @param seed
+	 *            the seed of the catalog
+	 * @return the database file
+	 * @throws SQLException
+	 *             if writing the database failed
+	 * @see #getDatabase(int, int, long)
+	 */
+	static File getDatabase(int ingredientCount, int recipeCount,
+			double meanIngredients, long seed) throws SQLException {
+		File directory = new File(System.getProperty("java.io.tmpdir"),
+				"sipper-bench");
+		File file = new File(directory, "catalog-v" + GENERATOR_VERSION + "-"
+				+ ingredientCount + "-" + recipeCount + "-" + meanIngredients + "-" + seed + ".db");
+		if (file.exists()) {
+			return file;
+		}
+
+		directory.mkdirs();
+		File partial = new File(directory, file.getName() + "."
+				+ System.nanoTime() + ".tmp");
+		new CatalogGenerator(seed, meanIngredients).writeDatabase(partial,
+				ingredientCount, recipeCount);
+		if (!partial.renameTo(file) && !file.exists()) {
+			throw new SQLException("Could not move " + partial + " to " + file);
+		}
+		partial.delete();
+		return file;
+	}
+
+	/**
+	 * @param file
+	 *            a database file
+	 * @return the JDBC URL of the database, for
+	 *         {@link DatabaseConnector#DB_PATH_PROPERTY}
+	 */
+	static String toURL(File file) {
+		return "jdbc:sqlite:" + file.getAbsolutePath();
+	}
+
+	/**
+	 * Writes a database with a generated catalog.
+	 * 
+	 * @param args
+	 *            the options, see {@link #USAGE}, and the database file,
+	 *            which must not exist yet
+	 */
+	public static void main(String[] args) throws SQLException {
+		File file;
+		int ingredientCount;
+		int recipeCount;
+		CatalogGenerator generator;
+		try {
+			CommandLine commandLine = new CommandLine(args, "ingredients",
+					"recipes", "mean-ingredients", "seed");
+			if (commandLine.getArguments().size() != 1) {
+				throw new IllegalArgumentException("Expected one file");
+			}
+			file = new File(commandLine.getArguments().get(0));
+			ingredientCount = commandLine.getInt("ingredients",
+					DEFAULT_INGREDIENT_COUNT);
+			recipeCount = commandLine.getInt("recipes", DEFAULT_RECIPE_COUNT);
+			generator = new CatalogGenerator(commandLine.getLong("seed",
+					DEFAULT_SEED), commandLine.getDouble("mean-ingredients",
+					DEFAULT_MEAN_INGREDIENTS));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+		if (file.exists()) {
+			System.err.println("File exists already: " + file);
+			System.exit(1);
+			return;
+		}
+
+		long start = System.nanoTime();
+		generator.writeDatabase(file, ingredientCount, recipeCount);
+		System.out.println("Wrote " + ingredientCount + " ingredients and "
+				+ recipeCount + " recipes to " + file + " in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
@@ -0,0 +1,136 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The command line of the programs run from the benchmarks, made of options
+ * like <code>--recipes 1000</code> followed by plain arguments.
+ * 
+ * @author 217262
+ */
+class CommandLine {
+
+	private static final String PREFIX = "--";
+
+	private final Map<String, String> options = new HashMap<String, String>();
+	private final List<String> arguments = new ArrayList<String>();
+
+	/**
+	 * Parses the command line.
+	 * 
+	 * @param args
+	 *            the command line
+	 * @param names
+	 *            the names of the options allowed, without the leading
+	 *            <code>--</code>
+	 * @throws IllegalArgumentException
+	 *             if there is an unknown option, or an option without a value
+	 */
+	CommandLine(String[] args, String... names) {
+		List<String> allowed = Arrays.asList(names);
+		int i = 0;
+		for (; i < args.length && args[i].startsWith(PREFIX); i++) {
+			String name = args[i].substring(PREFIX.length());
+			if (name.isEmpty()) {
+				// "--" ends the options
+				i++;
+				break;
+			}
+			if (!allowed.contains(name)) {
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("No value for " + args[i]);
+			}
+			this.options.put(name, args[++i]);
+		}
+		for (; i < args.length; i++) {
+			this.arguments.add(args[i]);
+		}
+	}
+
+	/**
+	 * @return the arguments after the options
+	 */
+	List<String> getArguments() {
+		return this.arguments;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the option
+	 * @param defaultValue
+	 *            the value if the option was not given
+	 * @return the value of the option
+	 */
+	String getString(String name, String defaultValue) {
+		String value = this.options.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the option
+	 * @param defaultValue
+	 *            the value if the option was not given
+	 * @return the value of the option
+	 * @throws IllegalArgumentException
+	 *             if the value is not a whole number
+	 */
+	int getInt(String name, int defaultValue) {
+		long value = this.getLong(name, defaultValue);
+		if (value != (int) value) {
+			throw new IllegalArgumentException("Too large: --" + name + " "
+					+ value);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the option
+	 * @param defaultValue
+	 *            the value if the option was not given
+	 * @return the value of the option
+	 * @throws IllegalArgumentException
+	 *             if the value is not a whole number
+	 */
+	long getLong(String name, long defaultValue) {
+		String value = this.options.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a whole number: --" + name
+					+ " " + value);
+		}
+	}
+
+	/**
+	 * @param name
+	 *            the name of the option
+	 * @param defaultValue
+	 *            the value if the option was not given
+	 * @return the value of the option
+	 * @throws IllegalArgumentException
+	 *             if the value is not a number
+	 */
+	double getDouble(String name, double defaultValue) {
+		String value = this.options.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a number: --" + name + " "
+					+ value);
+		}
+	}
+}
@@ -0,0 +1,550 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.SwingUtilities;
+
+import model.Ingredient;
+import model.Recipe;
+import model.RecipeIngredients;
+import controller.AvailableItems.AvailableIngredients;
+import controller.AvailableItems.AvailableRecipes;
+
+/**
+ * Replays a mixed workload of reads, edits and deletes against the
+ * {@link AvailableItems} of a large catalog without showing any windows, and
+ * reports the percentiles of their latencies. <br>
+ * The workload is made by one simulated user, who starts an operation once
+ * the last one has finished, the way the views use the lists:
+ * <ul>
+ * <li>a read looks up a random item by ID and prices it, timed on the EDT
+ * where the views do it</li>
+ * <li>an edit changes a random item and saves it in the background, timed
+ * from handing it to the EDT until the list has been updated</li>
+ * <li>a delete removes a random item in the background, timed the same way</li>
+ * </ul>
+ * Edits can also be queued for the {@link WriteBehindQueue} instead, in which
+ * case the user does not wait for them and they are timed until they have
+ * been written. <br>
+ * The catalog is generated with the {@link CatalogGenerator} unless a
+ * database is given, and the workload runs on a copy of it, so the same
+ * seeds always replay the same workload against the same catalog:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar controller.LoadDriver --recipes 100000
+ * </pre>
+ * 
+ * @author 217262
+ */
+public class LoadDriver {
+
+	/**
+	 * The kinds of operations in the workload.
+	 */
+	enum Operation {
+		READ, EDIT, DELETE
+	}
+
+	private static final int DEFAULT_INGREDIENT_COUNT = 50000;
+	private static final int DEFAULT_RECIPE_COUNT = 100000;
+	private static final int DEFAULT_OPERATIONS = 20000;
+	private static final int DEFAULT_WARMUP = 2000;
+	/** The weights of reads, edits and deletes. */
+	private static final String DEFAULT_MIX = "90,9,1";
+	private static final double DEFAULT_INGREDIENT_SHARE = 0.5;
+
+	private static final String USAGE = "Usage: LoadDriver [options]\n"
+			+ "  --db FILE             catalog to copy and use, instead of a generated one\n"
+			+ "  --ingredients N       ingredients of the generated catalog (default "
+			+ DEFAULT_INGREDIENT_COUNT + ")\n"
+			+ "  --recipes N           recipes of the generated catalog (default "
+			+ DEFAULT_RECIPE_COUNT + ")\n"
+			+ "  --mean-ingredients X  average ingredients in its recipes (default "
+			+ CatalogGenerator.DEFAULT_MEAN_INGREDIENTS + ")\n"
+			+ "  --seed N              seed of the catalog and the workload (default "
+			+ CatalogGenerator.DEFAULT_SEED + ")\n"
+			+ "  --operations N        operations measured (default "
+			+ DEFAULT_OPERATIONS + ")\n"
+			+ "  --warmup N            operations run before measuring (default "
+			+ DEFAULT_WARMUP + ")\n"
+			+ "  --mix R,E,D           weights of reads, edits and deletes (default "
+			+ DEFAULT_MIX + ")\n"
+			+ "  --ingredient-share X  share of operations on ingredients (default "
+			+ DEFAULT_INGREDIENT_SHARE + ")\n"
+			+ "  --queue-edits BOOL    queue edits for a group commit (default false)";
+
+	private final AvailableIngredients ingredients;
+	private final AvailableRecipes recipes;
+
+	private final Random random;
+	/** The weights of the operations, in the order of {@link Operation}. */
+	private final int[] mix;
+	private final double ingredientShare;
+	private final boolean queueEdits;
+
+	/**
+	 * The latencies of each operation, on ingredients and on recipes.
+	 */
+	private final Latencies[][] latencies = new Latencies[Operation.values().length][2];
+	/** Queued edits, which may not have been written yet. */
+	private final List<CompletableFuture<?>> queuedEdits = new ArrayList<CompletableFuture<?>>();
+	private int edits;
+
+	/**
+	 * Creates a driver of the lists of the catalog that the
+	 * {@link DatabaseConnector} opens, which it does here if it has not
+	 * already, so {@link DatabaseConnector#DB_PATH_PROPERTY} must be set
+	 * first.
+	 * 
+	 * @param seed
+	 *            the seed of the workload
+	 * @param mix
+	 *            the weights of the operations, in the order of
+	 *            {@link Operation}
+	 * @param ingredientShare
+	 *            the share of the operations on ingredients rather than
+	 *            recipes
+	 * @param queueEdits
+	 *            whether to queue edits rather than wait for each of them
+	 */
+	LoadDriver(long seed, int[] mix, double ingredientShare, boolean queueEdits) {
+		if (mix.length != Operation.values().length) {
+			throw new IllegalArgumentException("Expected "
+					+ Operation.values().length + " weights: "
+					+ Arrays.toString(mix));
+		}
+		this.ingredients = AvailableIngredients.getInstance();
+		this.recipes = AvailableRecipes.getInstance();
+		this.random = new Random(seed);
+		this.mix = mix;
+		this.ingredientShare = ingredientShare;
+		this.queueEdits = queueEdits;
+		for (Latencies[] operationLatencies : this.latencies) {
+			for (int i = 0; i < operationLatencies.length; i++) {
+				operationLatencies[i] = new Latencies();
+			}
+		}
+	}
+
+	/**
+	 * Loads both lists, reporting how long it took.
+	 */
+	void load() {
+		long start = System.nanoTime();
+		this.ingredients.reload().join();
+		long ingredientsLoaded = System.nanoTime();
+		this.recipes.reload().join();
+		long recipesLoaded = System.nanoTime();
+
+		System.out.println("Loaded " + this.ingredients.getSize()
+				+ " ingredients in " + (ingredientsLoaded - start) / 1000000
+				+ " ms and " + this.recipes.getSize() + " recipes in "
+				+ (recipesLoaded - ingredientsLoaded) / 1000000 + " ms");
+	}
+
+	/**
+	 * Runs operations of the workload one after another.
+	 * 
+	 * @param count
+	 *            the number of operations
+	 * @param measure
+	 *            whether to record their latencies
+	 * @return how long running them took, in nanoseconds
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the EDT
+	 * @throws InvocationTargetException
+	 *             if an operation failed on the EDT
+	 */
+	long run(int count, boolean measure) throws InterruptedException,
+			InvocationTargetException {
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			Step step = new Step(this.nextOperation(),
+					this.random.nextDouble() < this.ingredientShare);
+			final Latencies stepLatencies = measure ? this.latencies[step.operation
+					.ordinal()][step.onIngredient ? 0 : 1] : null;
+
+			final long stepStart = System.nanoTime();
+			SwingUtilities.invokeAndWait(step);
+			if (step.skipped) {
+				continue;
+			} else if (step.operation == Operation.READ) {
+				if (measure) {
+					stepLatencies.add(step.elapsed);
+				}
+			} else if (step.operation == Operation.EDIT && this.queueEdits) {
+				// the user does not wait for queued edits
+				this.queuedEdits.add(step.done.thenRun(new Runnable() {
+					@Override
+					public void run() {
+						if (stepLatencies != null) {
+							stepLatencies.add(System.nanoTime() - stepStart);
+						}
+					}
+				}));
+			} else {
+				step.done.join();
+				if (measure) {
+					stepLatencies.add(System.nanoTime() - stepStart);
+				}
+			}
+		}
+
+		this.ingredients.flushQueuedUpdates().join();
+		for (CompletableFuture<?> edit : this.queuedEdits) {
+			edit.join();
+		}
+		this.queuedEdits.clear();
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @return an operation chosen by the weights of the mix
+	 */
+	private Operation nextOperation() {
+		int total = 0;
+		for (int weight : this.mix) {
+			total += weight;
+		}
+		int choice = this.random.nextInt(total);
+		for (Operation operation : Operation.values()) {
+			choice -= this.mix[operation.ordinal()];
+			if (choice < 0) {
+				return operation;
+			}
+		}
+		throw new IllegalStateException("Weights changed: "
+				+ Arrays.toString(this.mix));
+	}
+
+	/**
+	 * Prints the latencies of the operations measured so far.
+	 * 
+	 * @param elapsed
+	 *            how long measuring took, in nanoseconds
+	 */
+	void report(long elapsed) {
+		System.out.println(String.format(Locale.ROOT,
+				"%-9s %-12s %8s %9s %9s %9s %9s %9s %9s", "operation",
+				"items", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+		int count = 0;
+		for (Operation operation : Operation.values()) {
+			for (int i = 0; i < 2; i++) {
+				Latencies operationLatencies = this.latencies[operation
+						.ordinal()][i];
+				if (operationLatencies.size() > 0) {
+					System.out.println(String.format(Locale.ROOT,
+							"%-9s %-12s %s", operation.name().toLowerCase(
+									Locale.ROOT), i == 0 ? "ingredients"
+									: "recipes", operationLatencies));
+					count += operationLatencies.size();
+				}
+			}
+		}
+		System.out.println(String.format(Locale.ROOT,
+				"Latencies in microseconds. %d operations in %d ms, %.1f"
+						+ " operations/s", count, elapsed / 1000000,
+				count * 1e9 / elapsed));
+	}
+
+	/**
+	 * One operation of the workload, run on the EDT like the views.
+	 */
+	private class Step implements Runnable {
+		private final Operation operation;
+		private final boolean onIngredient;
+		/** How long a read took. */
+		private long elapsed;
+		/** Whether there was nothing to operate on. */
+		private boolean skipped;
+		/** Completed once an edit or a delete is done. */
+		private CompletableFuture<?> done;
+
+		Step(Operation operation, boolean onIngredient) {
+			this.operation = operation;
+			this.onIngredient = onIngredient;
+		}
+
+		@Override
+		public void run() {
+			AvailableItems<?> items = this.onIngredient ? LoadDriver.this.ingredients
+					: LoadDriver.this.recipes;
+			if (items.getSize() == 0) {
+				// everything has been deleted
+				this.skipped = true;
+				return;
+			}
+
+			switch (this.operation) {
+				case READ:
+					long start = System.nanoTime();
+					this.read();
+					this.elapsed = System.nanoTime() - start;
+					break;
+				case EDIT:
+					this.done = this.onIngredient ? this.edit(LoadDriver.this.ingredients
+							.getElementAt(this.nextIndex(items)))
+							: this.edit(LoadDriver.this.recipes
+									.getElementAt(this.nextIndex(items)));
+					break;
+				case DELETE:
+					this.done = this.onIngredient ? LoadDriver.this.ingredients
+							.removeAsync(LoadDriver.this.ingredients
+									.getElementAt(this.nextIndex(items)))
+							: LoadDriver.this.recipes
+									.removeAsync(LoadDriver.this.recipes
+											.getElementAt(this.nextIndex(items)));
+					break;
+			}
+		}
+
+		/**
+		 * Looks up an item by ID, as many of the IDs as there are items, and
+		 * prices it the way the views show it.
+		 */
+		private void read() {
+			if (this.onIngredient) {
+				Ingredient ingredient = LoadDriver.this.ingredients
+						.getItemByID(1 + LoadDriver.this.random
+								.nextInt(LoadDriver.this.ingredients.getSize()));
+				if (ingredient != null) {
+					ingredient.getUnitPrice(ingredient.getContainerSize()
+							.getUnit());
+				}
+			} else {
+				Recipe recipe = LoadDriver.this.recipes
+						.getItemByID(1 + LoadDriver.this.random
+								.nextInt(LoadDriver.this.recipes.getSize()));
+				if (recipe != null) {
+					RecipeCostEngine.getInstance().getPrice(recipe);
+				}
+			}
+		}
+
+		/**
+		 * Saves a copy of the ingredient with a new price, which the recipes
+		 * using it have to follow.
+		 */
+		private CompletableFuture<Integer> edit(Ingredient ingredient) {
+			Ingredient edited = Ingredient.newInstance(ingredient);
+			edited.setContainerPrize((100 + LoadDriver.this.random
+					.nextInt(5000)) / 100.0);
+			edited.setComment("Edited " + ++LoadDriver.this.edits);
+			return LoadDriver.this.queueEdits ? LoadDriver.this.ingredients
+					.queueUpdate(edited) : LoadDriver.this.ingredients
+					.updateItemAsync(edited);
+		}
+
+		/**
+		 * Saves a copy of the recipe with new instructions.
+		 */
+		private CompletableFuture<Integer> edit(Recipe recipe) {
+			Recipe edited = new Recipe(recipe.getID(), recipe.getName(),
+					RecipeIngredients.newInstance(recipe.getIngredients()),
+					"Edited " + ++LoadDriver.this.edits);
+			return LoadDriver.this.queueEdits ? LoadDriver.this.recipes
+					.queueUpdate(edited) : LoadDriver.this.recipes
+					.updateItemAsync(edited);
+		}
+
+		private int nextIndex(AvailableItems<?> items) {
+			return LoadDriver.this.random.nextInt(items.getSize());
+		}
+	}
+
+	/**
+	 * The latencies recorded of one kind of operation. Queued edits are
+	 * recorded from other threads.
+	 */
+	static class Latencies {
+		private long[] values = new long[1024];
+		private int size;
+
+		/**
+		 * @param nanos
+		 *            a latency in nanoseconds
+		 */
+		synchronized void add(long nanos) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, 2 * this.size);
+			}
+			this.values[this.size++] = nanos;
+		}
+
+		/**
+		 * @return the number of latencies recorded
+		 */
+		synchronized int size() {
+			return this.size;
+		}
+
+		/**
+		 * @param sorted
+		 *            the recorded latencies in ascending order
+		 * @param fraction
+		 *            the fraction of latencies at most the percentile
+		 * @return the percentile, the smallest latency that is at least the
+		 *         given fraction of them
+		 */
+		private static long percentile(long[] sorted, double fraction) {
+			int index = (int) Math.ceil(fraction * sorted.length) - 1;
+			return sorted[Math.max(0, index)];
+		}
+
+		/**
+		 * @return the count, mean, percentiles and maximum in microseconds,
+		 *         in columns
+		 */
+		@Override
+		public synchronized String toString() {
+			long[] sorted = Arrays.copyOf(this.values, this.size);
+			Arrays.sort(sorted);
+			long sum = 0;
+			for (long value : sorted) {
+				sum += value;
+			}
+			return String.format(Locale.ROOT,
+					"%8d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f", this.size, sum
+							/ 1e3 / this.size,
+					percentile(sorted, 0.5) / 1e3,
+					percentile(sorted, 0.9) / 1e3,
+					percentile(sorted, 0.99) / 1e3,
+					percentile(sorted, 0.999) / 1e3,
+					sorted[sorted.length - 1] / 1e3);
+		}
+	}
+
+	/**
+	 * Parses the weights of the operations.
+	 * 
+	 * @param mix
+	 *            the weights separated by commas, in the order of
+	 *            {@link Operation}
+	 * @return the weights
+	 */
+	private static int[] parseMix(String mix) {
+		String[] parts = mix.split(",");
+		if (parts.length != Operation.values().length) {
+			throw new IllegalArgumentException("Expected "
+					+ Operation.values().length + " weights: " + mix);
+		}
+		int[] weights = new int[parts.length];
+		int total = 0;
+		for (int i = 0; i < parts.length; i++) {
+			try {
+				weights[i] = Integer.parseInt(parts[i].trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Not a weight: " + parts[i]);
+			}
+			if (weights[i] < 0) {
+				throw new IllegalArgumentException("Negative weight: "
+						+ weights[i]);
+			}
+			total += weights[i];
+		}
+		if (total == 0) {
+			throw new IllegalArgumentException("No operations in the mix: "
+					+ mix);
+		}
+		return weights;
+	}
+
+	/**
+	 * Copies the catalog to a temporary file, so that the workload leaves it
+	 * as it was.
+	 * 
+	 * @param catalog
+	 *            the database of the catalog
+	 * @return the copy, deleted on exit
+	 * @throws IOException
+	 *             if copying failed
+	 */
+	private static File copyCatalog(File catalog) throws IOException {
+		File copy = File.createTempFile("sipper-load-", ".db");
+		copy.deleteOnExit();
+		Files.copy(catalog.toPath(), copy.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		return copy;
+	}
+
+	/**
+	 * Runs the workload and reports its latencies.
+	 * 
+	 * @param args
+	 *            the options, see {@link #USAGE}
+	 */
+	public static void main(String[] args) throws SQLException, IOException,
+			InterruptedException, InvocationTargetException {
+		System.setProperty("java.awt.headless", "true");
+
+		File catalog;
+		long seed;
+		int operations;
+		int warmup;
+		int[] mix;
+		double ingredientShare;
+		boolean queueEdits;
+		try {
+			CommandLine commandLine = new CommandLine(args, "db",
+					"ingredients", "recipes", "mean-ingredients", "seed",
+					"operations", "warmup", "mix", "ingredient-share",
+					"queue-edits");
+			if (!commandLine.getArguments().isEmpty()) {
+				throw new IllegalArgumentException("Unexpected arguments: "
+						+ commandLine.getArguments());
+			}
+			seed = commandLine.getLong("seed", CatalogGenerator.DEFAULT_SEED);
+			operations = commandLine.getInt("operations", DEFAULT_OPERATIONS);
+			warmup = commandLine.getInt("warmup", DEFAULT_WARMUP);
+			mix = parseMix(commandLine.getString("mix", DEFAULT_MIX));
+			ingredientShare = commandLine.getDouble("ingredient-share",
+					DEFAULT_INGREDIENT_SHARE);
+			queueEdits = Boolean.parseBoolean(commandLine.getString(
+					"queue-edits", "false"));
+
+			String db = commandLine.getString("db", null);
+			if (db != null) {
+				catalog = new File(db);
+			} else {
+				int ingredientCount = commandLine.getInt("ingredients",
+						DEFAULT_INGREDIENT_COUNT);
+				int recipeCount = commandLine.getInt("recipes",
+						DEFAULT_RECIPE_COUNT);
+				double meanIngredients = commandLine.getDouble(
+						"mean-ingredients",
+						CatalogGenerator.DEFAULT_MEAN_INGREDIENTS);
+				System.out.println("Generating " + ingredientCount
+						+ " ingredients and " + recipeCount
+						+ " recipes unless generated before");
+				catalog = CatalogGenerator.getDatabase(ingredientCount,
+						recipeCount, meanIngredients, seed);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+
+		System.setProperty(DatabaseConnector.DB_PATH_PROPERTY,
+				CatalogGenerator.toURL(copyCatalog(catalog)));
+		LoadDriver driver = new LoadDriver(seed, mix, ingredientShare,
+				queueEdits);
+		driver.load();
+		driver.run(warmup, false);
+		driver.report(driver.run(operations, true));
+		// the EDT would keep running
+		System.exit(0);
+	}
+}
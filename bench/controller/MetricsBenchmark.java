@@ -0,0 +1,63 @@
+package controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the metrics on the calls they time, which has to stay
+ * well below the cost of the fastest of those calls.
+ * 
+ * @author 217262
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+	private final Metrics.Timer timer = Metrics.getInstance().timer(
+			"bench.timer");
+	private final Metrics.Counter counter = Metrics.getInstance().counter(
+			"bench.counter");
+
+	/**
+	 * Reading the clock twice, which any timing costs.
+	 */
+	@Benchmark
+	public long nanoTime() {
+		long start = System.nanoTime();
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Timing a call that does nothing.
+	 */
+	@Benchmark
+	public void timerStartStop() {
+		this.timer.stop(this.timer.start());
+	}
+
+	/**
+	 * Recording a time already measured.
+	 */
+	@Benchmark
+	public void timerRecord() {
+		this.timer.record(1234);
+	}
+
+	@Benchmark
+	public void counterIncrement() {
+		this.counter.increment();
+	}
+}
@@ -0,0 +1,139 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import model.Amount;
+import model.Ingredient;
+import model.Recipe;
+import model.RecipeIngredients;
+import model.Unit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the hot paths of the model: rendering the ingredients table of a
+ * recipe, pricing recipes, converting amounts and sorting items by name.
+ * 
+ * @author 217262
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+	/**
+	 * A generated recipe.
+	 */
+	@State(Scope.Benchmark)
+	public static class RecipeState {
+
+		/**
+		 * Number of ingredients in the recipe.
+		 */
+		@Param({ "4", "16" })
+		public int recipeSize;
+
+		Recipe recipe;
+		RecipeIngredients recipeIngredients;
+
+		@Setup
+		public void setUp() {
+			CatalogGenerator generator = new CatalogGenerator(
+					CatalogGenerator.DEFAULT_SEED);
+			this.recipe = generator.newRecipe(1,
+					generator.newIngredients(this.recipeSize * 4),
+					this.recipeSize);
+			this.recipeIngredients = this.recipe.getIngredients();
+		}
+	}
+
+	/**
+	 * Generated ingredients in random order.
+	 */
+	@State(Scope.Benchmark)
+	public static class SortState {
+
+		/**
+		 * Number of items sorted.
+		 */
+		@Param({ "1000" })
+		public int sortSize;
+
+		Ingredient[] unsorted;
+
+		@Setup
+		public void setUp() {
+			List<Ingredient> ingredients = new CatalogGenerator(
+					CatalogGenerator.DEFAULT_SEED).newIngredients(this.sortSize);
+			Collections.shuffle(ingredients, new Random(
+					CatalogGenerator.DEFAULT_SEED));
+			this.unsorted = ingredients.toArray(new Ingredient[this.sortSize]);
+		}
+	}
+
+	/**
+	 * An amount to convert, in fields so that the conversion is not folded
+	 * into a constant.
+	 */
+	@State(Scope.Benchmark)
+	public static class AmountState {
+		Amount amount = new Amount(4, Unit.OZ);
+		Unit unit = Unit.CL;
+	}
+
+	/**
+	 * Reads every cell of the ingredients table, like painting it does.
+	 */
+	@Benchmark
+	public void recipeIngredientsGetValueAt(RecipeState state,
+			Blackhole blackhole) {
+		RecipeIngredients recipeIngredients = state.recipeIngredients;
+		int rows = recipeIngredients.getRowCount();
+		int columns = recipeIngredients.getColumnCount();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				blackhole.consume(recipeIngredients.getValueAt(row, column));
+			}
+		}
+	}
+
+	@Benchmark
+	public double recipeGetPrice(RecipeState state) {
+		return state.recipe.getPrice();
+	}
+
+	@Benchmark
+	public double amountToUnit(AmountState state) {
+		return state.amount.toUnit(state.unit);
+	}
+
+	/**
+	 * Sorts items by {@link model.ListedItem#compareTo(model.ListedItem)},
+	 * like the lists do when they are loaded.
+	 */
+	@Benchmark
+	public List<Ingredient> sortByName(SortState state) {
+		List<Ingredient> list = new ArrayList<Ingredient>(
+				state.unsorted.length);
+		Collections.addAll(list, state.unsorted);
+		Collections.sort(list);
+		return list;
+	}
+}
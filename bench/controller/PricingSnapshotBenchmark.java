@@ -0,0 +1,121 @@
+package controller;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import model.Recipe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.AvailableItems.AvailableIngredients;
+import controller.AvailableItems.AvailableRecipes;
+
+/**
+ * Measures working out figures of every recipe of generated catalogs from a
+ * {@link PricingSnapshot}, against pricing every recipe of the list one at a
+ * time. The ingredients of the recipes are loaded before measuring, so the
+ * latter only measures walking the recipes.
+ * 
+ * @author 217262
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PricingSnapshotBenchmark {
+
+	/**
+	 * Number of ingredients in the catalog, whatever its number of recipes.
+	 */
+	private static final int INGREDIENTS = 5000;
+
+	@Param({ "10000", "100000" })
+	public int recipes;
+
+	private AvailableRecipes recipeList;
+	private PricingSnapshot snapshot;
+
+	@Setup
+	public void setUp() throws SQLException, InterruptedException,
+			InvocationTargetException {
+		System.setProperty(DatabaseConnector.DB_PATH_PROPERTY, CatalogGenerator
+				.toURL(CatalogGenerator.getDatabase(INGREDIENTS, this.recipes,
+						CatalogGenerator.DEFAULT_SEED)));
+		AvailableIngredients.getInstance().reload().join();
+		this.recipeList = AvailableRecipes.getInstance();
+		this.recipeList.reload().join();
+		final CompletableFuture<?>[] loaded = new CompletableFuture<?>[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				loaded[0] = PricingSnapshotBenchmark.this.recipeList
+						.loadAllIngredientsAsync();
+			}
+		});
+		loaded[0].join();
+		this.snapshot = this.createOnEDT();
+	}
+
+	/**
+	 * Creates a snapshot on the EDT, as it must be, and waits for it.
+	 */
+	private PricingSnapshot createOnEDT() throws InterruptedException,
+			InvocationTargetException {
+		final CompletableFuture<?>[] future = new CompletableFuture<?>[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				future[0] = PricingSnapshot.create();
+			}
+		});
+		return (PricingSnapshot) future[0].join();
+	}
+
+	/**
+	 * Copying the lists and reading the amounts of every recipe.
+	 */
+	@Benchmark
+	public PricingSnapshot createSnapshot() throws InterruptedException,
+			InvocationTargetException {
+		return this.createOnEDT();
+	}
+
+	@Benchmark
+	public double[] snapshotPrices() {
+		return this.snapshot.getPrices();
+	}
+
+	@Benchmark
+	public double[] snapshotAlcoholContents() {
+		return this.snapshot.getAlcoholContents();
+	}
+
+	/**
+	 * The prices of every recipe worked out from their ingredients, as
+	 * {@link Recipe#getPrice()} does.
+	 */
+	@Benchmark
+	public double[] recipePrices() {
+		double[] prices = new double[this.recipeList.getSize()];
+		for (int i = 0; i < prices.length; i++) {
+			prices[i] = this.recipeList.getElementAt(i).getPrice();
+		}
+		return prices;
+	}
+}
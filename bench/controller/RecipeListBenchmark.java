@@ -0,0 +1,90 @@
+package controller;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import model.Recipe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading the whole list of recipes, as done when the application
+ * starts, and loading the ingredients of every recipe in it afterwards, from
+ * generated catalogs of different sizes.
+ * Every size is run in a JVM of its own, since the {@link DatabaseConnector}
+ * is a singleton that opens its database only once.
+ * 
+ * @author 217262
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RecipeListBenchmark {
+
+	/**
+	 * Number of ingredients in the catalog, whatever its number of recipes.
+	 */
+	private static final int INGREDIENTS = 5000;
+
+	@Param({ "1000", "10000", "100000" })
+	public int recipes;
+
+	private DatabaseConnector database;
+
+	@Setup
+	public void setUp() throws SQLException {
+		System.setProperty(DatabaseConnector.DB_PATH_PROPERTY, CatalogGenerator
+				.toURL(CatalogGenerator.getDatabase(INGREDIENTS, this.recipes,
+						CatalogGenerator.DEFAULT_SEED)));
+		this.database = DatabaseConnector.getInstance();
+	}
+
+	/**
+	 * Loading the list alone, which leaves the ingredients to be loaded when
+	 * needed.
+	 */
+	@Benchmark
+	public ArrayList<Recipe> getAvailableRecipeList() {
+		return this.database.getAvailableRecipeList();
+	}
+
+	/**
+	 * Loading the list and then the ingredients of every recipe in the order
+	 * they are shown, like a user scrolling through all of them.
+	 */
+	@Benchmark
+	public ArrayList<Recipe> getAvailableRecipeListWithIngredients() {
+		ArrayList<Recipe> list = this.database.getAvailableRecipeList();
+		Collections.sort(list);
+		for (Recipe recipe : list) {
+			recipe.getIngredients();
+		}
+		return list;
+	}
+
+	/**
+	 * Loading the list and then the ingredients of every recipe in one pass,
+	 * as done for work on the whole catalog.
+	 */
+	@Benchmark
+	public ArrayList<Recipe> getAvailableRecipeListWithAllIngredients() {
+		ArrayList<Recipe> list = this.database.getAvailableRecipeList();
+		RecipeIngredientsLoader.loadAll(this.database, list);
+		return list;
+	}
+}
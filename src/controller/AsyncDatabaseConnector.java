@@ -0,0 +1,228 @@
+package controller;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import model.Ingredient;
+import model.Recipe;
+
+/**
+ * An asynchronous facade over {@link DatabaseConnector}. The calls are run on
+ * a single dedicated I/O thread, so that the event dispatch thread (EDT) never
+ * waits for SQLite, and their results are handed back on the EDT through
+ * {@link CompletableFuture}s. <br>
+ * Running all calls on one thread also keeps them in the order they were
+ * made, so a save followed by a reload sees the saved data. Change events of
+ * the database are fired on the I/O thread, and listeners (like
+ * {@link AvailableItems}) marshal their effects onto the EDT themselves with
+ * {@link #runOnEDT(Runnable)}. Since that happens before the call that caused
+ * the change completes, the lists have been patched by the time the future of
+ * the call completes.
+ * 
+ * @author 217262
+ */
+class AsyncDatabaseConnector {
+
+	/**
+	 * The singleton instance.
+	 */
+	private static final AsyncDatabaseConnector SINGLETON_INSTANCE = new AsyncDatabaseConnector();
+
+	/**
+	 * Runs tasks on the EDT with {@link #runOnEDT(Runnable)}. A future
+	 * completed on the EDT may already be complete when a thread other than
+	 * the EDT attaches an action to it, which then runs on the attaching
+	 * thread. Actions that must run on the EDT are attached with this
+	 * executor instead, like
+	 * <code>thenAcceptAsync(action, AsyncDatabaseConnector.EDT)</code>.
+	 */
+	static final Executor EDT = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			runOnEDT(task);
+		}
+	};
+
+	/**
+	 * The single thread doing all database work.
+	 */
+	private final ExecutorService ioExecutor;
+
+	/**
+	 * Singleton accessor.
+	 * 
+	 * @return the singleton instance
+	 */
+	static AsyncDatabaseConnector getInstance() {
+		return SINGLETON_INSTANCE;
+	}
+
+	/**
+	 * Private constructor that starts the I/O thread.
+	 */
+	private AsyncDatabaseConnector() {
+		this.ioExecutor = Executors
+				.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"Sipper database I/O");
+						// don't keep the application running after the window
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Runs a task on the I/O thread, after all tasks submitted before it.
+	 * 
+	 * @param task
+	 *            the task to run
+	 * @return a future completed on the EDT with the result of the task, or
+	 *         with the exception it threw
+	 */
+	<T> CompletableFuture<T> submit(final Callable<T> task) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		this.ioExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				completeOnEDT(future, task);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Runs a task off the EDT: right away on the calling thread if it is not
+	 * the EDT, otherwise on the I/O thread. Meant for work done in response to
+	 * events, which may be fired on either kind of thread.
+	 * 
+	 * @param task
+	 *            the task to run
+	 * @return a future completed on the EDT with the result of the task, or
+	 *         with the exception it threw. When called off the EDT, it may be
+	 *         complete before it is returned, so actions for the EDT are
+	 *         attached with {@link #EDT}.
+	 */
+	<T> CompletableFuture<T> callOffEDT(Callable<T> task) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			return this.submit(task);
+		}
+
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		completeOnEDT(future, task);
+		return future;
+	}
+
+	/**
+	 * Runs the task on the current thread and completes the future with its
+	 * outcome on the EDT.
+	 */
+	private static <T> void completeOnEDT(final CompletableFuture<T> future,
+			Callable<T> task) {
+		try {
+			final T result = task.call();
+			runOnEDT(new Runnable() {
+				@Override
+				public void run() {
+					future.complete(result);
+				}
+			});
+		} catch (final Exception e) {
+			e.printStackTrace();
+			runOnEDT(new Runnable() {
+				@Override
+				public void run() {
+					future.completeExceptionally(e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Runs a task on the EDT: right away if called on the EDT, otherwise after
+	 * all events already queued on it.
+	 * 
+	 * @param task
+	 *            the task to run
+	 */
+	static void runOnEDT(Runnable task) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			task.run();
+		} else {
+			SwingUtilities.invokeLater(task);
+		}
+	}
+
+	/**
+	 * @param recipe
+	 *            the recipe to save
+	 * @return the future ID of the saved recipe, -1 if saving failed
+	 * @see DatabaseConnector#updateRecipe(Recipe)
+	 */
+	CompletableFuture<Integer> updateRecipe(final Recipe recipe) {
+		return this.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return DatabaseConnector.getInstance().updateRecipe(recipe);
+			}
+		});
+	}
+
+	/**
+	 * @param ingredient
+	 *            the ingredient to save
+	 * @return the future ID of the saved ingredient, -1 if saving failed
+	 * @see DatabaseConnector#updateIngredient(Ingredient)
+	 */
+	CompletableFuture<Integer> updateIngredient(final Ingredient ingredient) {
+		return this.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return DatabaseConnector.getInstance().updateIngredient(
+						ingredient);
+			}
+		});
+	}
+
+	/**
+	 * @param recipe
+	 *            the recipe to remove
+	 * @return a future completed when the recipe has been removed
+	 * @see DatabaseConnector#removeRecipe(Recipe)
+	 */
+	CompletableFuture<Void> removeRecipe(final Recipe recipe) {
+		return this.submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				DatabaseConnector.getInstance().removeRecipe(recipe);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @param ingredient
+	 *            the ingredient to remove
+	 * @return a future completed when the ingredient has been removed
+	 * @see DatabaseConnector#removeIngredient(Ingredient)
+	 */
+	CompletableFuture<Void> removeIngredient(final Ingredient ingredient) {
+		return this.submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				DatabaseConnector.getInstance().removeIngredient(ingredient);
+				return null;
+			}
+		});
+	}
+}
@@ -5,15 +5,17 @@ package controller;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import javax.swing.AbstractListModel;
 import javax.swing.ListModel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
-import javax.swing.event.ListDataEvent;
-import javax.swing.event.ListDataListener;
 
 import model.Amount;
 import model.Ingredient;
@@ -35,9 +37,10 @@ public abstract class AvailableItems<T extends ListedItem> extends
 		AbstractListModel implements ChangeListener {
 
 	/**
-	 * The list that this class delegates requests to.
+	 * The list that this class delegates requests to. Always sorted, and
+	 * indexed by ID.
 	 */
-	protected List<T> availableList;
+	protected final SortedItemList<T> availableList = new SortedItemList<T>();
 
 	/**
 	 * Singleton instances created upon class loading.
@@ -50,16 +53,11 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	}
 
 	/**
-	 * A private constructor for prohibiting new instances to be created.
+	 * A private constructor for prohibiting new instances to be created. The
+	 * list is empty until it is loaded with {@link #reload()}.
 	 */
 	private AvailableItems() {
-		// add the sorter as a listener to always sort the list if it changes
-		this.addListDataListener(new ListSorter());
-
 		DatabaseConnector.getInstance().addChangeListener(this);
-
-		// refresh the list to initialize and sort it
-		this.refreshList();
 	}
 
 	/**
@@ -69,9 +67,235 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 */
 	protected abstract ArrayList<T> loadList();
 
-	private void refreshList() {
-		this.availableList = this.loadList();
-		this.fireContentsChanged(this, 0, this.availableList.size());
+	/**
+	 * Loads a single item from the database.
+	 * 
+	 * @param ID
+	 *            the ID of the item
+	 * @return the item, or <code>null</code> if there is no item with the ID
+	 */
+	protected abstract T loadItem(int ID);
+
+	/**
+	 * @return the kind of items in this list, for telling which
+	 *         {@link DatabaseChangeEvent}s concern the list
+	 */
+	abstract DatabaseChangeEvent.Kind getKind();
+
+	/**
+	 * Creates a new item with default values, not yet saved to the database.
+	 * 
+	 * @return the new item
+	 */
+	protected abstract T newEmptyItem();
+
+	/**
+	 * Reloads the whole list from the database in the background.
+	 * 
+	 * @return a future completed on the EDT once the list has been replaced
+	 */
+	public CompletableFuture<Void> reload() {
+		FlightEvents.ListRefresh event = new FlightEvents.ListRefresh();
+		return this.replaceList(AsyncDatabaseConnector.getInstance().submit(
+				this.newListLoader(event)), event);
+	}
+
+	/**
+	 * Creates a task loading the whole list, for running off the EDT.
+	 * 
+	 * @param event
+	 *            the event of the refresh, begun when loading begins
+	 * @return the task
+	 */
+	private Callable<ArrayList<T>> newListLoader(
+			final FlightEvents.ListRefresh event) {
+		return new Callable<ArrayList<T>>() {
+			@Override
+			public ArrayList<T> call() {
+				event.begin();
+				long start = System.nanoTime();
+				try {
+					return AvailableItems.this.loadList();
+				} finally {
+					long loadNanos = System.nanoTime() - start;
+					AvailableItems.this.timer("load").record(loadNanos);
+					event.loadNanos = loadNanos;
+				}
+			}
+		};
+	}
+
+	/**
+	 * Replaces the contents of the list with the loaded list, once it has been
+	 * loaded.
+	 * 
+	 * @param loadedList
+	 *            the list being loaded, completed on the EDT
+	 * @param event
+	 *            the event of the refresh, committed once the list has been
+	 *            replaced
+	 * @return a future completed once the list has been replaced
+	 */
+	private CompletableFuture<Void> replaceList(
+			CompletableFuture<ArrayList<T>> loadedList,
+			final FlightEvents.ListRefresh event) {
+		return loadedList.thenAcceptAsync(new Consumer<ArrayList<T>>() {
+			@Override
+			public void accept(ArrayList<T> list) {
+				AvailableItems.this.setList(list);
+
+				event.end();
+				if (event.shouldCommit()) {
+					event.kind = AvailableItems.this.getKind().name();
+					event.size = list.size();
+					event.commit();
+				}
+			}
+		}, AsyncDatabaseConnector.EDT);
+	}
+
+	/**
+	 * Gets a timer of refreshing this list. Refreshes are rare, so the timer is
+	 * looked up each time.
+	 * 
+	 * @param step
+	 *            the step of refreshing, <code>load</code> for loading the list
+	 *            off the EDT or <code>set</code> for replacing it on the EDT
+	 * @return the timer, named <code>list.</code> followed by the kind of the
+	 *         items and the step, like <code>list.recipe.load</code>
+	 */
+	private Metrics.Timer timer(String step) {
+		return Metrics.getInstance().timer(
+				"list." + this.getKind().name().toLowerCase(Locale.ROOT) + "."
+						+ step);
+	}
+
+	/**
+	 * Replaces the contents of the list, firing events about the change.
+	 * Must be called on the EDT.
+	 * 
+	 * @param list
+	 *            the new contents
+	 */
+	private void setList(ArrayList<T> list) {
+		Metrics.Timer timer = this.timer("set");
+		long start = timer.start();
+
+		int oldSize = this.availableList.size();
+		// sorts the whole list, the only time this is needed
+		this.availableList.setAll(list);
+		int newSize = this.availableList.size();
+
+		// report the change in size as well, so that views stay consistent
+		if (newSize < oldSize) {
+			this.fireIntervalRemoved(this, newSize, oldSize - 1);
+		} else if (newSize > oldSize) {
+			this.fireIntervalAdded(this, oldSize, newSize - 1);
+		}
+		if (newSize > 0 && oldSize > 0) {
+			this.fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+		}
+		this.listReplaced();
+
+		timer.stop(start);
+	}
+
+	/**
+	 * Called on the EDT once the whole list has been replaced. Does nothing by
+	 * default, subclasses keeping anything worked out from their items should
+	 * throw it away here.
+	 */
+	void listReplaced() {
+		// nothing is worked out from the items by default
+	}
+
+	/**
+	 * Patches the list to match a change to a single item in the database,
+	 * firing an event for exactly the affected indices. The item is loaded
+	 * off the EDT, and the list patched on the EDT.
+	 * 
+	 * @param change
+	 *            the change to a single item of the kind in this list
+	 */
+	private void applyChange(final DatabaseChangeEvent change) {
+		AsyncDatabaseConnector.getInstance().callOffEDT(new Callable<T>() {
+			@Override
+			public T call() {
+				if (change.getOperation() == DatabaseChangeEvent.Operation.DELETE) {
+					return null;
+				}
+				// get the item as it is stored now
+				return AvailableItems.this.loadItem(change.getID());
+			}
+		}).thenAcceptAsync(new Consumer<T>() {
+			@Override
+			public void accept(T item) {
+				if (item == null) {
+					// deleted, or deleted after all
+					AvailableItems.this.removeFromList(change.getID());
+				} else {
+					AvailableItems.this.putInList(item);
+				}
+				AvailableItems.this.itemPatched(change.getID(), item);
+			}
+		}, AsyncDatabaseConnector.EDT);
+	}
+
+	/**
+	 * Called on the EDT once the list has been patched to match a change to a
+	 * single item. Does nothing by default, subclasses keeping indexes of
+	 * their items should update them here.
+	 * 
+	 * @param ID
+	 *            ID number of the changed item
+	 * @param item
+	 *            the item as it is stored now, <code>null</code> if it has
+	 *            been deleted
+	 */
+	void itemPatched(int ID, T item) {
+		// nothing is indexed by default
+	}
+
+	/**
+	 * Replaces the list item with the same ID as the given item, or adds the
+	 * item if there is none. The item is placed in its sorted position.
+	 * 
+	 * @param item
+	 *            the item to put in the list
+	 */
+	void putInList(T item) {
+		int oldIndex = this.availableList.indexOfID(item.getID());
+		if (oldIndex >= 0) {
+			this.availableList.remove(oldIndex);
+		}
+
+		// insert in the sorted position
+		int newIndex = this.availableList.insert(item);
+
+		if (oldIndex == newIndex) {
+			// still in the same place, only the contents changed
+			this.fireContentsChanged(this, newIndex, newIndex);
+		} else {
+			// moved, or added if it wasn't in the list before
+			if (oldIndex >= 0) {
+				this.fireIntervalRemoved(this, oldIndex, oldIndex);
+			}
+			this.fireIntervalAdded(this, newIndex, newIndex);
+		}
+	}
+
+	/**
+	 * Removes the item with the given ID from the list, if there is one.
+	 * 
+	 * @param ID
+	 *            the ID of the item
+	 */
+	private void removeFromList(int ID) {
+		int index = this.availableList.indexOfID(ID);
+		if (index >= 0) {
+			this.availableList.remove(index);
+			this.fireIntervalRemoved(this, index, index);
+		}
 	}
 
 	/**
@@ -83,15 +307,25 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 *         contains no item with corresponding ID
 	 */
 	public T getItemByID(int ID) {
-		/* This method requires an iteration to fetch by ID. The other option
-		 * would have been a Map<ID, item>, but for sorting and fetching on
-		 * index Lists worked better. Performance hit should be negligible. */
-		for (T item : this.availableList) {
-			if (item.getID() == ID) {
-				return item;
-			}
+		/* The list is best for sorting and fetching on index, so it keeps a
+		 * separate index by ID in sync with it for fetching by ID. */
+		return this.availableList.getByID(ID);
+	}
+
+	/**
+	 * Gets the items with the specified IDs from the list.
+	 * 
+	 * @param IDs
+	 *            ID numbers of the items
+	 * @return the requested items in the same order as their IDs, with
+	 *         <code>null</code> in place of items not in the list
+	 */
+	public ArrayList<T> getItemsByIDs(int[] IDs) {
+		ArrayList<T> items = new ArrayList<T>(IDs.length);
+		for (int ID : IDs) {
+			items.add(this.availableList.getByID(ID));
 		}
-		return null;
+		return items;
 	}
 
 	/* (non-Javadoc)
@@ -114,7 +348,7 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 * return the return value. */
 
 	/**
-	 * Appends the specified item to this list.
+	 * Inserts the specified item in its sorted position in this list.
 	 * 
 	 * @param item
 	 *            item to added to the list
@@ -123,12 +357,11 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 */
 	public boolean add(T item) {
 
-		boolean result = this.availableList.add(item);
+		int index = this.availableList.insert(item);
 		// fire the added event
-		this.fireIntervalAdded(this, this.availableList.lastIndexOf(item),
-				this.availableList.lastIndexOf(item));
+		this.fireIntervalAdded(this, index, index);
 
-		return result;
+		return true;
 	}
 
 	/**
@@ -136,7 +369,19 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 * 
 	 * @return the ID of the created item
 	 */
-	public abstract int addEmptyItem();
+	public int addEmptyItem() {
+		return this.updateItem(this.newEmptyItem());
+	}
+
+	/**
+	 * Adds a new empty item to the list in the background.
+	 * 
+	 * @return the future ID of the created item, completed on the EDT once the
+	 *         item is in the list
+	 */
+	public CompletableFuture<Integer> addEmptyItemAsync() {
+		return this.updateItemAsync(this.newEmptyItem());
+	}
 
 	/**
 	 * @param o
@@ -156,14 +401,28 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 * @see java.util.List#remove(int)
 	 */
 	public T remove(int index) {
-		// store the result of removing from the list
-		T removed = this.availableList.remove(index);
-		// call the other remove method to propagate changes to database too
+		T removed = this.availableList.get(index);
+		/* call the other remove method to propagate changes to database, the
+		 * list is patched when the database announces the change */
 		this.remove(removed);
 
 		return removed;
 	}
 
+	/**
+	 * Tells what else removing an item would affect, for asking the user to
+	 * confirm the removal.
+	 * 
+	 * @param item
+	 *            the item to be removed
+	 * @return a warning about the items depending on the item, or
+	 *         <code>null</code> if nothing depends on it
+	 */
+	public String getRemovalWarning(T item) {
+		// nothing depends on items by default
+		return null;
+	}
+
 	/**
 	 * Removes the item from the list of available animals
 	 * 
@@ -173,6 +432,15 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 */
 	public abstract void remove(T item);
 
+	/**
+	 * Removes the item from the list of available items in the background.
+	 * 
+	 * @param item
+	 *            the item to remove
+	 * @return a future completed on the EDT once the item has been removed
+	 */
+	public abstract CompletableFuture<Void> removeAsync(T item);
+
 	/**
 	 * Updates the contents of the given argument to the list of available items
 	 * 
@@ -182,6 +450,42 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 */
 	public abstract int updateItem(T item);
 
+	/**
+	 * Saves the item to the database in the background, updating the list to
+	 * match.
+	 * 
+	 * @param item
+	 *            the item to save
+	 * @return the future ID of the item (new if item was added), completed on
+	 *         the EDT once the list has been updated
+	 */
+	public abstract CompletableFuture<Integer> updateItemAsync(T item);
+
+	/**
+	 * Queues saving the item, to be written together with other queued edits
+	 * in a group commit. Meant for bulk edits, where saving each item in a
+	 * transaction of its own would be slow. The list is updated once the item
+	 * has been written.
+	 * 
+	 * @param item
+	 *            the item to save
+	 * @return the future ID of the item (new if item was added), -1 if saving
+	 *         failed. It is completed on the thread writing the queue, not on
+	 *         the EDT.
+	 * @see WriteBehindQueue
+	 */
+	public abstract CompletableFuture<Integer> queueUpdate(T item);
+
+	/**
+	 * Writes all queued edits without waiting for more of them.
+	 * 
+	 * @return a future completed once the queued edits have been written
+	 * @see #queueUpdate(ListedItem)
+	 */
+	public CompletableFuture<Void> flushQueuedUpdates() {
+		return DatabaseConnector.getInstance().getWriteBehindQueue().flush();
+	}
+
 	// /**
 	// * @see java.util.List#set(int, java.lang.Object)
 	// */
@@ -209,8 +513,39 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 * ) */
 	@Override
 	public void stateChanged(ChangeEvent e) {
-		// Refresh the list from database since it apparently has changed.
-		this.refreshList();
+		/* Events are usually fired on the database thread, so the list is only
+		 * touched on the EDT. */
+		if (e instanceof DatabaseChangeEvent) {
+			final DatabaseChangeEvent change = (DatabaseChangeEvent) e;
+			if (change.getKind() == this.getKind()) {
+				// Patch only the changed item.
+				this.applyChange(change);
+			} else {
+				AsyncDatabaseConnector.runOnEDT(new Runnable() {
+					@Override
+					public void run() {
+						AvailableItems.this.relatedItemChanged(change);
+					}
+				});
+			}
+		} else {
+			// Refresh the list from database since it apparently has changed.
+			FlightEvents.ListRefresh event = new FlightEvents.ListRefresh();
+			this.replaceList(AsyncDatabaseConnector.getInstance().callOffEDT(
+					this.newListLoader(event)), event);
+		}
+	}
+
+	/**
+	 * Called on the EDT when an item of another kind than the ones in this
+	 * list has changed. Does nothing by default, subclasses with items
+	 * depending on other kinds of items should update them here.
+	 * 
+	 * @param change
+	 *            the change to the other item
+	 */
+	void relatedItemChanged(DatabaseChangeEvent change) {
+		// nothing depends on other items by default
 	}
 
 	/**
@@ -221,12 +556,31 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 */
 	public static class AvailableIngredients extends AvailableItems<Ingredient> {
 
+		/**
+		 * The most recipes named in the warning about removing an ingredient.
+		 */
+		private static final int REMOVAL_WARNING_RECIPES = 5;
+
 		@Override
 		protected ArrayList<Ingredient> loadList() {
 			return DatabaseConnector.getInstance()
 					.getAvailableIngredientsList();
 		}
 
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#loadItem(int) */
+		@Override
+		protected Ingredient loadItem(int ID) {
+			return DatabaseConnector.getInstance().getIngredient(ID);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#getKind() */
+		@Override
+		DatabaseChangeEvent.Kind getKind() {
+			return DatabaseChangeEvent.Kind.INGREDIENT;
+		}
+
 		/**
 		 * Gets the signleton instance of this class
 		 * 
@@ -237,29 +591,81 @@ public abstract class AvailableItems<T extends ListedItem> extends
 		}
 
 		/* (non-Javadoc)
-		 * @see controller.AvailableItems#addEmptyItem() */
+		 * @see controller.AvailableItems#newEmptyItem() */
 		@Override
-		public int addEmptyItem() {
-			// create a new ingredient, add it and return it
-			Ingredient newIngredient = new Ingredient(null, "New Ingredient",
-					0.0, new Amount(0, Unit.ML), 0.0, " ", " ");
+		protected Ingredient newEmptyItem() {
+			return new Ingredient(null, "New Ingredient", 0.0, new Amount(0,
+					Unit.ML), 0.0, " ", " ");
+		}
 
-			DatabaseConnector dbLoader = DatabaseConnector.getInstance();
-			int ID = dbLoader.updateIngredient(newIngredient);
+		/**
+		 * Lets the cost engine update the prices of the recipes using the
+		 * ingredient.
+		 */
+		@Override
+		void itemPatched(int ID, Ingredient item) {
+			RecipeCostEngine.getInstance().ingredientChanged(ID, item);
+		}
 
-			return ID;
+		/**
+		 * Any unit price may have changed, so the cost engine prices every
+		 * recipe again.
+		 */
+		@Override
+		void listReplaced() {
+			RecipeCostEngine.getInstance().clear(true);
+		}
+
+		/**
+		 * Warns about the recipes using the ingredient, which lose it when it
+		 * is removed.
+		 */
+		@Override
+		public String getRemovalWarning(Ingredient item) {
+			if (item.getID() == null) {
+				return null;
+			}
+			int[] recipeIDs = AvailableRecipes.getInstance().recipesUsing(
+					item.getID());
+			if (recipeIDs.length == 0) {
+				return null;
+			}
+
+			StringBuilder warning = new StringBuilder("'" + item.getName()
+					+ "' is used in " + recipeIDs.length
+					+ (recipeIDs.length == 1 ? " recipe" : " recipes") + ": ");
+			int named = 0;
+			for (int i = 0; i < recipeIDs.length
+					&& named < REMOVAL_WARNING_RECIPES; i++) {
+				Recipe recipe = AvailableRecipes.getInstance().getItemByID(
+						recipeIDs[i]);
+				if (recipe != null) {
+					warning.append(named == 0 ? "" : ", ").append(
+							recipe.getName());
+					named++;
+				}
+			}
+			if (named < recipeIDs.length) {
+				warning.append(" and ").append(recipeIDs.length - named)
+						.append(" more");
+			}
+			return warning.append(
+					".\nRemoving it removes it from them as well.").toString();
 		}
 
 		/* (non-Javadoc)
 		 * @see controller.AvailableItems#remove(model.ListedItem) */
 		@Override
 		public void remove(Ingredient item) {
-			// get index for event
-			int index = this.availableList.indexOf(item);
-			// save result
+			// the list is patched by the change event of the database
 			DatabaseConnector.getInstance().removeIngredient(item);
+		}
 
-			this.fireIntervalRemoved(this, index, index);
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#removeAsync(model.ListedItem) */
+		@Override
+		public CompletableFuture<Void> removeAsync(Ingredient item) {
+			return AsyncDatabaseConnector.getInstance().removeIngredient(item);
 		}
 
 		@Override
@@ -267,6 +673,21 @@ public abstract class AvailableItems<T extends ListedItem> extends
 			return DatabaseConnector.getInstance().updateIngredient(item);
 		}
 
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#updateItemAsync(model.ListedItem) */
+		@Override
+		public CompletableFuture<Integer> updateItemAsync(Ingredient item) {
+			return AsyncDatabaseConnector.getInstance().updateIngredient(item);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#queueUpdate(model.ListedItem) */
+		@Override
+		public CompletableFuture<Integer> queueUpdate(Ingredient item) {
+			return DatabaseConnector.getInstance().getWriteBehindQueue()
+					.updateIngredient(item);
+		}
+
 	}
 
 	/**
@@ -276,100 +697,271 @@ public abstract class AvailableItems<T extends ListedItem> extends
 	 */
 	public static class AvailableRecipes extends AvailableItems<Recipe> {
 
-		/* (non-Javadoc)
-		 * @see controller.AvailableItems#loadList() */
+		/**
+		 * The recipes using each ingredient, loaded after the list and patched
+		 * along with it.
+		 */
+		private final RecipeUsageIndex usageIndex = new RecipeUsageIndex();
+
+		/**
+		 * Loads the list, and queues loading the index of the recipes using
+		 * each ingredient next on the I/O thread. The list can then be shown
+		 * without waiting for the index, while later changes are still
+		 * patched in after it has been loaded.
+		 */
 		@Override
 		protected ArrayList<Recipe> loadList() {
-			return DatabaseConnector.getInstance().getAvailableRecipeList();
+			ArrayList<Recipe> list = DatabaseConnector.getInstance()
+					.getAvailableRecipeList();
+			AsyncDatabaseConnector.getInstance().submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					DatabaseConnector.getInstance().loadRecipeUsage(
+							AvailableRecipes.this.usageIndex);
+					return null;
+				}
+			});
+			return list;
 		}
 
 		/**
-		 * Gets the signleton instance of this class
+		 * Gets the recipes using an ingredient, without going through the
+		 * recipes. Takes time proportional to the number of recipes found.
+		 * Right after the list has been loaded, the answer may still come from
+		 * the previous load until the index has been loaded as well.
 		 * 
-		 * @return the singleton instance of this class
+		 * @param ingredientID
+		 *            ID number of the ingredient
+		 * @return the IDs of the recipes using the ingredient in ascending
+		 *         order, empty if there are none
 		 */
-		public static AvailableRecipes getInstance() {
-			return RECIPES_INSTANCE;
+		public int[] recipesUsing(int ingredientID) {
+			return this.usageIndex.recipesUsing(ingredientID);
 		}
 
-		/* (non-Javadoc)
-		 * @see controller.AvailableItems#addEmptyItem() */
+		/**
+		 * Keeps the index of the recipes using each ingredient up to date, and
+		 * lets the cost engine price the recipe again.
+		 */
 		@Override
-		public int addEmptyItem() {
-			// create a new recipe, add it and return it
-			Recipe newRecipe = new Recipe(null, "New Recipe",
-					new RecipeIngredients(), "");
-
-			DatabaseConnector dbLoader = DatabaseConnector.getInstance();
-			int ID = dbLoader.updateRecipe(newRecipe);
+		void itemPatched(int ID, Recipe item) {
+			if (item == null) {
+				this.usageIndex.removeRecipe(ID);
+			} else {
+				// loaded with its ingredients, since it was loaded alone
+				Set<Ingredient> ingredients = item.getIngredients().keySet();
+				int[] ingredientIDs = new int[ingredients.size()];
+				int i = 0;
+				for (Ingredient ingredient : ingredients) {
+					ingredientIDs[i++] = ingredient.getID();
+				}
+				this.usageIndex.setRecipe(ID, ingredientIDs);
+			}
+			RecipeCostEngine.getInstance().recipeChanged(ID);
+		}
 
-			return ID;
+		/**
+		 * The recipes are new instances, so the cost engine prices them again.
+		 */
+		@Override
+		void listReplaced() {
+			RecipeCostEngine.getInstance().clear(false);
 		}
 
 		/* (non-Javadoc)
-		 * @see controller.AvailableItems#remove(model.ListedItem) */
+		 * @see controller.AvailableItems#loadItem(int) */
 		@Override
-		public void remove(Recipe item) {
-			// get index for intervalremoved event
-			int index = this.availableList.indexOf(item);
-			// save result
-			DatabaseConnector.getInstance().removeRecipe(item);
+		protected Recipe loadItem(int ID) {
+			return DatabaseConnector.getInstance().getRecipe(ID);
+		}
 
-			this.fireIntervalRemoved(this, index, index);
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#getKind() */
+		@Override
+		DatabaseChangeEvent.Kind getKind() {
+			return DatabaseChangeEvent.Kind.RECIPE;
 		}
 
+		/**
+		 * Reloads the recipes using an ingredient that was updated or
+		 * deleted. They share their ingredients with the list of available
+		 * ingredients, but a changed ingredient is a new instance rather than
+		 * an update of the shared one. The recipes are found from the index
+		 * of the recipes using each ingredient, and those that have not
+		 * loaded their ingredients yet are left alone.
+		 */
 		@Override
-		public int updateItem(Recipe item) {
-			return DatabaseConnector.getInstance().updateRecipe(item);
+		void relatedItemChanged(DatabaseChangeEvent change) {
+			if (change.getOperation() == DatabaseChangeEvent.Operation.INSERT) {
+				// a new ingredient cannot be used by any recipe yet
+				return;
+			}
+
+			// find the affected recipes first, the list changes when patching
+			int[] usingIDs;
+			if (change.getOperation() == DatabaseChangeEvent.Operation.DELETE) {
+				// its uses were deleted along with it
+				usingIDs = this.usageIndex.removeIngredient(change.getID());
+			} else {
+				usingIDs = this.usageIndex.recipesUsing(change.getID());
+			}
+			final List<Integer> affectedIDs = new ArrayList<Integer>();
+			for (int ID : usingIDs) {
+				Recipe recipe = this.getItemByID(ID);
+				// the others will be loaded as they are now, when needed
+				if (recipe != null && recipe.hasIngredientsLoaded()) {
+					affectedIDs.add(ID);
+				}
+			}
+			if (affectedIDs.isEmpty()) {
+				return;
+			}
+
+			// reload them in the background and patch them in on the EDT
+			AsyncDatabaseConnector.getInstance()
+					.submit(new Callable<List<Recipe>>() {
+						@Override
+						public List<Recipe> call() {
+							List<Recipe> reloaded = new ArrayList<Recipe>();
+							for (int ID : affectedIDs) {
+								Recipe recipe = AvailableRecipes.this
+										.loadItem(ID);
+								if (recipe != null) {
+									reloaded.add(recipe);
+								}
+							}
+							return reloaded;
+						}
+					}).thenAccept(new Consumer<List<Recipe>>() {
+						@Override
+						public void accept(List<Recipe> reloaded) {
+							for (Recipe recipe : reloaded) {
+								AvailableRecipes.this.putInList(recipe);
+								AvailableRecipes.this.itemPatched(
+										recipe.getID(), recipe);
+							}
+						}
+					});
 		}
 
-	}
+		/**
+		 * Gets the signleton instance of this class
+		 * 
+		 * @return the singleton instance of this class
+		 */
+		public static AvailableRecipes getInstance() {
+			return RECIPES_INSTANCE;
+		}
 
-	/**
-	 * @author 217262
-	 */
-	private class ListSorter implements ListDataListener {
+		/**
+		 * Loads the ingredients of a recipe on the I/O thread, unless they
+		 * have been loaded already, so that the recipe can then be shown
+		 * without waiting for the database on the EDT. Must be called on the
+		 * EDT.
+		 * 
+		 * @param recipe
+		 *            a recipe of the list
+		 * @return a future completed on the EDT with the recipe once its
+		 *         ingredients have been loaded
+		 */
+		public CompletableFuture<Recipe> loadIngredientsAsync(
+				final Recipe recipe) {
+			if (recipe.hasIngredientsLoaded()) {
+				return CompletableFuture.completedFuture(recipe);
+			}
+			return AsyncDatabaseConnector.getInstance().submit(
+					new Callable<Recipe>() {
+						@Override
+						public Recipe call() {
+							recipe.getIngredients();
+							return recipe;
+						}
+					});
+		}
 
 		/**
-		 * Sorts the list of available items. May perform a check to see whether
-		 * sorting is needed, but may also sort every time if it is deemed safe.
+		 * Loads the ingredients of every recipe of the list that has not
+		 * loaded them yet, in one pass over the database on the I/O thread.
+		 * Meant for going through the whole list, where loading them recipe
+		 * by recipe would take a query per batch of recipes. Must be called
+		 * on the EDT.
 		 * 
-		 * @param source
-		 *            the event source, likely always <code>this</code> of the
-		 *            containing class
+		 * @return a future completed on the EDT once the ingredients have been
+		 *         loaded, or completed exceptionally if reading them failed
+		 */
+		public CompletableFuture<Void> loadAllIngredientsAsync() {
+			final ArrayList<Recipe> recipes = new ArrayList<Recipe>(
+					this.availableList);
+			return AsyncDatabaseConnector.getInstance().submit(
+					new Callable<Void>() {
+						@Override
+						public Void call() {
+							RecipeIngredientsLoader.loadAll(
+									DatabaseConnector.getInstance(), recipes);
+							return null;
+						}
+					});
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#newEmptyItem() */
+		@Override
+		protected Recipe newEmptyItem() {
+			// recipe names are unique, so number the new ones if needed
+			String name = "New Recipe";
+			for (int i = 2; this.containsName(name); i++) {
+				name = "New Recipe " + i;
+			}
+			return new Recipe(null, name, new RecipeIngredients(), "");
+		}
+
+		/**
+		 * @param name
+		 *            a recipe name
+		 * @return whether a recipe in the list has the name
 		 */
-		private void sortListIfNeeded(Object source) {
-			// private class, so other sources are unlikely, but check still
-			if (AvailableItems.this.equals(source)) {
-				Collections.sort(AvailableItems.this.availableList);
+		private boolean containsName(String name) {
+			for (Recipe recipe : this.availableList) {
+				if (recipe.getName().equals(name)) {
+					return true;
+				}
 			}
+			return false;
 		}
 
 		/* (non-Javadoc)
-		 * @see
-		 * javax.swing.event.ListDataListener#contentsChanged(javax.swing.event
-		 * .ListDataEvent) */
+		 * @see controller.AvailableItems#remove(model.ListedItem) */
 		@Override
-		public void contentsChanged(ListDataEvent e) {
-			this.sortListIfNeeded(e.getSource());
+		public void remove(Recipe item) {
+			// the list is patched by the change event of the database
+			DatabaseConnector.getInstance().removeRecipe(item);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.AvailableItems#removeAsync(model.ListedItem) */
+		@Override
+		public CompletableFuture<Void> removeAsync(Recipe item) {
+			return AsyncDatabaseConnector.getInstance().removeRecipe(item);
+		}
+
+		@Override
+		public int updateItem(Recipe item) {
+			return DatabaseConnector.getInstance().updateRecipe(item);
 		}
 
 		/* (non-Javadoc)
-		 * @see
-		 * javax.swing.event.ListDataListener#intervalAdded(javax.swing.event
-		 * .ListDataEvent) */
+		 * @see controller.AvailableItems#updateItemAsync(model.ListedItem) */
 		@Override
-		public void intervalAdded(ListDataEvent e) {
-			this.sortListIfNeeded(e.getSource());
+		public CompletableFuture<Integer> updateItemAsync(Recipe item) {
+			return AsyncDatabaseConnector.getInstance().updateRecipe(item);
 		}
 
 		/* (non-Javadoc)
-		 * @see
-		 * javax.swing.event.ListDataListener#intervalRemoved(javax.swing.event
-		 * .ListDataEvent) */
+		 * @see controller.AvailableItems#queueUpdate(model.ListedItem) */
 		@Override
-		public void intervalRemoved(ListDataEvent e) {
-			this.sortListIfNeeded(e.getSource());
+		public CompletableFuture<Integer> queueUpdate(Recipe item) {
+			return DatabaseConnector.getInstance().getWriteBehindQueue()
+					.updateRecipe(item);
 		}
 
 	}
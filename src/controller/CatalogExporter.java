@@ -0,0 +1,135 @@
+package controller;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the whole catalog of ingredients and recipes. The database is read
+ * with forward-only cursors and every item is written out as soon as it has
+ * been parsed, so the memory used does not grow with the size of the catalog.
+ * The output can be compressed with gzip as it is written.
+ * 
+ * @author 217262
+ * @see DatabaseConnector#exportCatalog(CatalogWriter)
+ */
+public class CatalogExporter {
+
+	/**
+	 * The formats the catalog can be exported in.
+	 */
+	public enum Format {
+		/** Comma separated values, see {@link CatalogWriter.CsvWriter} */
+		CSV(".csv"),
+		/** One JSON object per line, see {@link CatalogWriter.JsonLinesWriter} */
+		JSON_LINES(".jsonl"),
+		/** A compact binary format, see {@link CatalogWriter.BinaryWriter} */
+		BINARY(".bin");
+
+		private final String extension;
+
+		private Format(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * @return the extension of files in the format, like <code>.csv</code>
+		 */
+		public String getExtension() {
+			return this.extension;
+		}
+	}
+
+	/**
+	 * The extension of files compressed with gzip.
+	 */
+	public static final String GZIP_EXTENSION = ".gz";
+
+	/**
+	 * Exports the catalog to a file, in the format of its extension (see
+	 * {@link Format#getExtension()}), compressed if it has a further
+	 * <code>.gz</code> extension.
+	 * 
+	 * @param file
+	 *            the file to write
+	 * @return <code>false</code> if reading the database failed, in which case
+	 *         the file is incomplete
+	 * @throws IOException
+	 *             if writing the file failed
+	 */
+	public boolean exportFile(File file) throws IOException {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		boolean gzip = name.endsWith(GZIP_EXTENSION);
+		if (gzip) {
+			name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+		}
+
+		Format format = null;
+		for (Format candidate : Format.values()) {
+			if (name.endsWith(candidate.getExtension())) {
+				format = candidate;
+			}
+		}
+		if (format == null) {
+			throw new IllegalArgumentException("Unknown file type: "
+					+ file.getName());
+		}
+
+		OutputStream out = new FileOutputStream(file);
+		try {
+			return this.export(out, format, gzip);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Exports the catalog to a stream. The stream is flushed but not closed.
+	 * 
+	 * @param out
+	 *            the stream to write to
+	 * @param format
+	 *            the format to write in
+	 * @param gzip
+	 *            whether to compress the output with gzip
+	 * @return <code>false</code> if reading the database failed, in which case
+	 *         the output is incomplete
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	public boolean export(OutputStream out, Format format, boolean gzip)
+			throws IOException {
+		GZIPOutputStream compressed = null;
+		if (gzip) {
+			compressed = new GZIPOutputStream(out, CatalogWriter.BUFFER_SIZE);
+			out = compressed;
+		}
+
+		CatalogWriter writer;
+		switch (format) {
+			case CSV:
+				writer = new CatalogWriter.CsvWriter(out);
+				break;
+			case JSON_LINES:
+				writer = new CatalogWriter.JsonLinesWriter(out);
+				break;
+			case BINARY:
+				writer = new CatalogWriter.BinaryWriter(out);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown format: " + format);
+		}
+
+		boolean complete = DatabaseConnector.getInstance().exportCatalog(
+				writer);
+		writer.finish();
+		if (compressed != null) {
+			// write the trailer, leaving the stream open
+			compressed.finish();
+		}
+		return complete;
+	}
+}
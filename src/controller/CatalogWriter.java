@@ -0,0 +1,481 @@
+package controller;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import model.Amount;
+import model.Ingredient;
+import model.Recipe;
+
+/**
+ * Streaming writers of the catalog of ingredients and recipes, fed one item at
+ * a time by {@link DatabaseConnector#exportCatalog(CatalogWriter)}. Every
+ * recipe is followed by the ingredients in it, and nothing is kept in memory
+ * after it has been written. <br>
+ * The writers buffer their output, so the stream passed in needs no
+ * buffering of its own. {@link #finish()} flushes the output without closing
+ * the stream.
+ * 
+ * @author 217262
+ */
+abstract class CatalogWriter {
+
+	/**
+	 * Size of the output buffer in bytes.
+	 */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The encoding of the text formats.
+	 */
+	static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/**
+	 * Writes an ingredient.
+	 * 
+	 * @param ingredient
+	 *            the ingredient to write
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	abstract void writeIngredient(Ingredient ingredient) throws IOException;
+
+	/**
+	 * Writes a recipe, without its ingredients, which are written next.
+	 * 
+	 * @param recipe
+	 *            the recipe to write
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	abstract void writeRecipe(Recipe recipe) throws IOException;
+
+	/**
+	 * Writes an ingredient of the recipe written last.
+	 * 
+	 * @param recipeID
+	 *            ID of the recipe
+	 * @param ingredientID
+	 *            ID of the ingredient
+	 * @param amount
+	 *            the amount of the ingredient in the recipe
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	abstract void writeRecipeIngredient(int recipeID, int ingredientID,
+			Amount amount) throws IOException;
+
+	/**
+	 * Ends the output and flushes it.
+	 * 
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	abstract void finish() throws IOException;
+
+	/**
+	 * A writer of comma separated values (CSV) as described in RFC 4180. All
+	 * records share one row of field names, and the <code>record</code> field
+	 * tells what each row is: <code>ingredient</code>, <code>recipe</code> or
+	 * <code>recipeIngredient</code>. For the last, <code>id</code> is the ID
+	 * of the ingredient, <code>recipe</code> the ID of the recipe, and
+	 * <code>amount</code> and <code>unit</code> tell how much of it there is.
+	 * The ingredient fields are named like the fields read by
+	 * {@link IngredientImporter}, which imports the ingredient rows of an
+	 * export and skips the others by their <code>record</code> field.
+	 * 
+	 * @author 217262
+	 */
+	static class CsvWriter extends CatalogWriter {
+
+		private static final String[] FIELDS = {
+				IngredientImporter.RECORD_FIELD, "id",
+				IngredientImporter.NAME_FIELD, IngredientImporter.PRICE_FIELD,
+				IngredientImporter.SIZE_FIELD, IngredientImporter.UNIT_FIELD,
+				IngredientImporter.ALCOHOL_FIELD,
+				IngredientImporter.STORE_FIELD,
+				IngredientImporter.COMMENT_FIELD, "instructions", "recipe",
+				"amount" };
+
+		private final Writer out;
+		/** The values of the row being written, in the order of the fields. */
+		private final String[] row;
+
+		/**
+		 * Creates a writer of CSV, writing the row of field names.
+		 * 
+		 * @param out
+		 *            the stream to write to
+		 * @throws IOException
+		 *             if writing failed
+		 */
+		CsvWriter(OutputStream out) throws IOException {
+			this.out = new BufferedWriter(new OutputStreamWriter(out, ENCODING),
+					BUFFER_SIZE);
+			this.row = new String[FIELDS.length];
+
+			System.arraycopy(FIELDS, 0, this.row, 0, FIELDS.length);
+			this.writeRow();
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeIngredient(model.Ingredient) */
+		@Override
+		void writeIngredient(Ingredient ingredient) throws IOException {
+			this.row[0] = IngredientImporter.INGREDIENT_RECORD;
+			this.row[1] = String.valueOf(ingredient.getID());
+			this.row[2] = ingredient.getName();
+			this.row[3] = String.valueOf(ingredient.getContainerPrize());
+			this.row[4] = String.valueOf(ingredient.getContainerSize()
+					.getQuantity());
+			this.row[5] = ingredient.getContainerSize().getUnit().name();
+			this.row[6] = String.valueOf(ingredient.getAlcoholContent());
+			this.row[7] = ingredient.getStore();
+			this.row[8] = ingredient.getComment();
+			this.writeRow();
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeRecipe(model.Recipe) */
+		@Override
+		void writeRecipe(Recipe recipe) throws IOException {
+			this.row[0] = "recipe";
+			this.row[1] = String.valueOf(recipe.getID());
+			this.row[2] = recipe.getName();
+			this.row[9] = recipe.getInstructions();
+			this.writeRow();
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeRecipeIngredient(int, int,
+		 * model.Amount) */
+		@Override
+		void writeRecipeIngredient(int recipeID, int ingredientID,
+				Amount amount) throws IOException {
+			this.row[0] = "recipeIngredient";
+			this.row[1] = String.valueOf(ingredientID);
+			this.row[5] = amount.getUnit().name();
+			this.row[10] = String.valueOf(recipeID);
+			this.row[11] = String.valueOf(amount.getQuantity());
+			this.writeRow();
+		}
+
+		/**
+		 * Writes the row and clears it for the next one.
+		 */
+		private void writeRow() throws IOException {
+			for (int i = 0; i < this.row.length; i++) {
+				if (i > 0) {
+					this.out.write(',');
+				}
+				if (this.row[i] != null) {
+					this.writeField(this.row[i]);
+					this.row[i] = null;
+				}
+			}
+			this.out.write("\r\n");
+		}
+
+		/**
+		 * Writes a value, quoted if it has separators, quotes or line breaks.
+		 */
+		private void writeField(String value) throws IOException {
+			boolean quote = false;
+			for (int i = 0; i < value.length() && !quote; i++) {
+				char c = value.charAt(i);
+				quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+			}
+			if (!quote) {
+				this.out.write(value);
+				return;
+			}
+
+			this.out.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					this.out.write('"');
+				}
+				this.out.write(c);
+			}
+			this.out.write('"');
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#finish() */
+		@Override
+		void finish() throws IOException {
+			this.out.flush();
+		}
+	}
+
+	/**
+	 * A writer of JSON Lines: one object per line for each ingredient and
+	 * recipe, with a <code>type</code> of <code>ingredient</code> or
+	 * <code>recipe</code>. The ingredients of a recipe are in its
+	 * <code>ingredients</code> array, which is written as they come, so the
+	 * line of a recipe is only complete once the next item is written. The
+	 * ingredient fields are named like the fields read by
+	 * {@link IngredientImporter}, which imports the ingredient lines of an
+	 * export and skips the recipes by their <code>type</code>.
+	 * 
+	 * @author 217262
+	 */
+	static class JsonLinesWriter extends CatalogWriter {
+
+		private final Writer out;
+		/** Whether the line of a recipe is still open. */
+		private boolean inRecipe;
+		/** Whether the open recipe has had any ingredients written. */
+		private boolean hasIngredients;
+
+		/**
+		 * Creates a writer of JSON Lines.
+		 * 
+		 * @param out
+		 *            the stream to write to
+		 */
+		JsonLinesWriter(OutputStream out) {
+			this.out = new BufferedWriter(new OutputStreamWriter(out, ENCODING),
+					BUFFER_SIZE);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeIngredient(model.Ingredient) */
+		@Override
+		void writeIngredient(Ingredient ingredient) throws IOException {
+			this.endRecipe();
+			this.out.write("{\"type\":\"ingredient\",\"id\":");
+			this.out.write(String.valueOf(ingredient.getID()));
+			this.writeField(IngredientImporter.NAME_FIELD, ingredient.getName());
+			this.writeField(IngredientImporter.PRICE_FIELD,
+					ingredient.getContainerPrize());
+			this.writeField(IngredientImporter.SIZE_FIELD, ingredient
+					.getContainerSize().getQuantity());
+			this.writeField(IngredientImporter.UNIT_FIELD, ingredient
+					.getContainerSize().getUnit().name());
+			this.writeField(IngredientImporter.ALCOHOL_FIELD,
+					ingredient.getAlcoholContent());
+			this.writeField(IngredientImporter.STORE_FIELD,
+					ingredient.getStore());
+			this.writeField(IngredientImporter.COMMENT_FIELD,
+					ingredient.getComment());
+			this.out.write("}\n");
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeRecipe(model.Recipe) */
+		@Override
+		void writeRecipe(Recipe recipe) throws IOException {
+			this.endRecipe();
+			this.out.write("{\"type\":\"recipe\",\"id\":");
+			this.out.write(String.valueOf(recipe.getID()));
+			this.writeField("name", recipe.getName());
+			this.writeField("instructions", recipe.getInstructions());
+			this.out.write(",\"ingredients\":[");
+			this.inRecipe = true;
+			this.hasIngredients = false;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeRecipeIngredient(int, int,
+		 * model.Amount) */
+		@Override
+		void writeRecipeIngredient(int recipeID, int ingredientID,
+				Amount amount) throws IOException {
+			if (this.hasIngredients) {
+				this.out.write(',');
+			}
+			this.hasIngredients = true;
+			this.out.write("{\"id\":");
+			this.out.write(String.valueOf(ingredientID));
+			this.writeField("amount", amount.getQuantity());
+			this.writeField("unit", amount.getUnit().name());
+			this.out.write('}');
+		}
+
+		/**
+		 * Closes the line of the open recipe, if there is one.
+		 */
+		private void endRecipe() throws IOException {
+			if (this.inRecipe) {
+				this.out.write("]}\n");
+				this.inRecipe = false;
+			}
+		}
+
+		/**
+		 * Writes a number field after others.
+		 */
+		private void writeField(String name, double value) throws IOException {
+			this.out.write(",\"");
+			this.out.write(name);
+			this.out.write("\":");
+			this.out.write(String.valueOf(value));
+		}
+
+		/**
+		 * Writes a string field after others.
+		 */
+		private void writeField(String name, String value) throws IOException {
+			this.out.write(",\"");
+			this.out.write(name);
+			this.out.write("\":");
+			if (value == null) {
+				this.out.write("null");
+				return;
+			}
+
+			this.out.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+					case '"':
+						this.out.write("\\\"");
+						break;
+					case '\\':
+						this.out.write("\\\\");
+						break;
+					case '\n':
+						this.out.write("\\n");
+						break;
+					case '\r':
+						this.out.write("\\r");
+						break;
+					case '\t':
+						this.out.write("\\t");
+						break;
+					default:
+						if (c < 0x20) {
+							this.out.write(String.format("\\u%04x", (int) c));
+						} else {
+							this.out.write(c);
+						}
+				}
+			}
+			this.out.write('"');
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#finish() */
+		@Override
+		void finish() throws IOException {
+			this.endRecipe();
+			this.out.flush();
+		}
+	}
+
+	/**
+	 * A writer of a compact binary format. It starts with the bytes of
+	 * {@link #MAGIC} and the {@link #VERSION} of the format, followed by
+	 * records that each start with a tag byte:
+	 * <ul>
+	 * <li>{@link #INGREDIENT}: int ID, string name, double price, double
+	 * size, unit, double alcohol content, string store, string comment</li>
+	 * <li>{@link #RECIPE}: int ID, string name, string instructions</li>
+	 * <li>{@link #RECIPE_INGREDIENT}: int ID of the ingredient, double
+	 * amount, unit, for the recipe before it</li>
+	 * <li>{@link #END}: the end of the catalog</li>
+	 * </ul>
+	 * Numbers are big-endian as written by {@link DataOutputStream}. A string
+	 * is an int length followed by that many bytes of UTF-8, with a length of
+	 * -1 for <code>null</code>. A unit is a byte holding the ordinal of the
+	 * {@link model.Unit}, so units must only ever be added to the end of it.
+	 * 
+	 * @author 217262
+	 */
+	static class BinaryWriter extends CatalogWriter {
+
+		/** The first bytes of the output, "SIPR". */
+		static final int MAGIC = 0x53495052;
+		static final byte VERSION = 1;
+
+		static final byte END = 0;
+		static final byte INGREDIENT = 1;
+		static final byte RECIPE = 2;
+		static final byte RECIPE_INGREDIENT = 3;
+
+		private final DataOutputStream out;
+
+		/**
+		 * Creates a writer of the binary format, writing its header.
+		 * 
+		 * @param out
+		 *            the stream to write to
+		 * @throws IOException
+		 *             if writing failed
+		 */
+		BinaryWriter(OutputStream out) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(out,
+					BUFFER_SIZE));
+			this.out.writeInt(MAGIC);
+			this.out.writeByte(VERSION);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeIngredient(model.Ingredient) */
+		@Override
+		void writeIngredient(Ingredient ingredient) throws IOException {
+			this.out.writeByte(INGREDIENT);
+			this.out.writeInt(ingredient.getID());
+			this.writeString(ingredient.getName());
+			this.out.writeDouble(ingredient.getContainerPrize());
+			this.out.writeDouble(ingredient.getContainerSize().getQuantity());
+			this.out.writeByte(ingredient.getContainerSize().getUnit()
+					.ordinal());
+			this.out.writeDouble(ingredient.getAlcoholContent());
+			this.writeString(ingredient.getStore());
+			this.writeString(ingredient.getComment());
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeRecipe(model.Recipe) */
+		@Override
+		void writeRecipe(Recipe recipe) throws IOException {
+			this.out.writeByte(RECIPE);
+			this.out.writeInt(recipe.getID());
+			this.writeString(recipe.getName());
+			this.writeString(recipe.getInstructions());
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#writeRecipeIngredient(int, int,
+		 * model.Amount) */
+		@Override
+		void writeRecipeIngredient(int recipeID, int ingredientID,
+				Amount amount) throws IOException {
+			this.out.writeByte(RECIPE_INGREDIENT);
+			this.out.writeInt(ingredientID);
+			this.out.writeDouble(amount.getQuantity());
+			this.out.writeByte(amount.getUnit().ordinal());
+		}
+
+		/**
+		 * Writes a string of any length, unlike
+		 * {@link DataOutputStream#writeUTF(String)}.
+		 */
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				this.out.writeInt(-1);
+				return;
+			}
+			byte[] bytes = value.getBytes(ENCODING);
+			this.out.writeInt(bytes.length);
+			this.out.write(bytes);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.CatalogWriter#finish() */
+		@Override
+		void finish() throws IOException {
+			this.out.writeByte(END);
+			this.out.flush();
+		}
+	}
+}
@@ -0,0 +1,485 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A bounded pool of long-lived connections to the SQLite database. Opening a
+ * connection means loading the database file and warming up its page cache,
+ * so instead of opening a new connection for every query the
+ * {@link DatabaseConnector} checks connections out of this pool and returns
+ * them when done. <br>
+ * Connections are checked out per thread: a thread that already holds a
+ * connection gets the same one again, which lets nested calls (like parsing
+ * the ingredients of a recipe while the recipes are being parsed) share the
+ * connection of the outer call instead of taking another one. <br>
+ * SQLite only allows one writer at a time, and with a rollback journal a
+ * writer also shuts out all readers while committing. Rather than letting
+ * threads run into the busy timeout of SQLite (which the bundled native
+ * library waits out in steps of whole seconds), checkouts take a read or write
+ * lock so that readers and writers take turns within the application. When
+ * the database uses a write-ahead log, readers never block a writer or the
+ * other way around, so only writers take turns. <br>
+ * Every connection gets the settings of a {@link StorageProfile} when it is
+ * opened.
+ * 
+ * @author 217262
+ */
+class ConnectionPool {
+
+	/**
+	 * Default maximum number of open connections.
+	 */
+	static final int DEFAULT_MAX_CONNECTIONS = 4;
+	/**
+	 * How long a connection may sit idle before it is checked with a test
+	 * query on its next checkout.
+	 */
+	private static final long VALIDATION_INTERVAL_MILLIS = 30000;
+	/**
+	 * How long to wait for a connection to be returned when the pool is
+	 * exhausted.
+	 */
+	private static final long CHECKOUT_TIMEOUT_MILLIS = 30000;
+
+	private final String dbPath;
+	private final int maxConnections;
+	private final StorageProfile profile;
+
+	/**
+	 * Connections that are open but not checked out, most recently returned
+	 * first so that warm connections get used the most.
+	 */
+	private final LinkedBlockingDeque<PooledConnection> idleConnections;
+	/**
+	 * All open connections, checked out or not. Guarded by <code>this</code>.
+	 */
+	private final List<PooledConnection> openConnections;
+	/**
+	 * The connection currently checked out by each thread, if any.
+	 */
+	private final ThreadLocal<PooledConnection> checkouts;
+	/**
+	 * Lock coordinating readers and the single writer allowed at a time.
+	 */
+	private final ReentrantReadWriteLock lock;
+	/**
+	 * Whether the database uses a write-ahead log, letting readers work
+	 * without the read lock. Known once the first connection has been opened.
+	 */
+	private volatile boolean writeAheadLog;
+
+	/**
+	 * Hit and miss counters of the statement caches of all connections.
+	 */
+	private final AtomicLong statementCacheHits;
+	private final AtomicLong statementCacheMisses;
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a pool of connections to the given database. Connections are
+	 * opened lazily when first needed.
+	 * 
+	 * @param dbPath
+	 *            the JDBC url of the database
+	 * @param maxConnections
+	 *            the maximum number of connections to keep open at a time
+	 * @param profile
+	 *            the settings to apply to every opened connection
+	 */
+	ConnectionPool(String dbPath, int maxConnections, StorageProfile profile) {
+		this.dbPath = dbPath;
+		this.maxConnections = maxConnections;
+		this.profile = profile;
+		this.idleConnections = new LinkedBlockingDeque<PooledConnection>();
+		this.openConnections = new ArrayList<PooledConnection>();
+		this.checkouts = new ThreadLocal<PooledConnection>();
+		this.lock = new ReentrantReadWriteLock(true);
+		this.statementCacheHits = new AtomicLong();
+		this.statementCacheMisses = new AtomicLong();
+	}
+
+	/**
+	 * Checks out a connection for reading, waiting while another thread is
+	 * writing unless the database uses a write-ahead log. Must always be
+	 * paired with a call to {@link #release(Connection)}, preferably in a
+	 * <code>finally</code> block.
+	 * 
+	 * @return a connection to the database, the same one as the thread
+	 *         already holds if any
+	 * @throws SQLException
+	 *             if no connection could be opened or none became available
+	 *             in time
+	 */
+	Connection acquire() throws SQLException {
+		if (this.writeAheadLog) {
+			// a reader sees the last commit, whatever a writer is doing
+			return this.acquire(NoLock.INSTANCE);
+		}
+		return this.acquire(this.lock.readLock());
+	}
+
+	/**
+	 * Checks out a connection for writing, waiting until no other thread is
+	 * writing, or reading without a write-ahead log. Must always be paired
+	 * with a call to {@link #release(Connection)}.
+	 * 
+	 * @return a connection to the database, the same one as the thread
+	 *         already holds if any
+	 * @throws SQLException
+	 *             if no connection could be opened or none became available
+	 *             in time
+	 * @throws IllegalStateException
+	 *             if the thread already holds a connection for reading only,
+	 *             since waiting for the other readers would never end
+	 */
+	Connection acquireForWriting() throws SQLException {
+		if (this.lock.getReadHoldCount() > 0
+				&& !this.lock.isWriteLockedByCurrentThread()) {
+			throw new IllegalStateException(
+					"Cannot write while holding a connection for reading");
+		}
+		return this.acquire(this.lock.writeLock());
+	}
+
+	/**
+	 * Takes the given lock and checks out a connection, or reuses the one the
+	 * thread already holds.
+	 */
+	private Connection acquire(Lock checkoutLock) throws SQLException {
+		checkoutLock.lock();
+		try {
+			PooledConnection pooled = this.checkouts.get();
+
+			if (pooled == null) {
+				pooled = this.checkOut();
+				this.checkouts.set(pooled);
+			}
+			pooled.heldLocks.push(checkoutLock);
+
+			return pooled.connection;
+		} catch (SQLException e) {
+			checkoutLock.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a connection checked out by the current thread. The connection
+	 * goes back to the pool when the outermost checkout of the thread is
+	 * released.
+	 * 
+	 * @param connection
+	 *            the connection to return
+	 */
+	void release(Connection connection) {
+		PooledConnection pooled = this.checkouts.get();
+		if (pooled == null || pooled.connection != connection) {
+			throw new IllegalStateException(
+					"Connection is not checked out by this thread");
+		}
+
+		// Checkouts are nested, so this releases the one made last.
+		Lock checkoutLock = pooled.heldLocks.pop();
+
+		if (pooled.heldLocks.isEmpty()) {
+			this.checkouts.remove();
+			this.checkIn(pooled);
+		}
+
+		checkoutLock.unlock();
+	}
+
+	/**
+	 * Gets a prepared statement for the given SQL from the statement cache of
+	 * a connection checked out by the current thread. The statement is
+	 * prepared only the first time the SQL is used on the connection, and
+	 * must not be closed by the caller.
+	 * 
+	 * @param connection
+	 *            a connection checked out by the current thread
+	 * @param sql
+	 *            the SQL of the statement
+	 * @return a statement with all parameters cleared
+	 * @throws SQLException
+	 *             if the statement could not be prepared
+	 * @see StatementCache#prepare(String)
+	 */
+	PreparedStatement prepare(Connection connection, String sql)
+			throws SQLException {
+		PooledConnection pooled = this.checkouts.get();
+		if (pooled == null || pooled.connection != connection) {
+			throw new IllegalStateException(
+					"Connection is not checked out by this thread");
+		}
+		return pooled.statements.prepare(sql);
+	}
+
+	/**
+	 * @return the number of times a cached statement has been reused
+	 */
+	long getStatementCacheHits() {
+		return this.statementCacheHits.get();
+	}
+
+	/**
+	 * @return the number of times a statement has had to be prepared
+	 */
+	long getStatementCacheMisses() {
+		return this.statementCacheMisses.get();
+	}
+
+	/**
+	 * Closes all connections of the pool, when the application is shutting
+	 * down. No new checkouts are allowed, and connections still checked out
+	 * (like by a read running on the I/O thread) are waited for to be
+	 * returned, and closed then. Those not returned in time are closed under
+	 * their users.
+	 * 
+	 * @param timeoutMillis
+	 *            the longest time in milliseconds to wait for checked out
+	 *            connections
+	 */
+	void close(long timeoutMillis) {
+		this.closed = true;
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+
+		synchronized (this) {
+			try {
+				for (;;) {
+					PooledConnection idle;
+					while ((idle = this.idleConnections.pollFirst()) != null) {
+						this.discard(idle);
+					}
+					long left = deadline - System.currentTimeMillis();
+					if (this.openConnections.isEmpty() || left <= 0) {
+						break;
+					}
+					// woken up by discard() as connections are returned
+					this.wait(left);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			for (PooledConnection pooled : this.openConnections) {
+				this.closeQuietly(pooled);
+			}
+			this.openConnections.clear();
+		}
+	}
+
+	/**
+	 * Gets a healthy connection from the idle ones, opens a new one if there
+	 * is room in the pool, or waits for one to be returned.
+	 */
+	private PooledConnection checkOut() throws SQLException {
+		if (this.closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+
+		PooledConnection pooled;
+		while ((pooled = this.idleConnections.pollFirst()) != null) {
+			if (this.isHealthy(pooled)) {
+				return pooled;
+			}
+			this.discard(pooled);
+		}
+
+		pooled = this.openIfRoom();
+		if (pooled != null) {
+			return pooled;
+		}
+
+		// The pool is exhausted, wait for a connection to be returned.
+		try {
+			pooled = this.idleConnections.pollFirst(CHECKOUT_TIMEOUT_MILLIS,
+					TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for connection");
+		}
+		if (pooled == null) {
+			throw new SQLException("Timed out waiting for a connection");
+		}
+		if (!this.isHealthy(pooled)) {
+			this.discard(pooled);
+			return this.checkOut();
+		}
+		return pooled;
+	}
+
+	/**
+	 * Puts a connection back among the idle ones, making sure that it is not
+	 * left in the middle of a transaction.
+	 */
+	private void checkIn(PooledConnection pooled) {
+		try {
+			if (!pooled.connection.getAutoCommit()) {
+				// An unfinished transaction must not leak to the next user.
+				pooled.connection.rollback();
+				pooled.connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			this.discard(pooled);
+			return;
+		}
+
+		if (this.closed) {
+			this.discard(pooled);
+		} else {
+			pooled.lastUsed = System.currentTimeMillis();
+			this.idleConnections.offerFirst(pooled);
+		}
+	}
+
+	/**
+	 * Opens a new connection if the pool is not yet full.
+	 * 
+	 * @return the opened connection, or <code>null</code> if the pool is full
+	 */
+	private PooledConnection openIfRoom() throws SQLException {
+		synchronized (this) {
+			if (this.openConnections.size() >= this.maxConnections) {
+				return null;
+			}
+			Connection connection = DriverManager.getConnection(this.dbPath);
+			try {
+				String journalMode = this.profile.apply(connection);
+				this.writeAheadLog = "wal".equals(journalMode);
+			} catch (SQLException e) {
+				connection.close();
+				throw e;
+			}
+			PooledConnection pooled = new PooledConnection(connection,
+					new StatementCache(connection, this.statementCacheHits,
+							this.statementCacheMisses));
+			this.openConnections.add(pooled);
+			return pooled;
+		}
+	}
+
+	/**
+	 * Checks that a connection is still usable. Connections that have been
+	 * used recently are trusted, others have to answer a test query.
+	 */
+	private boolean isHealthy(PooledConnection pooled) {
+		try {
+			if (pooled.connection.isClosed()) {
+				return false;
+			}
+			if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_INTERVAL_MILLIS) {
+				return true;
+			}
+			Statement stat = pooled.connection.createStatement();
+			try {
+				ResultSet resultset = stat.executeQuery("SELECT 1");
+				boolean healthy = resultset.next();
+				resultset.close();
+				return healthy;
+			} finally {
+				stat.close();
+			}
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Closes a connection and forgets about it, making room for a new one.
+	 */
+	private void discard(PooledConnection pooled) {
+		synchronized (this) {
+			this.openConnections.remove(pooled);
+			// close() may be waiting for it
+			this.notifyAll();
+		}
+		this.closeQuietly(pooled);
+	}
+
+	private void closeQuietly(PooledConnection pooled) {
+		try {
+			pooled.statements.clear();
+			pooled.connection.close();
+		} catch (SQLException e) {
+			// Nothing to be done, the connection is being thrown away anyway.
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * The lock of readers when the database uses a write-ahead log, which
+	 * never blocks.
+	 */
+	private static class NoLock implements Lock {
+		static final NoLock INSTANCE = new NoLock();
+
+		@Override
+		public void lock() {
+			// nothing to wait for
+		}
+
+		@Override
+		public void lockInterruptibly() {
+			// nothing to wait for
+		}
+
+		@Override
+		public boolean tryLock() {
+			return true;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) {
+			return true;
+		}
+
+		@Override
+		public void unlock() {
+			// nothing was locked
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * A connection kept in the pool, along with the bookkeeping of its
+	 * current checkout.
+	 */
+	private static class PooledConnection {
+		private final Connection connection;
+		/** The statements prepared on the connection so far */
+		private final StatementCache statements;
+		/**
+		 * The locks taken by the nested checkouts of the thread holding the
+		 * connection, innermost first
+		 */
+		private final Deque<Lock> heldLocks = new ArrayDeque<Lock>();
+		/** When the connection was last returned to the pool */
+		private long lastUsed;
+
+		PooledConnection(Connection connection, StatementCache statements) {
+			this.connection = connection;
+			this.statements = statements;
+			this.lastUsed = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package controller;
+
+import javax.swing.event.ChangeEvent;
+
+/**
+ * A {@link ChangeEvent} telling exactly what changed in the database: which
+ * kind of item, which ID, and whether it was inserted, updated or deleted.
+ * Listeners can use this to patch their copy of the data instead of reloading
+ * everything. Plain {@link ChangeEvent}s are still fired when the extent of a
+ * change is unknown, and mean that anything may have changed.
+ * 
+ * @author 217262
+ */
+class DatabaseChangeEvent extends ChangeEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The kinds of items stored in the database.
+	 */
+	enum Kind {
+		INGREDIENT, RECIPE
+	}
+
+	/**
+	 * The operations that change items in the database.
+	 */
+	enum Operation {
+		INSERT, UPDATE, DELETE
+	}
+
+	private final Kind kind;
+	private final Operation operation;
+	private final int ID;
+
+	/**
+	 * Creates an event about a change to a single item.
+	 * 
+	 * @param source
+	 *            the object on which the change occurred
+	 * @param kind
+	 *            the kind of the changed item
+	 * @param operation
+	 *            the operation done to the item
+	 * @param ID
+	 *            the ID of the changed item
+	 */
+	DatabaseChangeEvent(Object source, Kind kind, Operation operation, int ID) {
+		super(source);
+		this.kind = kind;
+		this.operation = operation;
+		this.ID = ID;
+	}
+
+	/**
+	 * @return the kind of the changed item
+	 */
+	Kind getKind() {
+		return this.kind;
+	}
+
+	/**
+	 * @return the operation done to the item
+	 */
+	Operation getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * @return the ID of the changed item
+	 */
+	int getID() {
+		return this.ID;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.EventObject#toString() */
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "[" + this.operation + " "
+				+ this.kind + " " + this.ID + "]";
+	}
+}
@@ -1,15 +1,24 @@
 package controller;
 
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -20,7 +29,9 @@ import model.Recipe;
 import model.RecipeIngredients;
 import model.Unit;
 import controller.DatabaseConnector.DBConst.INGREDIENT_TABLE;
+import controller.DatabaseConnector.DBConst.RECIPE_INGREDIENT_JOINED_VIEW;
 import controller.DatabaseConnector.DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE;
+import controller.DatabaseConnector.DBConst.WRITE_SAVEPOINT;
 
 /**
  * A helper class for managing connections to the SQLite database. <br>
@@ -35,19 +46,73 @@ class DatabaseConnector {
 
 	private final String dbPath;
 	private static final String DEFAULT_DB_PATH = "jdbc:sqlite:data/sipper.db";
+	/**
+	 * System property for using another database than the default one, given
+	 * as a JDBC URL like <code>jdbc:sqlite:/tmp/large.db</code>.
+	 */
+	static final String DB_PATH_PROPERTY = "sipper.db.url";
+	/**
+	 * The longest time in milliseconds to wait for queued edits to be written
+	 * when the application exits.
+	 */
+	private static final long SHUTDOWN_FLUSH_MILLIS = 5000;
+	/**
+	 * The longest time in milliseconds to wait for reads still running when
+	 * the application exits, before their connections are closed.
+	 */
+	private static final long SHUTDOWN_CLOSE_MILLIS = 2000;
 
 	/**
-	 * Connection to the database, should be synchronized when used to prevent
-	 * problems with multiple connections. (Which should be supported by the
-	 * JDBC SQLite but caused errors on Windows...)
+	 * The pool of long-lived connections to the database. Every method checks
+	 * out its connection from here and releases it when done, instead of
+	 * opening and closing connections of its own.
+	 */
+	private final ConnectionPool pool;
+	/**
+	 * The queue of edits written behind in group commits.
+	 */
+	private final WriteBehindQueue writeBehindQueue;
+	/**
+	 * The one shared instance of each ingredient, handed out by every query
+	 * that reads ingredients to be kept in the lists or in recipes.
 	 */
-	private Connection conn;
+	private final IngredientIdentityMap ingredientMap = new IngredientIdentityMap();
 	/**
 	 * A list of {@link ChangeListener}s that listen for changes in the
 	 * database.
 	 */
 	protected List<ChangeListener> changeListeners;
 
+	/*
+	 * Metrics of the database access, named after the timed methods. They
+	 * come before the singleton, which already uses them while it is created.
+	 */
+	private static final Metrics.Timer GET_RECIPE_LIST_TIMER = timer("getAvailableRecipeList");
+	private static final Metrics.Timer GET_INGREDIENT_LIST_TIMER = timer("getAvailableIngredientsList");
+	private static final Metrics.Timer GET_RECIPE_INGREDIENTS_TIMER = timer("getRecipeIngredients");
+	private static final Metrics.Timer GET_RECIPE_INGREDIENTS_BATCH_TIMER = timer("getRecipeIngredientsBatch");
+	private static final Metrics.Timer GET_ALL_RECIPE_INGREDIENTS_TIMER = timer("getAllRecipeIngredients");
+	private static final Metrics.Timer LOAD_RECIPE_USAGE_TIMER = timer("loadRecipeUsage");
+	private static final Metrics.Timer LOAD_RECIPE_AMOUNTS_TIMER = timer("loadRecipeAmounts");
+	private static final Metrics.Timer GET_RECIPE_TIMER = timer("getRecipe");
+	private static final Metrics.Timer GET_INGREDIENT_TIMER = timer("getIngredient");
+	private static final Metrics.Timer UPDATE_RECIPE_TIMER = timer("updateRecipe");
+	private static final Metrics.Timer UPDATE_INGREDIENT_TIMER = timer("updateIngredient");
+	private static final Metrics.Timer EXPORT_CATALOG_TIMER = timer("exportCatalog");
+	private static final Metrics.Timer GET_INGREDIENT_IDS_TIMER = timer("getIngredientIDsByName");
+	private static final Metrics.Timer SAVE_INGREDIENTS_TIMER = timer("saveIngredients");
+	private static final Metrics.Timer REMOVE_RECIPE_TIMER = timer("removeRecipe");
+	private static final Metrics.Timer REMOVE_INGREDIENT_TIMER = timer("removeIngredient");
+	private static final Metrics.Timer WRITE_GROUP_TIMER = timer("writeGroup");
+	/** Time taken by all listeners to handle a change event. */
+	private static final Metrics.Timer FIRE_CHANGE_EVENT_TIMER = timer("fireChangeEvent");
+	/** Change events fired, each counted once however many listeners. */
+	private static final Metrics.Counter CHANGE_EVENTS = Metrics
+			.getInstance().counter("db.changeEvents");
+	/** SQL errors handled, as each shows the user a dialog. */
+	private static final Metrics.Counter SQL_ERRORS = Metrics.getInstance()
+			.counter("db.errors");
+
 	/**
 	 * Singleton instance to use only one static connector.
 	 */
@@ -58,7 +123,10 @@ class DatabaseConnector {
 
 	/**
 	 * Constants of table and column names used for more flexibility in the
-	 * database access code.
+	 * database access code. Each table also has the parameterized SQL of the
+	 * operations done on it, so that the same statement text is always used
+	 * for the same operation and can be reused from the {@link StatementCache}
+	 * .
 	 */
 	static class DBConst {
 
@@ -75,6 +143,33 @@ class DatabaseConnector {
 			static final String ALCOHOL_CONTENT_COLUMN = "alcoholContent";
 			static final String STORE_COLUMN = "store";
 			static final String COMMENT_COLUMN = "comment";
+
+			static final String SELECT_ALL = "SELECT * FROM " + NAME;
+			static final String SELECT_BY_ID = SELECT_ALL + " WHERE "
+					+ ID_COLUMN + " = ?1";
+			static final String SELECT_ALL_BY_ID = SELECT_ALL + " ORDER BY "
+					+ ID_COLUMN;
+			static final String SELECT_IDS_AND_NAMES = "SELECT " + ID_COLUMN
+					+ ", " + NAME_COLUMN + " FROM " + NAME + " ORDER BY "
+					+ ID_COLUMN;
+			/** Inserts a new row, with a generated ID if the ID is null. */
+			static final String INSERT = "INSERT INTO " + NAME + "("
+					+ ID_COLUMN + ", " + NAME_COLUMN + ", "
+					+ CONTAINER_PRICE_COLUMN + ", "
+					+ CONTAINER_SIZE_VALUE_COLUMN + ", "
+					+ CONTAINER_SIZE_UNIT_COLUMN + ", "
+					+ ALCOHOL_CONTENT_COLUMN + ", " + STORE_COLUMN + ", "
+					+ COMMENT_COLUMN + ") VALUES (?1,?2,?3,?4,?5,?6,?7,?8)";
+			/** Updates the row with the ID, with the same parameters. */
+			static final String UPDATE_BY_ID = "UPDATE " + NAME + " SET "
+					+ NAME_COLUMN + " = ?2, " + CONTAINER_PRICE_COLUMN
+					+ " = ?3, " + CONTAINER_SIZE_VALUE_COLUMN + " = ?4, "
+					+ CONTAINER_SIZE_UNIT_COLUMN + " = ?5, "
+					+ ALCOHOL_CONTENT_COLUMN + " = ?6, " + STORE_COLUMN
+					+ " = ?7, " + COMMENT_COLUMN + " = ?8 WHERE " + ID_COLUMN
+					+ " = ?1";
+			static final String DELETE_BY_ID = "DELETE FROM " + NAME
+					+ " WHERE " + ID_COLUMN + " = ?1";
 		}
 
 		/**
@@ -85,6 +180,22 @@ class DatabaseConnector {
 			static final String ID_COLUMN = "ID";
 			static final String NAME_COLUMN = "name";
 			static final String INSTRUCTIONS_COLUMN = "instructions";
+
+			static final String SELECT_ALL = "SELECT * FROM " + NAME;
+			static final String SELECT_ALL_BY_ID = SELECT_ALL + " ORDER BY "
+					+ ID_COLUMN;
+			static final String SELECT_BY_ID = SELECT_ALL + " WHERE "
+					+ ID_COLUMN + " = ?1";
+			/** Inserts a new row, with a generated ID if the ID is null. */
+			static final String INSERT = "INSERT INTO " + NAME + "("
+					+ ID_COLUMN + ", " + NAME_COLUMN + ", "
+					+ INSTRUCTIONS_COLUMN + ") VALUES (?1, ?2, ?3)";
+			/** Updates the row with the ID, with the same parameters. */
+			static final String UPDATE_BY_ID = "UPDATE " + NAME + " SET "
+					+ NAME_COLUMN + " = ?2, " + INSTRUCTIONS_COLUMN
+					+ " = ?3 WHERE " + ID_COLUMN + " = ?1";
+			static final String DELETE_BY_ID = "DELETE FROM " + NAME
+					+ " WHERE " + ID_COLUMN + " = ?1";
 		}
 
 		/**
@@ -97,16 +208,133 @@ class DatabaseConnector {
 			static final String INGREDIENT_ID_COLUMN = "ingredientID";
 			static final String AMOUNT_VALUE_COLUMN = "amountValue";
 			static final String AMOUNT_UNIT_COLUMN = "amountUnit";
+			static final String BY_RECIPE_INDEX = "recipeIngredientsByRecipe";
+			static final String BY_INGREDIENT_INDEX = "recipeIngredientsByIngredient";
+
+			/**
+			 * Covering index for reading and deleting the ingredients of a
+			 * recipe without touching the table itself.
+			 */
+			static final String CREATE_BY_RECIPE_INDEX = "CREATE INDEX IF NOT EXISTS "
+					+ BY_RECIPE_INDEX
+					+ " ON "
+					+ NAME
+					+ "("
+					+ RECIPE_ID_COLUMN
+					+ ", "
+					+ INGREDIENT_ID_COLUMN
+					+ ", "
+					+ AMOUNT_VALUE_COLUMN
+					+ ", "
+					+ AMOUNT_UNIT_COLUMN + ")";
+			/**
+			 * Index for finding and deleting the uses of an ingredient, also by
+			 * the foreign key cascades.
+			 */
+			static final String CREATE_BY_INGREDIENT_INDEX = "CREATE INDEX IF NOT EXISTS "
+					+ BY_INGREDIENT_INDEX
+					+ " ON "
+					+ NAME
+					+ "("
+					+ INGREDIENT_ID_COLUMN + ", " + RECIPE_ID_COLUMN + ")";
+
+			static final String INSERT = "INSERT INTO " + NAME + "("
+					+ RECIPE_ID_COLUMN + ", " + INGREDIENT_ID_COLUMN + ", "
+					+ AMOUNT_VALUE_COLUMN + ", " + AMOUNT_UNIT_COLUMN
+					+ ") VALUES (?1, ?2, ?3, ?4)";
+			/** The ingredient rows of a recipe, read from the covering index. */
+			static final String SELECT_BY_RECIPE = "SELECT "
+					+ INGREDIENT_ID_COLUMN + ", " + AMOUNT_VALUE_COLUMN + ", "
+					+ AMOUNT_UNIT_COLUMN + " FROM " + NAME + " WHERE "
+					+ RECIPE_ID_COLUMN + " = ?1";
+			/** All rows grouped by recipe, read from the covering index. */
+			static final String SELECT_ALL_BY_RECIPE = "SELECT "
+					+ RECIPE_ID_COLUMN + ", " + INGREDIENT_ID_COLUMN + ", "
+					+ AMOUNT_VALUE_COLUMN + ", " + AMOUNT_UNIT_COLUMN
+					+ " FROM " + NAME + " ORDER BY " + RECIPE_ID_COLUMN;
+			/**
+			 * Every ingredient and the recipes using it, read from the index by
+			 * ingredient.
+			 */
+			static final String SELECT_ALL_BY_INGREDIENT = "SELECT "
+					+ INGREDIENT_ID_COLUMN + ", " + RECIPE_ID_COLUMN + " FROM "
+					+ NAME + " ORDER BY " + INGREDIENT_ID_COLUMN + ", "
+					+ RECIPE_ID_COLUMN;
+			static final String UPDATE_AMOUNT = "UPDATE " + NAME + " SET "
+					+ AMOUNT_VALUE_COLUMN + " = ?3, " + AMOUNT_UNIT_COLUMN
+					+ " = ?4 WHERE " + RECIPE_ID_COLUMN + " = ?1 AND "
+					+ INGREDIENT_ID_COLUMN + " = ?2";
+			static final String DELETE = "DELETE FROM " + NAME + " WHERE "
+					+ RECIPE_ID_COLUMN + " = ?1 AND " + INGREDIENT_ID_COLUMN
+					+ " = ?2";
+			static final String DELETE_BY_RECIPE = "DELETE FROM " + NAME
+					+ " WHERE " + RECIPE_ID_COLUMN + " = ?1";
+			static final String DELETE_BY_INGREDIENT = "DELETE FROM " + NAME
+					+ " WHERE " + INGREDIENT_ID_COLUMN + " = ?1";
 		}
 
 		/**
-		 * Constants for the view of combined values from all three tables. Not
-		 * in use in the current implementation.
+		 * Constants for the view of combined values from all three tables. Each
+		 * row contains all columns of the ingredient table and the
+		 * relationship table, as well as the name of the recipe.
 		 */
 		static final class RECIPE_INGREDIENT_JOINED_VIEW {
 			static final String NAME = "ingredientsToRecipes";
+			static final String RECIPE_NAME_COLUMN = "recipeName";
+
+			/** All rows, grouped by recipe. */
+			static final String SELECT_ALL_BY_RECIPE = "SELECT * FROM " + NAME
+					+ " ORDER BY "
+					+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN;
+
+			/**
+			 * Number of recipes whose rows are selected together by
+			 * {@link #SELECT_BY_RECIPES}.
+			 */
+			static final int RECIPES_PER_SELECT = 32;
+			/**
+			 * The rows of {@link #RECIPES_PER_SELECT} recipes, given as that
+			 * many parameters. Fewer recipes repeat one of their IDs, so that
+			 * the same statement is always used.
+			 */
+			static final String SELECT_BY_RECIPES;
+			static {
+				StringBuilder sql = new StringBuilder("SELECT * FROM " + NAME
+						+ " WHERE "
+						+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN
+						+ " IN (?1");
+				for (int i = 2; i <= RECIPES_PER_SELECT; i++) {
+					sql.append(", ?").append(i);
+				}
+				SELECT_BY_RECIPES = sql.append(")").toString();
+			}
+			static final String SELECT_BY_RECIPE = "SELECT * FROM " + NAME
+					+ " WHERE "
+					+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN
+					+ " = ?1";
 		}
 
+		/**
+		 * Constants for the savepoint around each write of a group commit, so
+		 * that a failed write can be undone without the rest of its group.
+		 */
+		static final class WRITE_SAVEPOINT {
+			static final String NAME = "groupWrite";
+			static final String SET = "SAVEPOINT " + NAME;
+			static final String RELEASE = "RELEASE " + NAME;
+			static final String ROLLBACK_TO = "ROLLBACK TO " + NAME;
+		}
+
+	}
+
+	/**
+	 * @param method
+	 *            the name of a timed method
+	 * @return the timer of the method, named <code>db.</code> followed by the
+	 *         name of the method
+	 */
+	private static Metrics.Timer timer(String method) {
+		return Metrics.getInstance().timer("db." + method);
 	}
 
 	/**
@@ -123,8 +351,8 @@ class DatabaseConnector {
 	 * Private constructor that establishes database drivers and the like.
 	 */
 	private DatabaseConnector() {
-		// use default path to database
-		this.dbPath = DEFAULT_DB_PATH;
+		// use default path to database, unless told otherwise
+		this.dbPath = System.getProperty(DB_PATH_PROPERTY, DEFAULT_DB_PATH);
 
 		/* Sets the JDBC SQLite wrapper to be used. It is worth to note that
 		 * some drivers work better than others: the original Zentus driver
@@ -140,62 +368,117 @@ class DatabaseConnector {
 			e.printStackTrace();
 		}
 
-		// Initialize connection so it is not null when first used.
+		/* Initialize the pool, and bring the schema up to date with a first
+		 * connection, which also checks the path. */
+		this.pool = new ConnectionPool(this.dbPath,
+				ConnectionPool.DEFAULT_MAX_CONNECTIONS,
+				StorageProfile.fromSystemProperties());
 		try {
-			this.conn = DriverManager.getConnection(this.dbPath);
-			this.conn.close();
+			new SchemaMigrator(this.pool).migrate();
 		} catch (SQLException e) {
 			this.handleSQLException(e);
 		}
 
-		// list of listeners
-		this.changeListeners = new ArrayList<ChangeListener>();
+		this.writeBehindQueue = new WriteBehindQueue(this);
+
+		/* Write the queued edits and close the pooled connections cleanly when
+		 * the application exits. */
+		Runtime.getRuntime().addShutdownHook(
+				new Thread("DatabaseConnector shutdown") {
+					@Override
+					public void run() {
+						DatabaseConnector.this.writeBehindQueue
+								.close(SHUTDOWN_FLUSH_MILLIS);
+						DatabaseConnector.this.pool
+								.close(SHUTDOWN_CLOSE_MILLIS);
+					}
+				});
+
+		/* list of listeners, events are fired on whichever thread does the
+		 * writing */
+		this.changeListeners = new CopyOnWriteArrayList<ChangeListener>();
 	}
 
 	/**
-	 * @return a list of all available {@link Recipe}s in the database
+	 * @return the queue for writing edits behind in group commits
 	 */
-	ArrayList<Recipe> getAvailableRecipeList() {
-
-		return this.getListFromTable(DBConst.RECIPE_TABLE.NAME, null,
-				new ResultSetParser.RecipeParser());
+	WriteBehindQueue getWriteBehindQueue() {
+		return this.writeBehindQueue;
+	}
 
+	/**
+	 * @return a list of all available {@link Recipe}s in the database. Their
+	 *         ingredients are loaded once they are first needed, by a
+	 *         {@link RecipeIngredientsLoader} shared by the whole list.
+	 */
+	ArrayList<Recipe> getAvailableRecipeList() {
+		long start = GET_RECIPE_LIST_TIMER.start();
+		try {
+			/* The list mostly shows just the names, so the ingredients of a
+			 * recipe are only loaded when someone looks at it. */
+			return this.getList(DBConst.RECIPE_TABLE.SELECT_ALL,
+					new ResultSetParser.RecipeParser(
+							new RecipeIngredientsLoader(this)));
+		} finally {
+			GET_RECIPE_LIST_TIMER.stop(start);
+		}
 	}
 
 	/**
 	 * @return a list of all available {@link Ingredient}s in the database
 	 */
 	ArrayList<Ingredient> getAvailableIngredientsList() {
-		// get the entire ingredient table and parse it
-		return this.getListFromTable(INGREDIENT_TABLE.NAME, null,
-				new ResultSetParser.IngredientParser());
+		long start = GET_INGREDIENT_LIST_TIMER.start();
+		try {
+			// get the entire ingredient table and parse it
+			return this.getList(INGREDIENT_TABLE.SELECT_ALL,
+					new ResultSetParser.IngredientParser(this.ingredientMap));
+		} finally {
+			GET_INGREDIENT_LIST_TIMER.stop(start);
+		}
 	}
 
-	private <T> ArrayList<T> getListFromTable(String table, String condition,
-			ResultSetParser<T> parser) {
+	/**
+	 * Runs a query and parses every row of its result.
+	 * 
+	 * @param sql
+	 *            the parameterized SQL of the query
+	 * @param parser
+	 *            the parser of the resulting rows
+	 * @param parameters
+	 *            values for the integer parameters of the query, in order
+	 * @return the parsed rows
+	 */
+	private <T> ArrayList<T> getList(String sql, ResultSetParser<T> parser,
+			int... parameters) {
 
 		ArrayList<T> parsedList = new ArrayList<T>();
 
 		try {
-			// Open the connection to the database and create a statement.
-			this.conn = DriverManager.getConnection(this.dbPath);
-
-			// Prepares a statement for selecting all items from the given table
-			// with a given condition if specified.
-			String where = condition != null ? " WHERE " + condition : "";
-			PreparedStatement stat = this.conn
-					.prepareStatement("SELECT * FROM " + table + where);
-			ResultSet resultset = stat.executeQuery();
-
-			// Parse the result set using the ResultSetParser class
-			while (resultset.next()) {
-				T parsedItem = parser.parseResultSet(resultset);
-				parsedList.add(parsedItem);
-			}
+			// Check out a connection from the pool and get the statement.
+			Connection conn = this.pool.acquire();
+			try {
+				PreparedStatement stat = this.pool.prepare(conn, sql);
+				for (int i = 0; i < parameters.length; i++) {
+					stat.setInt(i + 1, parameters[i]);
+				}
+				FlightEvents.Query event = new FlightEvents.Query();
+				event.begin();
+				ResultSet resultset = stat.executeQuery();
+
+				// Parse the result set using the ResultSetParser class
+				while (resultset.next()) {
+					T parsedItem = parser.parseResultSet(resultset);
+					parsedList.add(parsedItem);
+				}
 
-			// Close result set and connection.
-			resultset.close();
-			this.conn.close();
+				// Close result set, the statement stays cached.
+				resultset.close();
+				event.finish(sql, parsedList.size());
+			} finally {
+				// Return the connection to the pool.
+				this.pool.release(conn);
+			}
 
 		} catch (SQLException e) {
 			this.handleSQLException(e);
@@ -213,43 +496,269 @@ class DatabaseConnector {
 	 * @return the RecipeIngredients associated with the recipe
 	 */
 	RecipeIngredients getRecipeIngredients(int recipeID) {
-		// Initialize an empty list of ingredients
-		RecipeIngredients recipeIngredients = new RecipeIngredients();
+		long start = GET_RECIPE_INGREDIENTS_TIMER.start();
+		try {
+			// Initialize a parser collecting the ingredients
+			ResultSetParser.RecipeIngredientsParser parser = new ResultSetParser.RecipeIngredientsParser(
+					this.ingredientMap);
+
+			try {
+				// Check out a connection from the pool and create a statement.
+				Connection conn = this.pool.acquire();
+				try {
+					/* Select those with matching recipeID from the joined view,
+					 * which already contains the ingredient details. */
+					PreparedStatement stat = this.pool.prepare(conn,
+							RECIPE_INGREDIENT_JOINED_VIEW.SELECT_BY_RECIPE);
+					stat.setInt(1, recipeID);
+					FlightEvents.Query event = new FlightEvents.Query();
+					event.begin();
+					ResultSet resultset = stat.executeQuery();
+
+					int rows = 0;
+					for (; resultset.next(); rows++) {
+						parser.parseResultSet(resultset);
+					}
+
+					resultset.close();
+					event.finish(RECIPE_INGREDIENT_JOINED_VIEW.SELECT_BY_RECIPE,
+							rows);
+				} finally {
+					this.pool.release(conn);
+				}
+			} catch (SQLException e) {
+				this.handleSQLException(e);
+			}
+
+			RecipeIngredients recipeIngredients = parser.getParsedIngredients()
+					.get(recipeID);
+			if (recipeIngredients == null) {
+				// no ingredients, use an empty list
+				recipeIngredients = new RecipeIngredients();
+			}
+
+			return recipeIngredients;
+		} finally {
+			GET_RECIPE_INGREDIENTS_TIMER.stop(start);
+		}
+	}
 
+	/**
+	 * Gets the {@link RecipeIngredients} of all recipes in the database with a
+	 * single query on the joined view of recipes and ingredients.
+	 * 
+	 * Used for work on the whole catalog, where loading the recipes in
+	 * batches would take a query per batch.
+	 * 
+	 * @return the RecipeIngredients of each recipe, keyed by recipe ID.
+	 *         Recipes without ingredients have no entry. <code>null</code> if
+	 *         reading failed.
+	 * @see RecipeIngredientsLoader#loadAll(DatabaseConnector, Collection)
+	 */
+	Map<Integer, RecipeIngredients> getAllRecipeIngredients() {
+		long start = GET_ALL_RECIPE_INGREDIENTS_TIMER.start();
 		try {
-			// Open the connection to the database and create a statement.
-			this.conn = DriverManager.getConnection(this.dbPath);
-
-			// Select those with matching recipeID
-			PreparedStatement stat = this.conn
-					.prepareStatement("SELECT * FROM "
-							+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.NAME
-							+ " WHERE "
-							+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN
-							+ " = " + recipeID);
-			ResultSet resultset = stat.executeQuery();
-
-			while (resultset.next()) {
-
-				Ingredient ingredient = this
-						.getIngredient(resultset
-								.getInt(RECIPE_INGREDIENT_RELATIONSHIP_TABLE.INGREDIENT_ID_COLUMN));
-				Amount amount = new Amount(
-						resultset
-								.getDouble(RECIPE_INGREDIENT_RELATIONSHIP_TABLE.AMOUNT_VALUE_COLUMN),
-						Unit.valueOf(resultset
-								.getString(RECIPE_INGREDIENT_RELATIONSHIP_TABLE.AMOUNT_UNIT_COLUMN)));
-
-				recipeIngredients.put(ingredient, amount);
+			ResultSetParser.RecipeIngredientsParser parser = new ResultSetParser.RecipeIngredientsParser(
+					this.ingredientMap);
+
+			try {
+				// Check out a connection from the pool and create a statement.
+				Connection conn = this.pool.acquire();
+				try {
+					// Every ingredient row of every recipe, grouped by recipe
+					PreparedStatement stat = this.pool.prepare(conn,
+							RECIPE_INGREDIENT_JOINED_VIEW.SELECT_ALL_BY_RECIPE);
+					FlightEvents.Query event = new FlightEvents.Query();
+					event.begin();
+					ResultSet resultset = stat.executeQuery();
+
+					// Stream through the rows, collecting them per recipe
+					int rows = 0;
+					for (; resultset.next(); rows++) {
+						parser.parseResultSet(resultset);
+					}
+
+					resultset.close();
+					event.finish(
+							RECIPE_INGREDIENT_JOINED_VIEW.SELECT_ALL_BY_RECIPE,
+							rows);
+				} finally {
+					this.pool.release(conn);
+				}
+			} catch (SQLException e) {
+				this.handleSQLException(e);
+				return null;
 			}
 
-			resultset.close();
-			this.conn.close();
+			return parser.getParsedIngredients();
+		} finally {
+			GET_ALL_RECIPE_INGREDIENTS_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Gets the {@link RecipeIngredients} of several recipes with a single
+	 * query on the joined view of recipes and ingredients.
+	 * 
+	 * @param recipeIDs
+	 *            IDs of the recipes, at least one and at most
+	 *            {@link RECIPE_INGREDIENT_JOINED_VIEW#RECIPES_PER_SELECT}
+	 * @return the RecipeIngredients of each recipe, keyed by recipe ID.
+	 *         Recipes without ingredients have no entry. <code>null</code> if
+	 *         reading failed, since the rows read so far may be missing some
+	 *         ingredients.
+	 */
+	Map<Integer, RecipeIngredients> getRecipeIngredients(int[] recipeIDs) {
+		if (recipeIDs.length == 0
+				|| recipeIDs.length > RECIPE_INGREDIENT_JOINED_VIEW.RECIPES_PER_SELECT) {
+			throw new IllegalArgumentException("Cannot select "
+					+ recipeIDs.length + " recipes at once");
+		}
+
+		long start = GET_RECIPE_INGREDIENTS_BATCH_TIMER.start();
+		try {
+			ResultSetParser.RecipeIngredientsParser parser = new ResultSetParser.RecipeIngredientsParser(
+					this.ingredientMap);
+
+			try {
+				// Check out a connection from the pool and create a statement.
+				Connection conn = this.pool.acquire();
+				try {
+					PreparedStatement stat = this.pool.prepare(conn,
+							RECIPE_INGREDIENT_JOINED_VIEW.SELECT_BY_RECIPES);
+					// fill the unused parameters with the last ID
+					for (int i = 0; i < RECIPE_INGREDIENT_JOINED_VIEW.RECIPES_PER_SELECT; i++) {
+						stat.setInt(i + 1,
+								recipeIDs[Math.min(i, recipeIDs.length - 1)]);
+					}
+					FlightEvents.Query event = new FlightEvents.Query();
+					event.begin();
+					ResultSet resultset = stat.executeQuery();
+
+					// Stream through the rows, collecting them per recipe
+					int rows = 0;
+					for (; resultset.next(); rows++) {
+						parser.parseResultSet(resultset);
+					}
+
+					resultset.close();
+					event.finish(RECIPE_INGREDIENT_JOINED_VIEW.SELECT_BY_RECIPES,
+							rows);
+				} finally {
+					this.pool.release(conn);
+				}
+			} catch (SQLException e) {
+				this.handleSQLException(e);
+				return null;
+			}
+
+			return parser.getParsedIngredients();
+		} finally {
+			GET_RECIPE_INGREDIENTS_BATCH_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Loads the recipes using each ingredient into an index, replacing its
+	 * contents. The index is left as it was if loading fails.
+	 * 
+	 * @param index
+	 *            the index to load
+	 */
+	void loadRecipeUsage(RecipeUsageIndex index) {
+		long start = LOAD_RECIPE_USAGE_TIMER.start();
+		try {
+			int[] ingredientIDs = new int[1024];
+			int[] recipeIDs = new int[1024];
+			int rows = 0;
+
+			try {
+				Connection conn = this.pool.acquire();
+				try {
+					FlightEvents.Query event = new FlightEvents.Query();
+					event.begin();
+					ResultSet resultset = this.pool.prepare(conn,
+							RECIPE_INGREDIENT_RELATIONSHIP_TABLE.SELECT_ALL_BY_INGREDIENT)
+							.executeQuery();
+					try {
+						for (; resultset.next(); rows++) {
+							if (rows == ingredientIDs.length) {
+								ingredientIDs = Arrays.copyOf(ingredientIDs,
+										rows * 2);
+								recipeIDs = Arrays.copyOf(recipeIDs, rows * 2);
+							}
+							ingredientIDs[rows] = resultset.getInt(1);
+							recipeIDs[rows] = resultset.getInt(2);
+						}
+					} finally {
+						resultset.close();
+					}
+					event.finish(
+							RECIPE_INGREDIENT_RELATIONSHIP_TABLE.SELECT_ALL_BY_INGREDIENT,
+							rows);
+				} finally {
+					this.pool.release(conn);
+				}
+			} catch (SQLException e) {
+				this.handleSQLException(e);
+				return;
+			}
+
+			index.setAll(ingredientIDs, recipeIDs, rows);
+		} finally {
+			LOAD_RECIPE_USAGE_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Reads the amount of every ingredient of every recipe into a snapshot
+	 * being built, in one pass over the covering index of the relationship
+	 * table. The rows come grouped by recipe, in ascending order of recipe
+	 * ID. Rows without a unit have no known amount and are left out, as
+	 * {@link #saveRecipeIngredients} allows them.
+	 * 
+	 * @param builder
+	 *            the builder to add the rows to
+	 * @return <code>false</code> if reading the database failed, in which case
+	 *         only some of the rows have been added
+	 */
+	boolean loadRecipeAmounts(PricingSnapshot.Builder builder) {
+		long start = LOAD_RECIPE_AMOUNTS_TIMER.start();
+		try {
+			Connection conn = this.pool.acquire();
+			try {
+				FlightEvents.Query event = new FlightEvents.Query();
+				event.begin();
+				ResultSet resultset = this.pool.prepare(conn,
+						RECIPE_INGREDIENT_RELATIONSHIP_TABLE.SELECT_ALL_BY_RECIPE)
+						.executeQuery();
+				int rows = 0;
+				try {
+					for (; resultset.next(); rows++) {
+						String unit = resultset.getString(4);
+						if (unit == null) {
+							continue;
+						}
+						builder.addRow(resultset.getInt(1), resultset.getInt(2),
+								resultset.getDouble(3)
+										* Unit.valueOf(unit).toMilliliters());
+					}
+				} finally {
+					resultset.close();
+				}
+				event.finish(
+						RECIPE_INGREDIENT_RELATIONSHIP_TABLE.SELECT_ALL_BY_RECIPE,
+						rows);
+			} finally {
+				this.pool.release(conn);
+			}
+			return true;
 		} catch (SQLException e) {
 			this.handleSQLException(e);
+			return false;
+		} finally {
+			LOAD_RECIPE_AMOUNTS_TIMER.stop(start);
 		}
-
-		return recipeIngredients;
 	}
 
 	/**
@@ -260,18 +769,20 @@ class DatabaseConnector {
 	 * @return the first (and only) recipe with matching ID, or
 	 *         <code>null</code> if no such entry exists
 	 */
-	@SuppressWarnings("unused")
-	// unused, but left for completeness should the need arise
-	private Recipe getRecipe(int recipeID) {
-		// Gets the recipe where the ID column matches the argument.
-		ArrayList<Recipe> list = this.getListFromTable(
-				DBConst.RECIPE_TABLE.NAME, DBConst.RECIPE_TABLE.ID_COLUMN
-						+ " = " + recipeID, new ResultSetParser.RecipeParser());
-
-		if (list.isEmpty()) {
-			return null;
-		} else {
-			return list.get(0);
+	Recipe getRecipe(int recipeID) {
+		long start = GET_RECIPE_TIMER.start();
+		try {
+			// Gets the recipe where the ID column matches the argument.
+			ArrayList<Recipe> list = this.getList(DBConst.RECIPE_TABLE.SELECT_BY_ID,
+					new ResultSetParser.RecipeParser(), recipeID);
+
+			if (list.isEmpty()) {
+				return null;
+			} else {
+				return list.get(0);
+			}
+		} finally {
+			GET_RECIPE_TIMER.stop(start);
 		}
 	}
 
@@ -283,105 +794,253 @@ class DatabaseConnector {
 	 * @return the first (and only) ingredient with matching ID, or
 	 *         <code>null</code> if no such entry exists
 	 */
-	private Ingredient getIngredient(Integer ingredientID) {
-		ArrayList<Ingredient> list = this.getListFromTable(
-				INGREDIENT_TABLE.NAME, INGREDIENT_TABLE.ID_COLUMN + " = "
-						+ ingredientID, new ResultSetParser.IngredientParser());
-
-		if (list.isEmpty()) {
-			return null;
-		} else {
-			return list.get(0);
+	Ingredient getIngredient(int ingredientID) {
+		long start = GET_INGREDIENT_TIMER.start();
+		try {
+			ArrayList<Ingredient> list = this.getList(
+					INGREDIENT_TABLE.SELECT_BY_ID,
+					new ResultSetParser.IngredientParser(this.ingredientMap),
+					ingredientID);
+
+			if (list.isEmpty()) {
+				return null;
+			} else {
+				return list.get(0);
+			}
+		} finally {
+			GET_INGREDIENT_TIMER.stop(start);
 		}
 	}
 
 	/**
 	 * Updates a {@link Recipe} in the database. If the recipe has an ID of
 	 * <code>null</code>, it will be inserted as a new entry and return the
-	 * newly generated ID.
+	 * newly generated ID. <br>
+	 * The whole save is one transaction, so readers see either the old or the
+	 * new recipe. Only the ingredient rows that differ from the stored ones
+	 * are written.
 	 * 
 	 * @param recipe
 	 *            the recipe to update.
 	 * @return the ID of the updated/inserted recipe
 	 */
 	int updateRecipe(Recipe recipe) {
-		// The ID of the
-		int recipeID = -1;
-
+		long start = UPDATE_RECIPE_TIMER.start();
 		try {
-			// Connect to database
-			this.conn = DriverManager.getConnection(this.dbPath);
-
-			// Prepare a statement for populating a new recipe row
-			PreparedStatement prep = this.conn
-					.prepareStatement("INSERT OR REPLACE INTO "
-							+ DBConst.RECIPE_TABLE.NAME + "("
-							+ DBConst.RECIPE_TABLE.ID_COLUMN + ", "
-							+ DBConst.RECIPE_TABLE.NAME_COLUMN + ", "
-							+ DBConst.RECIPE_TABLE.INSTRUCTIONS_COLUMN
-							+ ") VALUES (?1, ?2, ?3);");
-
-			// Use values from selected recipe
-			if (recipe.getID() != null) {
-				/* Not setting the ID will leave it as null, which in turn means
-				 * that a new entry row will be created. */
-				prep.setInt(1, recipe.getID());
+			// The ID of the
+			int recipeID = -1;
+
+			try {
+				// Check out a connection for writing
+				Connection conn = this.pool.acquireForWriting();
+				try {
+					// Save everything in one transaction
+					conn.setAutoCommit(false);
+					try {
+						int savedID = this.saveRecipe(conn, recipe);
+
+						conn.commit();
+						recipeID = savedID;
+					} catch (SQLException e) {
+						conn.rollback();
+						throw e;
+					} finally {
+						conn.setAutoCommit(true);
+					}
+				} finally {
+					// Return the connection to the pool
+					this.pool.release(conn);
+				}
+
+			} catch (SQLException e) {
+				this.handleSQLException(e);
 			}
-			prep.setString(2, recipe.getName());
-			prep.setString(3, recipe.getInstructions());
 
-			// Execute (insert the new recipe)
-			prep.execute();
+			// Changes were made, inform listeners of what changed.
+			this.fireChangeEvent(DatabaseChangeEvent.Kind.RECIPE, recipe.getID(),
+					recipeID);
 
-			/* Get the newly generated ID of the new recipe (or the old one if
-			 * that is the case) */
-			recipeID = prep.getGeneratedKeys().getInt(1);
+			// return the ID, it might be new
+			return recipeID;
+		} finally {
+			UPDATE_RECIPE_TIMER.stop(start);
+		}
+	}
 
-			/* ruthlessly delete all existing ingredient bindings from the
-			 * recipe before adding the new list */
-			prep = this.conn.prepareStatement("DELETE FROM "
-					+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.NAME + " WHERE "
-					+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN
-					+ " = " + recipeID);
-			prep.execute();
+	/**
+	 * Saves a recipe and its ingredients, without committing.
+	 * 
+	 * @param conn
+	 *            a connection checked out for writing, in a transaction
+	 * @param recipe
+	 *            the recipe to save
+	 * @return the ID of the saved recipe
+	 * @throws SQLException
+	 *             if saving failed
+	 */
+	private int saveRecipe(Connection conn, Recipe recipe) throws SQLException {
+		// Save the recipe row, getting its ID if it is new
+		int recipeID = this.saveRow(conn, recipe.getID(),
+				DBConst.RECIPE_TABLE.UPDATE_BY_ID, DBConst.RECIPE_TABLE.INSERT,
+				recipe.getName(), recipe.getInstructions());
 
-			// prepare a new statement for inserting the recipe ingredients
-			prep = this.conn.prepareStatement("INSERT INTO "
-					+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.NAME + "("
-					+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN
-					+ ", "
-					+ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.INGREDIENT_ID_COLUMN
-					+ ", " + "amountValue" + ", " + "amountUnit"
-					+ ") VALUES (?1, ?2, ?3, ?4);");
+		this.saveRecipeIngredients(conn, recipeID, recipe.getIngredients());
 
-			// go through all ingredients and add the details
-			for (Entry<Ingredient, Amount> ingredientEntry : recipe
-					.getIngredients().entrySet()) {
+		return recipeID;
+	}
 
-				prep.setInt(1, recipeID); // recipeID
-				prep.setInt(2, ingredientEntry.getKey().getID()); // ingredientID
-				prep.setDouble(3, ingredientEntry.getValue().getQuantity()); // amountValue
-				prep.setString(4, ingredientEntry.getValue().getUnit().name()); // amountUnit
+	/**
+	 * Makes the stored ingredient rows of a recipe match the given
+	 * ingredients, by comparing them to the stored rows and only inserting,
+	 * updating and deleting the rows that differ.
+	 * 
+	 * @param conn
+	 *            a connection checked out for writing, in a transaction
+	 * @param recipeID
+	 *            the ID of the recipe
+	 * @param ingredients
+	 *            the ingredients the recipe should have
+	 * @throws SQLException
+	 *             if reading or writing the rows failed
+	 */
+	private void saveRecipeIngredients(Connection conn, int recipeID,
+			RecipeIngredients ingredients) throws SQLException {
+		// Read the stored rows, by ingredient ID
+		Map<Integer, Amount> stored = new HashMap<Integer, Amount>();
+		// rows stored more than once are rewritten as a single row
+		Set<Integer> duplicated = new HashSet<Integer>();
+
+		PreparedStatement prep = this.pool.prepare(conn,
+				RECIPE_INGREDIENT_RELATIONSHIP_TABLE.SELECT_BY_RECIPE);
+		prep.setInt(1, recipeID);
+		FlightEvents.Query event = new FlightEvents.Query();
+		event.begin();
+		ResultSet resultSet = prep.executeQuery();
+		int rows = 0;
+		try {
+			for (; resultSet.next(); rows++) {
+				int ingredientID = resultSet.getInt(1);
+				String unit = resultSet.getString(3);
+				// a missing unit never matches, so the row gets rewritten
+				Amount amount = new Amount(resultSet.getDouble(2),
+						unit == null ? null : Unit.valueOf(unit));
+				if (stored.put(ingredientID, amount) != null) {
+					duplicated.add(ingredientID);
+				}
+			}
+		} finally {
+			resultSet.close();
+		}
+		event.finish(RECIPE_INGREDIENT_RELATIONSHIP_TABLE.SELECT_BY_RECIPE, rows);
+
+		PreparedStatement insert = this.pool.prepare(conn,
+				RECIPE_INGREDIENT_RELATIONSHIP_TABLE.INSERT);
+		PreparedStatement update = this.pool.prepare(conn,
+				RECIPE_INGREDIENT_RELATIONSHIP_TABLE.UPDATE_AMOUNT);
+		PreparedStatement delete = this.pool.prepare(conn,
+				RECIPE_INGREDIENT_RELATIONSHIP_TABLE.DELETE);
+		int inserts = 0, updates = 0, deletes = 0;
+
+		// go through all ingredients and compare them to the stored rows
+		for (Entry<Ingredient, Amount> ingredientEntry : ingredients
+				.entrySet()) {
+			int ingredientID = ingredientEntry.getKey().getID();
+			Amount amount = ingredientEntry.getValue();
+			Amount storedAmount = stored.remove(ingredientID);
+
+			if (storedAmount != null && duplicated.contains(ingredientID)) {
+				this.setRelationshipKey(delete, recipeID, ingredientID);
+				delete.addBatch();
+				deletes++;
+				storedAmount = null;
+			}
 
-				prep.addBatch();
+			if (storedAmount == null) {
+				this.setRelationshipKey(insert, recipeID, ingredientID);
+				insert.setDouble(3, amount.getQuantity()); // amountValue
+				insert.setString(4, amount.getUnit().name()); // amountUnit
+				insert.addBatch();
+				inserts++;
+			} else if (storedAmount.getQuantity() != amount.getQuantity()
+					|| storedAmount.getUnit() != amount.getUnit()) {
+				this.setRelationshipKey(update, recipeID, ingredientID);
+				update.setDouble(3, amount.getQuantity()); // amountValue
+				update.setString(4, amount.getUnit().name()); // amountUnit
+				update.addBatch();
+				updates++;
 			}
-			// commit the ingredients in a batch
-			this.conn.setAutoCommit(false);
-			prep.executeBatch();
-			this.conn.setAutoCommit(true);
+		}
 
-			// Close the connection
-			this.conn.close();
+		// whatever is left is no longer in the recipe
+		for (int ingredientID : stored.keySet()) {
+			this.setRelationshipKey(delete, recipeID, ingredientID);
+			delete.addBatch();
+			deletes++;
+		}
 
-		} catch (SQLException e) {
-			this.handleSQLException(e);
+		// deletes first, as rewritten duplicates are deleted and inserted
+		if (deletes > 0) {
+			this.executeBatch(delete,
+					RECIPE_INGREDIENT_RELATIONSHIP_TABLE.DELETE, deletes);
+		}
+		if (updates > 0) {
+			this.executeBatch(update,
+					RECIPE_INGREDIENT_RELATIONSHIP_TABLE.UPDATE_AMOUNT, updates);
+		}
+		if (inserts > 0) {
+			this.executeBatch(insert,
+					RECIPE_INGREDIENT_RELATIONSHIP_TABLE.INSERT, inserts);
 		}
+	}
 
-		// Changes were made, inform listeners.
-		this.fireChangeEvent();
+	/**
+	 * Runs the batch of a statement, emitting a query event of it.
+	 * 
+	 * @param prep
+	 *            the statement
+	 * @param sql
+	 *            the SQL of the statement
+	 * @param rows
+	 *            the number of rows in the batch
+	 * @throws SQLException
+	 *             if running the batch failed
+	 */
+	private void executeBatch(PreparedStatement prep, String sql, int rows)
+			throws SQLException {
+		FlightEvents.Query event = new FlightEvents.Query();
+		event.begin();
+		prep.executeBatch();
+		event.finish(sql, rows);
+	}
 
-		// return the ID, it might be new
-		return recipeID;
+	/**
+	 * Runs an update, emitting a query event of it.
+	 * 
+	 * @param prep
+	 *            the statement, with its parameters set
+	 * @param sql
+	 *            the SQL of the statement
+	 * @return the number of rows changed
+	 * @throws SQLException
+	 *             if the update failed
+	 */
+	private int executeUpdate(PreparedStatement prep, String sql)
+			throws SQLException {
+		FlightEvents.Query event = new FlightEvents.Query();
+		event.begin();
+		int rows = prep.executeUpdate();
+		event.finish(sql, rows);
+		return rows;
+	}
+
+	/**
+	 * Sets the recipe and ingredient IDs identifying a row of the
+	 * relationship table as the first two parameters of the statement.
+	 */
+	private void setRelationshipKey(PreparedStatement prep, int recipeID,
+			int ingredientID) throws SQLException {
+		prep.setInt(1, recipeID);
+		prep.setInt(2, ingredientID);
 	}
 
 	/**
@@ -394,64 +1053,328 @@ class DatabaseConnector {
 	 * @return the ID of the updated/inserted ingredient
 	 */
 	int updateIngredient(Ingredient ingredient) {
-		// The ID of the ingredient
-		int ingredientID = -1;
+		long start = UPDATE_INGREDIENT_TIMER.start();
+		try {
+			// The ID of the ingredient
+			int ingredientID = -1;
+
+			try {
+				// Check out a connection for writing
+				Connection conn = this.pool.acquireForWriting();
+				try {
+					ingredientID = this.saveIngredient(conn, ingredient);
+
+				} finally {
+					// Return the connection to the pool
+					this.pool.release(conn);
+				}
+
+			} catch (SQLException e) {
+				this.handleSQLException(e);
+			}
+
+			// changes should be announced
+			this.fireChangeEvent(DatabaseChangeEvent.Kind.INGREDIENT,
+					ingredient.getID(), ingredientID);
+
+			return ingredientID;
+		} finally {
+			UPDATE_INGREDIENT_TIMER.stop(start);
+		}
+	}
 
+	/**
+	 * Walks through all ingredients and recipes, in the order of their IDs,
+	 * and writes them out as it goes. Each table is read with a forward-only
+	 * cursor, and the ingredients of the recipes are merged in from a cursor
+	 * over the relationship table, so the catalog is never held in memory.
+	 * All cursors read the same snapshot of the database.
+	 * 
+	 * @param writer
+	 *            the writer to write the catalog to
+	 * @return <code>false</code> if reading the database failed, in which case
+	 *         only a part of the catalog has been written
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	boolean exportCatalog(CatalogWriter writer) throws IOException {
+		long start = EXPORT_CATALOG_TIMER.start();
 		try {
-			// Connect to database
-			this.conn = DriverManager.getConnection(this.dbPath);
-
-			// Prepare a statement for populating a new recipe row
-			PreparedStatement prep = this.conn
-					.prepareStatement("INSERT OR REPLACE INTO "
-							+ DBConst.INGREDIENT_TABLE.NAME
-							+ "("
-							+ DBConst.INGREDIENT_TABLE.ID_COLUMN
-							+ ", "
-							+ DBConst.INGREDIENT_TABLE.NAME_COLUMN
-							+ ", "
-							+ DBConst.INGREDIENT_TABLE.CONTAINER_PRICE_COLUMN
-							+ ", "
-							+ DBConst.INGREDIENT_TABLE.CONTAINER_SIZE_VALUE_COLUMN
-							+ ", "
-							+ DBConst.INGREDIENT_TABLE.CONTAINER_SIZE_UNIT_COLUMN
-							+ ", "
-							+ DBConst.INGREDIENT_TABLE.ALCOHOL_CONTENT_COLUMN
-							+ ", " + DBConst.INGREDIENT_TABLE.STORE_COLUMN
-							+ ", " + DBConst.INGREDIENT_TABLE.COMMENT_COLUMN
-							+ ") VALUES (?1,?2,?3,?4,?5,?6,?7,?8);");
-
-			// Use values from selected recipe
-			if (ingredient.getID() != null) {
-				/* Not setting the ID will leave it as null, which in turn means
-				 * that a new entry row will be created. */
-				prep.setInt(1, ingredient.getID());
+			Connection conn = this.pool.acquire();
+			try {
+				// a transaction keeps the snapshot between the queries
+				conn.setAutoCommit(false);
+				try {
+					this.exportIngredients(conn, writer);
+					this.exportRecipes(conn, writer);
+				} finally {
+					// nothing was written, this just ends the transaction
+					conn.rollback();
+					conn.setAutoCommit(true);
+				}
+			} finally {
+				this.pool.release(conn);
 			}
-			prep.setString(2, ingredient.getName());
-			prep.setDouble(3, ingredient.getContainerPrize());
-			prep.setDouble(4, ingredient.getContainerSize().getQuantity());
-			prep.setString(5, ingredient.getContainerSize().getUnit().name());
-			prep.setDouble(6, ingredient.getAlcoholContent());
-			prep.setString(7, ingredient.getStore());
-			prep.setString(8, ingredient.getComment());
+			return true;
+		} catch (SQLException e) {
+			this.handleSQLException(e);
+			return false;
+		} finally {
+			EXPORT_CATALOG_TIMER.stop(start);
+		}
+	}
 
-			// Execute (insert the ingredient)
-			prep.addBatch();
-			prep.executeBatch();
+	/**
+	 * Writes all ingredients.
+	 */
+	private void exportIngredients(Connection conn, CatalogWriter writer)
+			throws SQLException, IOException {
+		ResultSetParser.IngredientParser parser = new ResultSetParser.IngredientParser();
+
+		FlightEvents.Query event = new FlightEvents.Query();
+		event.begin();
+		ResultSet resultset = this.pool.prepare(conn,
+				INGREDIENT_TABLE.SELECT_ALL_BY_ID).executeQuery();
+		int rows = 0;
+		try {
+			for (; resultset.next(); rows++) {
+				writer.writeIngredient(parser.parseResultSet(resultset));
+			}
+		} finally {
+			resultset.close();
+		}
+		// includes writing, which the rows are read at the pace of
+		event.finish(INGREDIENT_TABLE.SELECT_ALL_BY_ID, rows);
+	}
 
-			/* Get the (possibly new) ID */
-			ingredientID = prep.getGeneratedKeys().getInt(1);
+	/**
+	 * Writes all recipes, each followed by its ingredients.
+	 */
+	private void exportRecipes(Connection conn, CatalogWriter writer)
+			throws SQLException, IOException {
+		// the ingredients come from the relationship table instead
+		ResultSetParser.RecipeParser recipeParser = new ResultSetParser.RecipeParser(
+				Collections.<Integer, RecipeIngredients> emptyMap());
+		ResultSetParser.AmountParser amountParser = new ResultSetParser.AmountParser();
+
+		// one event for both cursors, as they are read together
+		FlightEvents.Query event = new FlightEvents.Query();
+		event.begin();
+		int rows = 0;
+		ResultSet recipes = this.pool.prepare(conn,
+				DBConst.RECIPE_TABLE.SELECT_ALL_BY_ID).executeQuery();
+		try {
+			ResultSet ingredients = this.pool.prepare(conn,
+					RECIPE_INGREDIENT_RELATIONSHIP_TABLE.SELECT_ALL_BY_RECIPE)
+					.executeQuery();
+			try {
+				boolean hasIngredient = ingredients.next();
+				for (; recipes.next(); rows++) {
+					Recipe recipe = recipeParser.parseResultSet(recipes);
+					writer.writeRecipe(recipe);
+
+					// both are sorted by recipe ID, so merge them
+					int recipeID = recipe.getID();
+					while (hasIngredient
+							&& ingredients.getInt(1) <= recipeID) {
+						if (ingredients.getInt(1) == recipeID) {
+							writer.writeRecipeIngredient(recipeID,
+									ingredients.getInt(2),
+									amountParser.parseResultSet(ingredients));
+						}
+						hasIngredient = ingredients.next();
+						rows++;
+					}
+				}
+			} finally {
+				ingredients.close();
+			}
+		} finally {
+			recipes.close();
+		}
+		event.finish(DBConst.RECIPE_TABLE.SELECT_ALL_BY_ID, rows);
+	}
 
-			this.conn.close();
+	/**
+	 * Gets the IDs of all ingredients by their names, for matching ingredients
+	 * imported by name to the stored ones. The names are trimmed of
+	 * surrounding whitespace like the imported ones are, so that a stored
+	 * name ending in a space still matches. If several ingredients have the
+	 * same trimmed name, the one with the lowest ID is used.
+	 * 
+	 * @return the ID of each trimmed ingredient name, or <code>null</code> if
+	 *         the ingredients could not be read
+	 */
+	Map<String, Integer> getIngredientIDsByName() {
+		long start = GET_INGREDIENT_IDS_TIMER.start();
+		try {
+			Connection conn = this.pool.acquire();
+			try {
+				PreparedStatement stat = this.pool.prepare(conn,
+						INGREDIENT_TABLE.SELECT_IDS_AND_NAMES);
+				FlightEvents.Query event = new FlightEvents.Query();
+				event.begin();
+				ResultSet resultset = stat.executeQuery();
+				try {
+					Map<String, Integer> IDsByName = new HashMap<String, Integer>();
+					int rows = 0;
+					for (; resultset.next(); rows++) {
+						String name = resultset.getString(2);
+						if (name == null) {
+							// cannot be matched by name
+							continue;
+						}
+						name = name.trim();
+						if (!IDsByName.containsKey(name)) {
+							IDsByName.put(name, resultset.getInt(1));
+						}
+					}
+					event.finish(INGREDIENT_TABLE.SELECT_IDS_AND_NAMES, rows);
+					return IDsByName;
+				} finally {
+					resultset.close();
+				}
+			} finally {
+				this.pool.release(conn);
+			}
+		} catch (SQLException e) {
+			this.handleSQLException(e);
+			return null;
+		} finally {
+			GET_INGREDIENT_IDS_TIMER.stop(start);
+		}
+	}
 
+	/**
+	 * Saves a batch of ingredients in a single transaction, for bulk imports.
+	 * Unlike {@link #updateIngredient(Ingredient)}, no change events are fired,
+	 * the importer fires one when it is done with all batches.
+	 * 
+	 * @param ingredients
+	 *            the ingredients to save, with <code>null</code> IDs for new
+	 *            ones
+	 * @return the ID of each saved ingredient, in the same order, or
+	 *         <code>null</code> if the transaction failed and nothing was
+	 *         saved
+	 */
+	int[] saveIngredients(List<Ingredient> ingredients) {
+		long start = SAVE_INGREDIENTS_TIMER.start();
+		try {
+			Connection conn = this.pool.acquireForWriting();
+			try {
+				conn.setAutoCommit(false);
+				try {
+					int[] IDs = new int[ingredients.size()];
+					for (int i = 0; i < IDs.length; i++) {
+						IDs[i] = this.saveIngredient(conn, ingredients.get(i));
+					}
+
+					conn.commit();
+					return IDs;
+				} catch (SQLException e) {
+					conn.rollback();
+					throw e;
+				} finally {
+					conn.setAutoCommit(true);
+				}
+			} finally {
+				this.pool.release(conn);
+			}
 		} catch (SQLException e) {
 			this.handleSQLException(e);
+			return null;
+		} finally {
+			SAVE_INGREDIENTS_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Saves an ingredient, without committing if in a transaction.
+	 * 
+	 * @param conn
+	 *            a connection checked out for writing
+	 * @param ingredient
+	 *            the ingredient to save
+	 * @return the ID of the saved ingredient
+	 * @throws SQLException
+	 *             if saving failed
+	 */
+	private int saveIngredient(Connection conn, Ingredient ingredient)
+			throws SQLException {
+		// Save the ingredient row, getting its ID if it is new
+		return this.saveRow(conn, ingredient.getID(),
+				DBConst.INGREDIENT_TABLE.UPDATE_BY_ID,
+				DBConst.INGREDIENT_TABLE.INSERT, ingredient.getName(),
+				ingredient.getContainerPrize(), ingredient.getContainerSize()
+						.getQuantity(), ingredient.getContainerSize()
+						.getUnit().name(), ingredient.getAlcoholContent(),
+				ingredient.getStore(), ingredient.getComment());
+	}
+
+	/**
+	 * Saves a row of a table with an integer ID: updates the row with the ID
+	 * in place, or inserts a new one if the ID is <code>null</code> or not in
+	 * the table. Unlike <code>INSERT OR REPLACE</code>, this never deletes the
+	 * existing row, which would make the foreign keys cascade the delete to
+	 * the rows referring to it. <br>
+	 * Both statements take the ID as their first parameter, and the values as
+	 * the rest.
+	 * 
+	 * @param conn
+	 *            a connection checked out for writing
+	 * @param ID
+	 *            the ID of the row, <code>null</code> for a new row
+	 * @param updateSql
+	 *            the SQL updating the row with the ID
+	 * @param insertSql
+	 *            the SQL inserting a new row
+	 * @param values
+	 *            the values of the other columns
+	 * @return the ID of the saved row
+	 * @throws SQLException
+	 *             if saving failed
+	 */
+	private int saveRow(Connection conn, Integer ID, String updateSql,
+			String insertSql, Object... values) throws SQLException {
+		if (ID != null) {
+			PreparedStatement prep = this.pool.prepare(conn, updateSql);
+			this.setParameters(prep, ID, values);
+			if (this.executeUpdate(prep, updateSql) > 0) {
+				return ID;
+			}
+			// the row is gone, so insert it again with the same ID
 		}
 
-		// changes should be announced
-		this.fireChangeEvent();
+		PreparedStatement prep = this.pool.prepare(conn, insertSql);
+		/* Not setting the ID will leave it as null, which in turn means that a
+		 * new ID is generated. */
+		this.setParameters(prep, ID, values);
+		this.executeUpdate(prep, insertSql);
+
+		if (ID != null) {
+			return ID;
+		}
+		// Get the newly generated ID
+		ResultSet keys = prep.getGeneratedKeys();
+		try {
+			return keys.getInt(1);
+		} finally {
+			keys.close();
+		}
+	}
 
-		return ingredientID;
+	/**
+	 * Sets the ID as the first parameter of the statement, if it is not
+	 * <code>null</code>, and the values as the following ones.
+	 */
+	private void setParameters(PreparedStatement prep, Integer ID,
+			Object[] values) throws SQLException {
+		if (ID != null) {
+			prep.setInt(1, ID);
+		}
+		for (int i = 0; i < values.length; i++) {
+			prep.setObject(i + 2, values[i]);
+		}
 	}
 
 	/**
@@ -461,9 +1384,14 @@ class DatabaseConnector {
 	 *            the recipe to be removed
 	 */
 	void removeRecipe(Recipe recipe) {
-		this.removeListedItem(recipe, DBConst.RECIPE_TABLE.NAME,
-				DBConst.RECIPE_TABLE.ID_COLUMN,
-				DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN);
+		long start = REMOVE_RECIPE_TIMER.start();
+		try {
+			this.removeListedItem(recipe, DatabaseChangeEvent.Kind.RECIPE,
+					DBConst.RECIPE_TABLE.DELETE_BY_ID,
+					DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.DELETE_BY_RECIPE);
+		} finally {
+			REMOVE_RECIPE_TIMER.stop(start);
+		}
 	}
 
 	/**
@@ -473,11 +1401,14 @@ class DatabaseConnector {
 	 *            the ingredient to be removed
 	 */
 	void removeIngredient(Ingredient ingredient) {
-		this.removeListedItem(
-				ingredient,
-				DBConst.INGREDIENT_TABLE.NAME,
-				DBConst.INGREDIENT_TABLE.ID_COLUMN,
-				DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.INGREDIENT_ID_COLUMN);
+		long start = REMOVE_INGREDIENT_TIMER.start();
+		try {
+			this.removeListedItem(ingredient, DatabaseChangeEvent.Kind.INGREDIENT,
+					DBConst.INGREDIENT_TABLE.DELETE_BY_ID,
+					DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.DELETE_BY_INGREDIENT);
+		} finally {
+			REMOVE_INGREDIENT_TIMER.stop(start);
+		}
 	}
 
 	/**
@@ -488,48 +1419,207 @@ class DatabaseConnector {
 	 * 
 	 * @param item
 	 *            the item to be removed from the table
-	 * @param tableName
-	 *            the table from which to remove
-	 * @param idColumn
-	 *            the name of the column containing the ID value
-	 * @param relationshipColumn
-	 *            the column in the relationship table that represents the same
-	 *            ID value
-	 */
-	private void removeListedItem(ListedItem item, String tableName,
-			String idColumn, String relationshipColumn) {
+	 * @param kind
+	 *            the kind of the item, for informing listeners
+	 * @param deleteItemSql
+	 *            the SQL for deleting a row by ID from the table of the item
+	 * @param deleteRelationshipsSql
+	 *            the SQL for deleting the rows in the relationship table that
+	 *            refer to the same ID
+	 */
+	private void removeListedItem(ListedItem item,
+			DatabaseChangeEvent.Kind kind, String deleteItemSql,
+			String deleteRelationshipsSql) {
+		boolean removed = false;
+
 		try {
 			// get connection
-			this.conn = DriverManager.getConnection(this.dbPath);
+			Connection conn = this.pool.acquireForWriting();
+			try {
+				this.deleteRows(conn, item.getID(), deleteItemSql,
+						deleteRelationshipsSql);
+
+				removed = true;
+
+			} finally {
+				// return connection
+				this.pool.release(conn);
+			}
+
+		} catch (SQLException e) {
+			this.handleSQLException(e);
+		}
 
-			// Prepare a statement for removing a row
-			PreparedStatement prep = this.conn.prepareStatement("DELETE FROM "
-					+ tableName + " WHERE " + idColumn + "= ?1");
+		// most likely removed something
+		if (removed) {
+			this.fireChangeEvent(new DatabaseChangeEvent(this, kind,
+					DatabaseChangeEvent.Operation.DELETE, item.getID()));
+		} else {
+			// unknown state, let listeners reload everything
+			this.fireChangeEvent(new ChangeEvent(this));
+		}
+	}
 
-			// set id field
-			prep.setInt(1, item.getID());
-			// execute into database
-			prep.execute();
+	/**
+	 * Deletes the row of an item and the rows of the relationship table
+	 * referring to it.
+	 * 
+	 * @param conn
+	 *            a connection checked out for writing
+	 * @param ID
+	 *            the ID of the item
+	 * @param deleteItemSql
+	 *            the SQL for deleting the item row
+	 * @param deleteRelationshipsSql
+	 *            the SQL for deleting the relationship rows of the item
+	 * @throws SQLException
+	 *             if deleting failed
+	 */
+	private void deleteRows(Connection conn, int ID, String deleteItemSql,
+			String deleteRelationshipsSql) throws SQLException {
+		// Get the statement for removing a row
+		PreparedStatement prep = this.pool.prepare(conn, deleteItemSql);
+
+		// set id field
+		prep.setInt(1, ID);
+		// execute into database
+		this.executeUpdate(prep, deleteItemSql);
+
+		// Remove the corresponding rows from the relationship table
+		prep = this.pool.prepare(conn, deleteRelationshipsSql);
+
+		// set id field
+		prep.setInt(1, ID);
+		// execute into database
+		this.executeUpdate(prep, deleteRelationshipsSql);
+	}
 
-			// Remove the corresponding rows from the relationship table
-			prep = this.conn.prepareStatement("DELETE FROM "
-					+ DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.NAME
-					+ " WHERE " + relationshipColumn + "= ?1");
+	/**
+	 * Writes a group of queued saves and removals in a single transaction, so
+	 * that they cost one commit instead of one each. Each write is made within
+	 * a savepoint, so a write that fails (like a save of a recipe using an
+	 * ingredient removed meanwhile) is undone on its own and the rest of the
+	 * group is still committed. Listeners are informed about each successful
+	 * write once the transaction has been committed.
+	 * 
+	 * @param writes
+	 *            the writes to make, in order
+	 * @return the ID of the item of each write, in the same order, -1 for the
+	 *         writes that failed, or <code>null</code> if the transaction
+	 *         failed and nothing was written
+	 */
+	int[] writeGroup(List<WriteBehindQueue.PendingWrite> writes) {
+		long start = WRITE_GROUP_TIMER.start();
+		try {
+			int[] IDs = null;
+
+			try {
+				Connection conn = this.pool.acquireForWriting();
+				try {
+					conn.setAutoCommit(false);
+					try {
+						int[] writtenIDs = new int[writes.size()];
+						for (int i = 0; i < writtenIDs.length; i++) {
+							writtenIDs[i] = this.writeInSavepoint(conn,
+									writes.get(i));
+						}
+
+						conn.commit();
+						IDs = writtenIDs;
+					} catch (SQLException e) {
+						conn.rollback();
+						throw e;
+					} finally {
+						conn.setAutoCommit(true);
+					}
+				} finally {
+					this.pool.release(conn);
+				}
+			} catch (SQLException e) {
+				this.handleSQLException(e);
+			}
 
-			// set id field
-			prep.setInt(1, item.getID());
-			// execute into database
-			prep.execute();
+			if (IDs == null) {
+				// nothing was written, but let listeners reload to be sure
+				this.fireChangeEvent(new ChangeEvent(this));
+				return null;
+			}
 
-			// close connection
-			this.conn.close();
+			for (int i = 0; i < IDs.length; i++) {
+				WriteBehindQueue.PendingWrite write = writes.get(i);
+				if (IDs[i] == -1) {
+					// undone, so nothing changed
+					continue;
+				}
+				if (write.isRemoval()) {
+					this.fireChangeEvent(new DatabaseChangeEvent(this, write
+							.getKind(), DatabaseChangeEvent.Operation.DELETE,
+							IDs[i]));
+				} else {
+					this.fireChangeEvent(write.getKind(), write.getItem().getID(),
+							IDs[i]);
+				}
+			}
+			return IDs;
+		} finally {
+			WRITE_GROUP_TIMER.stop(start);
+		}
+	}
 
+	/**
+	 * Makes a single queued write within a savepoint, without committing.
+	 * 
+	 * @return the ID of the written item, or -1 if the write failed and has
+	 *         been undone
+	 * @throws SQLException
+	 *             if undoing a failed write failed as well, in which case the
+	 *             whole transaction has to be rolled back
+	 */
+	private int writeInSavepoint(Connection conn,
+			WriteBehindQueue.PendingWrite write) throws SQLException {
+		this.pool.prepare(conn, WRITE_SAVEPOINT.SET).execute();
+		try {
+			int ID = this.write(conn, write);
+			this.pool.prepare(conn, WRITE_SAVEPOINT.RELEASE).execute();
+			return ID;
 		} catch (SQLException e) {
 			this.handleSQLException(e);
+			// undo only this write, and leave the savepoint for the next
+			this.pool.prepare(conn, WRITE_SAVEPOINT.ROLLBACK_TO).execute();
+			this.pool.prepare(conn, WRITE_SAVEPOINT.RELEASE).execute();
+			return -1;
 		}
+	}
 
-		// most likely removed something
-		this.fireChangeEvent();
+	/**
+	 * Makes a single queued write, without committing.
+	 * 
+	 * @return the ID of the written item
+	 */
+	private int write(Connection conn, WriteBehindQueue.PendingWrite write)
+			throws SQLException {
+		ListedItem item = write.getItem();
+		switch (write.getKind()) {
+			case INGREDIENT:
+				if (write.isRemoval()) {
+					this.deleteRows(conn, item.getID(),
+							INGREDIENT_TABLE.DELETE_BY_ID,
+							RECIPE_INGREDIENT_RELATIONSHIP_TABLE.DELETE_BY_INGREDIENT);
+					return item.getID();
+				}
+				return this.saveIngredient(conn, (Ingredient) item);
+			case RECIPE:
+				if (write.isRemoval()) {
+					this.deleteRows(conn, item.getID(),
+							DBConst.RECIPE_TABLE.DELETE_BY_ID,
+							RECIPE_INGREDIENT_RELATIONSHIP_TABLE.DELETE_BY_RECIPE);
+					return item.getID();
+				}
+				return this.saveRecipe(conn, (Recipe) item);
+			default:
+				throw new IllegalArgumentException("Unknown kind: "
+						+ write.getKind());
+		}
 	}
 
 	/**
@@ -543,15 +1633,88 @@ class DatabaseConnector {
 		this.changeListeners.add(listener);
 	}
 
+	/**
+	 * Informs listeners about an inserted or updated item.
+	 * 
+	 * @param kind
+	 *            the kind of the item
+	 * @param oldID
+	 *            the ID of the item before saving, <code>null</code> if it was
+	 *            inserted
+	 * @param newID
+	 *            the ID of the item after saving, -1 if saving failed
+	 */
+	private void fireChangeEvent(DatabaseChangeEvent.Kind kind,
+			Integer oldID, int newID) {
+		if (newID == -1) {
+			// saving failed in an unknown state, let listeners reload all
+			this.fireChangeEvent(new ChangeEvent(this));
+		} else {
+			DatabaseChangeEvent.Operation operation = oldID == null ? DatabaseChangeEvent.Operation.INSERT
+					: DatabaseChangeEvent.Operation.UPDATE;
+			this.fireChangeEvent(new DatabaseChangeEvent(this, kind,
+					operation, newID));
+		}
+	}
+
 	/**
 	 * Calls the {@link ChangeListener#stateChanged(ChangeEvent)} method of all
 	 * listeners registered on this database.
+	 * 
+	 * @param event
+	 *            the event to pass on, a {@link DatabaseChangeEvent} if the
+	 *            change is known exactly
 	 */
-	protected void fireChangeEvent() {
-		ChangeEvent event = new ChangeEvent(this);
-		// call all listeners
-		for (ChangeListener listener : this.changeListeners) {
-			listener.stateChanged(event);
+	protected void fireChangeEvent(ChangeEvent event) {
+		long start = FIRE_CHANGE_EVENT_TIMER.start();
+		try {
+			CHANGE_EVENTS.increment();
+			this.forgetChangedIngredients(event);
+
+			FlightEvents.ChangeFanOut fanOut = new FlightEvents.ChangeFanOut();
+			fanOut.begin();
+
+			// call all listeners
+			int listeners = 0;
+			for (ChangeListener listener : this.changeListeners) {
+				listener.stateChanged(event);
+				listeners++;
+			}
+
+			fanOut.end();
+			if (fanOut.shouldCommit()) {
+				if (event instanceof DatabaseChangeEvent) {
+					DatabaseChangeEvent change = (DatabaseChangeEvent) event;
+					fanOut.kind = change.getKind().name();
+					fanOut.operation = change.getOperation().name();
+					fanOut.itemID = change.getID();
+				}
+				fanOut.listeners = listeners;
+				fanOut.commit();
+			}
+		} finally {
+			FIRE_CHANGE_EVENT_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Drops the shared instances of ingredients that the change leaves out of
+	 * date, before the listeners reload them. Updated ingredients need not be
+	 * dropped, they are replaced when parsed again.
+	 * 
+	 * @param event
+	 *            the change to the database
+	 */
+	private void forgetChangedIngredients(ChangeEvent event) {
+		if (event instanceof DatabaseChangeEvent) {
+			DatabaseChangeEvent change = (DatabaseChangeEvent) event;
+			if (change.getKind() == DatabaseChangeEvent.Kind.INGREDIENT
+					&& change.getOperation() == DatabaseChangeEvent.Operation.DELETE) {
+				this.ingredientMap.remove(change.getID());
+			}
+		} else {
+			// unknown change, everything is reloaded
+			this.ingredientMap.clear();
 		}
 	}
 
@@ -562,10 +1725,12 @@ class DatabaseConnector {
 	 * @param e
 	 */
 	private void handleSQLException(SQLException e) {
+		SQL_ERRORS.increment();
+
 		// Also print the stack trace for debugging purposes
 		e.printStackTrace();
 
-		String title = "SQL Error: " + e.getLocalizedMessage();
+		final String title = "SQL Error: " + e.getLocalizedMessage();
 
 		String message = "An SQL Error occurred.";
 		do {
@@ -581,9 +1746,21 @@ class DatabaseConnector {
 			}
 		} while ((e = e.getNextException()) != null);
 
-		// Show an error message dialog about the error.
-		JOptionPane.showMessageDialog(null, message, title,
-				JOptionPane.ERROR_MESSAGE);
+		// Show an error message dialog about the error, on the EDT.
+		final String dialogMessage = message;
+		Runnable showDialog = new Runnable() {
+			@Override
+			public void run() {
+				JOptionPane.showMessageDialog(null, dialogMessage, title,
+						JOptionPane.ERROR_MESSAGE);
+			}
+		};
+		if (SwingUtilities.isEventDispatchThread()) {
+			showDialog.run();
+		} else {
+			// don't hold up the database thread while the dialog is open
+			SwingUtilities.invokeLater(showDialog);
+		}
 
 	}
 
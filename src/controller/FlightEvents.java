@@ -0,0 +1,124 @@
+package controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events of the controller, shown under "Sipper" in
+ * a recording. An event only costs anything while a recording has it
+ * enabled, so they are emitted from the code paths themselves:
+ * 
+ * <pre>
+ * FlightEvents.Query event = new FlightEvents.Query();
+ * event.begin();
+ * // run the query
+ * event.finish(sql, rows);
+ * </pre>
+ * 
+ * A recording is started as usual, for instance with
+ * <code>-XX:StartFlightRecording=filename=sipper.jfr</code>.
+ * 
+ * @author 217262
+ */
+class FlightEvents {
+
+	/**
+	 * The category of all events of the application.
+	 */
+	static final String CATEGORY = "Sipper";
+
+	/**
+	 * Only holds the events.
+	 */
+	private FlightEvents() {
+	}
+
+	/**
+	 * A statement run on the database.
+	 */
+	@Name("lime.sipper.DatabaseQuery")
+	@Label("Database Query")
+	@Description("A statement run on the database, with the rows it read or wrote")
+	@Category({ CATEGORY, "Database" })
+	@StackTrace(false)
+	static class Query extends Event {
+
+		@Label("SQL")
+		@Description("The parameterized SQL of the statement")
+		String sql;
+
+		@Label("Rows")
+		@Description("The rows read, or the rows written by an update")
+		long rows;
+
+		/**
+		 * Ends the event and commits it, if it is enabled and long enough.
+		 * 
+		 * @param sql
+		 *            the SQL of the statement
+		 * @param rows
+		 *            the rows read or written
+		 */
+		void finish(String sql, long rows) {
+			this.end();
+			if (this.shouldCommit()) {
+				this.sql = sql;
+				this.rows = rows;
+				this.commit();
+			}
+		}
+	}
+
+	/**
+	 * A change of the database handed to its listeners.
+	 */
+	@Name("lime.sipper.ChangeFanOut")
+	@Label("Change Event Fan-out")
+	@Description("A change event of the database handed to all its listeners")
+	@Category({ CATEGORY, "Database" })
+	static class ChangeFanOut extends Event {
+
+		@Label("Kind")
+		@Description("The kind of the changed item, empty if unknown")
+		String kind;
+
+		@Label("Operation")
+		@Description("The change to the item, empty if unknown")
+		String operation;
+
+		@Label("Item ID")
+		int itemID;
+
+		@Label("Listeners")
+		int listeners;
+	}
+
+	/**
+	 * A list of {@link AvailableItems} replaced with a fresh one, from
+	 * starting to load it until the new one has been set on the EDT.
+	 */
+	@Name("lime.sipper.ListRefresh")
+	@Label("List Refresh")
+	@Description("A list of available items loaded from the database and set on the EDT")
+	@Category({ CATEGORY, "Lists" })
+	@StackTrace(false)
+	static class ListRefresh extends Event {
+
+		@Label("Kind")
+		String kind;
+
+		@Label("Size")
+		@Description("The number of items in the new list")
+		int size;
+
+		@Label("Load Time")
+		@Description("How much of the refresh went to loading the list")
+		@Timespan
+		long loadNanos;
+	}
+}
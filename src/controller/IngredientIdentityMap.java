@@ -0,0 +1,130 @@
+package controller;
+
+import model.Amount;
+import model.Ingredient;
+
+/**
+ * Keeps a single live {@link Ingredient} instance per ingredient ID, shared by
+ * the list of available ingredients and the ingredients of every recipe. A
+ * catalog where thousands of recipes use the same ingredient then holds one
+ * instance of it instead of one per recipe, so the memory used for
+ * ingredients grows with the number of ingredients, not with the number of
+ * rows of the relationship table. <br>
+ * Parsed ingredients are passed through {@link #intern(Ingredient)}, which
+ * returns the shared instance as long as it still matches the parsed one.
+ * Shared instances are never changed in place, since they are read on the
+ * EDT and sorted by name in lists and tables: an ingredient that has changed
+ * in the database replaces the shared instance with the newly parsed one, and
+ * the recipes holding the old one are reloaded when the change is announced.
+ * 
+ * @author 217262
+ */
+class IngredientIdentityMap {
+
+	private static final Metrics.Counter HITS = Metrics.getInstance().counter(
+			"ingredientMap.hits");
+	private static final Metrics.Counter MISSES = Metrics.getInstance()
+			.counter("ingredientMap.misses");
+
+	/**
+	 * The shared instances, keyed by ID. Ingredients are parsed on several
+	 * threads, so the map is only used while synchronized on it.
+	 */
+	private final IntObjectMap<Ingredient> ingredients = new IntObjectMap<Ingredient>();
+
+	/**
+	 * Gets the shared instance of a parsed ingredient.
+	 * 
+	 * @param parsed
+	 *            an ingredient as it is stored in the database
+	 * @return the shared instance with the same ID, or the parsed ingredient
+	 *         itself if there was none or the shared one no longer matches
+	 *         the database. In the latter cases the parsed ingredient becomes
+	 *         the shared instance.
+	 */
+	Ingredient intern(Ingredient parsed) {
+		if (parsed.getID() == null) {
+			// not stored, so nothing to share it with
+			return parsed;
+		}
+
+		synchronized (this.ingredients) {
+			Ingredient shared = this.ingredients.get(parsed.getID());
+			if (shared != null && hasSameValues(shared, parsed)) {
+				HITS.increment();
+				return shared;
+			}
+			this.ingredients.put(parsed.getID(), parsed);
+		}
+		MISSES.increment();
+		return parsed;
+	}
+
+	/**
+	 * Forgets the shared instance of an ingredient, once it has been deleted.
+	 * 
+	 * @param ID
+	 *            ID number of the ingredient
+	 */
+	void remove(int ID) {
+		synchronized (this.ingredients) {
+			this.ingredients.remove(ID);
+		}
+	}
+
+	/**
+	 * Forgets all shared instances, when the state of the database is not
+	 * known and everything is to be reloaded.
+	 */
+	void clear() {
+		synchronized (this.ingredients) {
+			this.ingredients.clear();
+		}
+	}
+
+	/**
+	 * @return the number of shared instances
+	 */
+	int size() {
+		synchronized (this.ingredients) {
+			return this.ingredients.size();
+		}
+	}
+
+	/**
+	 * @param a
+	 *            an ingredient
+	 * @param b
+	 *            another ingredient with the same ID
+	 * @return whether every field of the ingredients is the same, so that
+	 *         either can be shown in place of the other
+	 */
+	private static boolean hasSameValues(Ingredient a, Ingredient b) {
+		return equal(a.getName(), b.getName())
+				&& Double.compare(a.getAlcoholContent(), b.getAlcoholContent()) == 0
+				&& hasSameValues(a.getContainerSize(), b.getContainerSize())
+				&& Double.compare(a.getContainerPrize(), b.getContainerPrize()) == 0
+				&& equal(a.getStore(), b.getStore())
+				&& equal(a.getComment(), b.getComment());
+	}
+
+	/**
+	 * @return whether the amounts have the same quantity in the same unit.
+	 *         {@link Amount#equals(Object)} would also match the same quantity
+	 *         in another unit, which is shown differently.
+	 */
+	private static boolean hasSameValues(Amount a, Amount b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		return a.getUnit() == b.getUnit()
+				&& Double.compare(a.getQuantity(), b.getQuantity()) == 0;
+	}
+
+	/**
+	 * @return whether the strings are equal or both <code>null</code>
+	 */
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,501 @@
+package controller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.swing.event.ChangeEvent;
+
+import model.Amount;
+import model.Ingredient;
+import model.Unit;
+
+/**
+ * Imports ingredients in bulk from price lists in CSV or JSON. The input is
+ * streamed through a {@link RecordReader}, so only one batch of ingredients is
+ * held in memory at a time, and each batch is saved in a single transaction.
+ * Listeners of the database are informed once, after the last batch. <br>
+ * The fields of a row are named by {@link #NAME_FIELD}, {@link #PRICE_FIELD},
+ * {@link #SIZE_FIELD}, {@link #UNIT_FIELD}, {@link #ALCOHOL_FIELD},
+ * {@link #STORE_FIELD} and {@link #COMMENT_FIELD}. Only the name is required.
+ * An ingredient with the same name as a stored one replaces it, otherwise it
+ * is added as a new one. Names are compared without surrounding whitespace.
+ * Alcohol contents are fractions like 0.4, or percentages like
+ * <code>40%</code>. The size can also be given together with its unit,
+ * like <code>70 cl</code>, and numbers can have a decimal comma. Rows that
+ * cannot be read as ingredients are skipped and reported in the
+ * {@link Summary}. <br>
+ * An export of the catalog by {@link CatalogWriter} can be imported as well:
+ * its recipes are skipped by their {@link #RECORD_FIELD} or
+ * {@link #TYPE_FIELD}, and only its ingredients are imported.
+ * 
+ * @author 217262
+ */
+public class IngredientImporter {
+
+	public static final String NAME_FIELD = "name";
+	public static final String PRICE_FIELD = "price";
+	public static final String SIZE_FIELD = "size";
+	public static final String UNIT_FIELD = "unit";
+	public static final String ALCOHOL_FIELD = "alcohol";
+	public static final String STORE_FIELD = "store";
+	public static final String COMMENT_FIELD = "comment";
+	/**
+	 * The field telling what a row of a CSV export of the catalog is, see
+	 * {@link CatalogWriter}. Rows without it are ingredients.
+	 */
+	public static final String RECORD_FIELD = "record";
+	/**
+	 * The field telling what an object of a JSON export of the catalog is.
+	 * Objects without it are ingredients.
+	 */
+	public static final String TYPE_FIELD = "type";
+	/** The value of {@link #RECORD_FIELD} and {@link #TYPE_FIELD} for ingredients */
+	public static final String INGREDIENT_RECORD = "ingredient";
+
+	/**
+	 * Number of ingredients saved in a transaction by default.
+	 */
+	static final int DEFAULT_BATCH_SIZE = 5000;
+
+	/**
+	 * The encoding of the imported files.
+	 */
+	private static final Charset ENCODING = Charset.forName("UTF-8");
+
+	/**
+	 * Names of units other than those of {@link Unit}, in upper case.
+	 */
+	private static final Map<String, Unit> UNIT_ALIASES = new HashMap<String, Unit>();
+	static {
+		UNIT_ALIASES.put("LITER", Unit.L);
+		UNIT_ALIASES.put("LITRE", Unit.L);
+		UNIT_ALIASES.put("LTR", Unit.L);
+		UNIT_ALIASES.put("TBSP", Unit.TBPS);
+		UNIT_ALIASES.put("FLOZ", Unit.OZ);
+	}
+
+	private final DatabaseConnector database;
+	private final int batchSize;
+
+	/**
+	 * Creates an importer saving the ingredients in batches of the default
+	 * size.
+	 */
+	public IngredientImporter() {
+		this(DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates an importer saving the ingredients in batches of the given size.
+	 * 
+	 * @param batchSize
+	 *            number of ingredients saved in a transaction
+	 */
+	IngredientImporter(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Invalid batch size: "
+					+ batchSize);
+		}
+		this.database = DatabaseConnector.getInstance();
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Imports a file, whose format is chosen by its extension:
+	 * <code>.csv</code> for CSV, <code>.json</code>, <code>.jsonl</code> or
+	 * <code>.ndjson</code> for JSON. A further <code>.gz</code> extension
+	 * means the file is compressed with gzip.
+	 * 
+	 * @param file
+	 *            the file to import
+	 * @return the summary of the import
+	 * @throws IOException
+	 *             if reading the file failed or it is malformed, in which case
+	 *             the batches before the error have been saved
+	 */
+	public Summary importFile(File file) throws IOException {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		InputStream in = new FileInputStream(file);
+		try {
+			if (name.endsWith(".gz")) {
+				in = new GZIPInputStream(in, 64 * 1024);
+				name = name.substring(0, name.length() - 3);
+			}
+
+			if (name.endsWith(".csv")) {
+				return this.importCsv(in);
+			}
+			if (name.endsWith(".json") || name.endsWith(".jsonl")
+					|| name.endsWith(".ndjson")) {
+				return this.importJson(in);
+			}
+			throw new IllegalArgumentException("Unknown file type: "
+					+ file.getName());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Imports ingredients from CSV with a row of field names.
+	 * 
+	 * @param in
+	 *            the CSV in UTF-8, which is closed afterwards
+	 * @return the summary of the import
+	 * @throws IOException
+	 *             if reading failed or the input is malformed, in which case
+	 *             the batches before the error have been saved
+	 * @see RecordReader.CsvReader
+	 */
+	public Summary importCsv(InputStream in) throws IOException {
+		return this.importRecords(new RecordReader.CsvReader(this.decode(in)));
+	}
+
+	/**
+	 * Imports ingredients from JSON, either an array of objects or one object
+	 * after another.
+	 * 
+	 * @param in
+	 *            the JSON in UTF-8, which is closed afterwards
+	 * @return the summary of the import
+	 * @throws IOException
+	 *             if reading failed or the input is malformed, in which case
+	 *             the batches before the error have been saved
+	 * @see RecordReader.JsonReader
+	 */
+	public Summary importJson(InputStream in) throws IOException {
+		return this.importRecords(new RecordReader.JsonReader(this.decode(in)));
+	}
+
+	/**
+	 * @return a reader decoding the input
+	 */
+	private Reader decode(InputStream in) {
+		return new InputStreamReader(in, ENCODING);
+	}
+
+	/**
+	 * Reads all records, saving them in batches.
+	 */
+	private Summary importRecords(RecordReader reader) throws IOException {
+		Summary summary = new Summary();
+		try {
+			Map<String, Integer> IDsByName = this.database
+					.getIngredientIDsByName();
+			if (IDsByName == null) {
+				return summary;
+			}
+
+			// by name, so that a later row with the same name replaces one
+			Map<String, Ingredient> batch = new LinkedHashMap<String, Ingredient>();
+			while (reader.next()) {
+				if (!isIngredient(reader)) {
+					summary.skipped++;
+					continue;
+				}
+				try {
+					Ingredient ingredient = this.toIngredient(reader,
+							IDsByName);
+					batch.put(ingredient.getName(), ingredient);
+				} catch (IllegalArgumentException e) {
+					summary.reject(reader.getLineNumber(), e.getMessage());
+				}
+
+				if (batch.size() >= this.batchSize) {
+					if (!this.saveBatch(batch, IDsByName, summary)) {
+						return summary;
+					}
+				}
+			}
+			if (this.saveBatch(batch, IDsByName, summary)) {
+				summary.complete = true;
+			}
+			return summary;
+		} finally {
+			reader.close();
+			if (summary.getInserted() > 0 || summary.getUpdated() > 0) {
+				// the extent of the import is too large to describe exactly
+				this.database.fireChangeEvent(new ChangeEvent(this));
+			}
+		}
+	}
+
+	/**
+	 * Saves the batch in a transaction, and empties it.
+	 * 
+	 * @return <code>false</code> if saving failed
+	 */
+	private boolean saveBatch(Map<String, Ingredient> batch,
+			Map<String, Integer> IDsByName, Summary summary) {
+		if (batch.isEmpty()) {
+			return true;
+		}
+
+		List<Ingredient> ingredients = new ArrayList<Ingredient>(
+				batch.values());
+		batch.clear();
+		int[] IDs = this.database.saveIngredients(ingredients);
+		if (IDs == null) {
+			return false;
+		}
+
+		for (int i = 0; i < IDs.length; i++) {
+			Ingredient ingredient = ingredients.get(i);
+			if (ingredient.getID() == null) {
+				// later rows with the same name update this one
+				IDsByName.put(ingredient.getName(), IDs[i]);
+				summary.inserted++;
+			} else {
+				summary.updated++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Maps the current record to an ingredient, with the ID of the stored
+	 * ingredient of the same name if there is one.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the record is not a valid ingredient
+	 */
+	private Ingredient toIngredient(RecordReader record,
+			Map<String, Integer> IDsByName) {
+		String name = trimToNull(record.get(NAME_FIELD));
+		if (name == null) {
+			throw new IllegalArgumentException("Missing " + NAME_FIELD);
+		}
+
+		double price = parseNumber(record.get(PRICE_FIELD), PRICE_FIELD);
+		Amount size = parseAmount(record.get(SIZE_FIELD),
+				record.get(UNIT_FIELD));
+		double alcoholContent = parseNumber(record.get(ALCOHOL_FIELD),
+				ALCOHOL_FIELD);
+
+		// the database stores blanks rather than empty texts
+		String store = trimToNull(record.get(STORE_FIELD));
+		String comment = trimToNull(record.get(COMMENT_FIELD));
+
+		return new Ingredient(IDsByName.get(name), name, alcoholContent, size,
+				price, store == null ? " " : store, comment == null ? " "
+						: comment);
+	}
+
+	/**
+	 * @return whether the current record is an ingredient rather than another
+	 *         kind of record of a catalog export
+	 */
+	private static boolean isIngredient(RecordReader record) {
+		String kind = trimToNull(record.get(RECORD_FIELD));
+		if (kind == null) {
+			kind = trimToNull(record.get(TYPE_FIELD));
+		}
+		return kind == null || kind.equalsIgnoreCase(INGREDIENT_RECORD);
+	}
+
+	/**
+	 * Parses a size either from a number and a unit, or from a number followed
+	 * by its unit in the same text.
+	 * 
+	 * @param size
+	 *            the size, <code>null</code> or empty for none
+	 * @param unit
+	 *            the unit, <code>null</code> or empty if given with the size
+	 * @return the parsed size, 0 ml if there is none
+	 */
+	static Amount parseAmount(String size, String unit) {
+		size = trimToNull(size);
+		unit = trimToNull(unit);
+		if (size == null) {
+			return new Amount(0, unit == null ? Unit.ML : parseUnit(unit));
+		}
+
+		if (unit == null) {
+			// split "70 cl" or "0,7l" at the first letter
+			int split = 0;
+			while (split < size.length()
+					&& !Character.isLetter(size.charAt(split))) {
+				split++;
+			}
+			if (split == size.length()) {
+				throw new IllegalArgumentException("Missing " + UNIT_FIELD
+						+ " of " + SIZE_FIELD + " '" + size + "'");
+			}
+			unit = size.substring(split);
+			size = size.substring(0, split);
+		}
+
+		return new Amount(parseNumber(size, SIZE_FIELD), parseUnit(unit));
+	}
+
+	/**
+	 * Parses a unit by its name, ignoring case, spaces and dots.
+	 * 
+	 * @param unit
+	 *            the name of the unit
+	 * @return the unit
+	 * @throws IllegalArgumentException
+	 *             if there is no such unit
+	 */
+	static Unit parseUnit(String unit) {
+		String key = unit.toUpperCase(Locale.ROOT).replace(" ", "")
+				.replace(".", "");
+		Unit alias = UNIT_ALIASES.get(key);
+		if (alias != null) {
+			return alias;
+		}
+		try {
+			return Unit.valueOf(key);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown " + UNIT_FIELD + " '"
+					+ unit + "'");
+		}
+	}
+
+	/**
+	 * Parses a number, which may have a decimal comma instead of a point, and
+	 * a percent sign after it. A percentage is returned as a fraction, the
+	 * way alcohol contents are stored, so <code>40%</code> is 0.4.
+	 * 
+	 * @param value
+	 *            the number, <code>null</code> or empty for 0
+	 * @param field
+	 *            the name of the field, for error messages
+	 * @return the parsed number, divided by 100 if it is a percentage
+	 * @throws IllegalArgumentException
+	 *             if the value is not a number
+	 */
+	static double parseNumber(String value, String field) {
+		String number = trimToNull(value);
+		if (number == null) {
+			return 0;
+		}
+		boolean percent = number.endsWith("%");
+		if (percent) {
+			number = number.substring(0, number.length() - 1).trim();
+		}
+		if (number.indexOf('.') < 0) {
+			number = number.replace(',', '.');
+		}
+
+		try {
+			double parsed = Double.parseDouble(number);
+			if (Double.isNaN(parsed) || Double.isInfinite(parsed)) {
+				throw new NumberFormatException();
+			}
+			return percent ? parsed / 100 : parsed;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + field + " '"
+					+ value + "'");
+		}
+	}
+
+	/**
+	 * @return the text without surrounding whitespace, or <code>null</code> if
+	 *         nothing is left
+	 */
+	private static String trimToNull(String text) {
+		if (text == null) {
+			return null;
+		}
+		text = text.trim();
+		return text.isEmpty() ? null : text;
+	}
+
+	/**
+	 * The outcome of an import.
+	 * 
+	 * @author 217262
+	 */
+	public static class Summary {
+
+		/**
+		 * Number of rejected rows whose errors are kept.
+		 */
+		private static final int MAX_ERRORS = 100;
+
+		private int inserted;
+		private int updated;
+		private int rejected;
+		private int skipped;
+		private boolean complete;
+		private final List<String> errors = new ArrayList<String>();
+
+		/**
+		 * Records a row that was skipped.
+		 */
+		private void reject(int line, String error) {
+			this.rejected++;
+			if (this.errors.size() < MAX_ERRORS) {
+				this.errors.add("Line " + line + ": " + error);
+			}
+		}
+
+		/**
+		 * @return the number of new ingredients added
+		 */
+		public int getInserted() {
+			return this.inserted;
+		}
+
+		/**
+		 * @return the number of stored ingredients replaced
+		 */
+		public int getUpdated() {
+			return this.updated;
+		}
+
+		/**
+		 * @return the number of rows skipped as invalid
+		 */
+		public int getRejected() {
+			return this.rejected;
+		}
+
+		/**
+		 * @return the number of rows skipped as other records than
+		 *         ingredients, like the recipes of a catalog export
+		 */
+		public int getSkipped() {
+			return this.skipped;
+		}
+
+		/**
+		 * @return whether all rows were read and saved, <code>false</code> if
+		 *         saving a batch failed
+		 */
+		public boolean isComplete() {
+			return this.complete;
+		}
+
+		/**
+		 * @return the reasons for skipping the first rejected rows
+		 */
+		public List<String> getErrors() {
+			return Collections.unmodifiableList(this.errors);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString() */
+		@Override
+		public String toString() {
+			return this.inserted + " added, " + this.updated + " updated, "
+					+ this.rejected + " rejected"
+					+ (this.skipped == 0 ? "" : ", " + this.skipped + " skipped")
+					+ (this.complete ? "" : ", incomplete");
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive <code>int</code> keys to objects, using open
+ * addressing with linear probing. Unlike a <code>HashMap&lt;Integer, V&gt;</code>
+ * it needs no boxed keys or entry objects, so looking up an item by ID is a
+ * couple of array reads. <br>
+ * <code>null</code> values are not allowed, as a <code>null</code> slot marks
+ * an empty one.
+ * 
+ * @author 217262
+ * @param <V>
+ *            type of the values in the map
+ */
+class IntObjectMap<V> {
+
+	/**
+	 * The table is doubled when it gets fuller than this, keeping the probe
+	 * sequences short.
+	 */
+	private static final float LOAD_FACTOR = 0.5f;
+	private static final int MIN_CAPACITY = 16;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	/** Number of entries at which to grow the table */
+	private int threshold;
+
+	/**
+	 * Creates an empty map.
+	 */
+	IntObjectMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty map with room for the given number of entries before
+	 * it has to grow.
+	 * 
+	 * @param expectedSize
+	 *            the number of entries expected
+	 */
+	IntObjectMap(int expectedSize) {
+		this.allocate(tableSizeFor(expectedSize));
+	}
+
+	/**
+	 * @param key
+	 *            the key to look up
+	 * @return the value mapped to the key, or <code>null</code> if there is
+	 *         none
+	 */
+	@SuppressWarnings("unchecked")
+	V get(int key) {
+		int mask = this.keys.length - 1;
+		for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			Object value = this.values[slot];
+			if (value == null) {
+				return null;
+			}
+			if (this.keys[slot] == key) {
+				return (V) value;
+			}
+		}
+	}
+
+	/**
+	 * Maps the key to the value, replacing any earlier mapping.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value, must not be <code>null</code>
+	 * @return the previous value mapped to the key, or <code>null</code> if
+	 *         there was none
+	 */
+	@SuppressWarnings("unchecked")
+	V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("null values are not allowed");
+		}
+
+		int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while (this.values[slot] != null) {
+			if (this.keys[slot] == key) {
+				V previous = (V) this.values[slot];
+				this.values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		if (++this.size > this.threshold) {
+			this.rehash(this.keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the mapping of the key, if any.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the value that was mapped to the key, or <code>null</code> if
+	 *         there was none
+	 */
+	@SuppressWarnings("unchecked")
+	V remove(int key) {
+		int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while (this.values[slot] != null) {
+			if (this.keys[slot] == key) {
+				V previous = (V) this.values[slot];
+				this.closeGap(slot);
+				this.size--;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of mappings in the map
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the values of all mappings in a new list, in no particular
+	 *         order
+	 */
+	@SuppressWarnings("unchecked")
+	ArrayList<V> values() {
+		ArrayList<V> values = new ArrayList<V>(this.size);
+		for (Object value : this.values) {
+			if (value != null) {
+				values.add((V) value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Removes all mappings, keeping the current capacity.
+	 */
+	void clear() {
+		Arrays.fill(this.values, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Empties the slot and moves later entries of the same probe sequence
+	 * back into it, so that lookups never need to skip removed entries.
+	 */
+	private void closeGap(int gap) {
+		int mask = this.keys.length - 1;
+		int slot = gap;
+		while (true) {
+			slot = (slot + 1) & mask;
+			Object value = this.values[slot];
+			if (value == null) {
+				break;
+			}
+			int home = hash(this.keys[slot]) & mask;
+			// move the entry if its home slot is not between gap and slot
+			if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+				this.keys[gap] = this.keys[slot];
+				this.values[gap] = value;
+				gap = slot;
+			}
+		}
+		this.values[gap] = null;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+
+		this.allocate(capacity);
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (this.values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * @return the smallest power of two table size that holds the given
+	 *         number of entries without growing
+	 */
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Spreads the bits of the key, since IDs are mostly consecutive numbers.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
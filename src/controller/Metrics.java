@@ -0,0 +1,511 @@
+package controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A registry of the metrics of the application: {@link Counter}s of things
+ * that happen, and {@link Timer}s recording how long operations take in
+ * {@link Histogram}s. Metrics are created on first use and live as long as
+ * the application, and recording never locks or allocates, so that timing
+ * even the fastest calls costs next to nothing. <br>
+ * Every metric is published over JMX, under the domain {@value #JMX_DOMAIN},
+ * unless the system property {@value #JMX_PROPERTY} is <code>false</code>.
+ * All metrics are also written to the log periodically if the system
+ * property {@value #REPORT_PROPERTY} gives the period in seconds, for
+ * instance <code>-Dsipper.metrics.report=60</code>.
+ * 
+ * @author 217262
+ */
+public class Metrics {
+
+	/**
+	 * System property for the period of reports to the log, in seconds. No
+	 * reports are written by default.
+	 */
+	public static final String REPORT_PROPERTY = "sipper.metrics.report";
+	/**
+	 * System property for switching off publishing the metrics over JMX.
+	 */
+	public static final String JMX_PROPERTY = "sipper.metrics.jmx";
+	/**
+	 * The JMX domain of the metrics.
+	 */
+	public static final String JMX_DOMAIN = "lime.sipper";
+
+	private static final Logger LOGGER = Logger.getLogger(Metrics.class
+			.getName());
+
+	/**
+	 * The singleton instance.
+	 */
+	private static final Metrics SINGLETON_INSTANCE = new Metrics();
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+	/** Where the metrics are published, <code>null</code> if they are not. */
+	private final MBeanServer mbeanServer;
+
+	/**
+	 * Singleton accessor.
+	 * 
+	 * @return the singleton instance
+	 */
+	public static Metrics getInstance() {
+		return SINGLETON_INSTANCE;
+	}
+
+	/**
+	 * Private constructor that starts the reports, if they are asked for.
+	 */
+	private Metrics() {
+		String jmx = System.getProperty(JMX_PROPERTY);
+		this.mbeanServer = jmx == null || Boolean.parseBoolean(jmx) ? ManagementFactory
+				.getPlatformMBeanServer() : null;
+
+		long period = Long.getLong(REPORT_PROPERTY, 0);
+		if (period > 0) {
+			this.startReports(period);
+		}
+	}
+
+	/**
+	 * Gets the counter with the given name, creating it if there is none.
+	 * Callers should keep the counter instead of looking it up every time.
+	 * 
+	 * @param name
+	 *            the name of the counter, like <code>db.errors</code>
+	 * @return the counter
+	 */
+	public Counter counter(String name) {
+		Counter counter = this.counters.get(name);
+		if (counter == null) {
+			Counter created = new Counter();
+			counter = this.counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+				this.publish("Counter", name, counter);
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Gets the timer with the given name, creating it if there is none.
+	 * Callers should keep the timer instead of looking it up every time.
+	 * 
+	 * @param name
+	 *            the name of the timer, like <code>db.getRecipe</code>
+	 * @return the timer
+	 */
+	public Timer timer(String name) {
+		Timer timer = this.timers.get(name);
+		if (timer == null) {
+			Timer created = new Timer();
+			timer = this.timers.putIfAbsent(name, created);
+			if (timer == null) {
+				timer = created;
+				this.publish("Timer", name, timer);
+			}
+		}
+		return timer;
+	}
+
+	/**
+	 * @return all counters, sorted by name
+	 */
+	public SortedMap<String, Counter> getCounters() {
+		return new TreeMap<String, Counter>(this.counters);
+	}
+
+	/**
+	 * @return all timers, sorted by name
+	 */
+	public SortedMap<String, Timer> getTimers() {
+		return new TreeMap<String, Timer>(this.timers);
+	}
+
+	/**
+	 * Registers a metric with the MBean server, if the metrics are published.
+	 */
+	private void publish(String type, String name, Object metric) {
+		if (this.mbeanServer == null) {
+			return;
+		}
+		try {
+			this.mbeanServer.registerMBean(metric, new ObjectName(JMX_DOMAIN
+					+ ":type=" + type + ",name=" + name));
+		} catch (JMException e) {
+			// the metric still works, it just cannot be seen over JMX
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes a report of the metrics to the log periodically, on a daemon
+	 * thread of its own.
+	 * 
+	 * @param periodSeconds
+	 *            the time between reports, in seconds
+	 */
+	private void startReports(long periodSeconds) {
+		ScheduledExecutorService reporter = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"Sipper metrics reporter");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		reporter.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				String report = Metrics.this.report();
+				if (!report.isEmpty()) {
+					LOGGER.info("Metrics:\n" + report);
+				}
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Reports the metrics that have recorded anything, one per line, with the
+	 * times in microseconds.
+	 * 
+	 * @return the report, empty if nothing has been recorded
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for (Entry<String, Timer> entry : this.getTimers().entrySet()) {
+			Timer timer = entry.getValue();
+			if (timer.getCount() > 0) {
+				report.append(String.format(Locale.ROOT,
+						"%s: count=%d mean=%.1fus p50=%.1fus p90=%.1fus"
+								+ " p99=%.1fus max=%.1fus%n", entry.getKey(),
+						timer.getCount(), timer.getMeanMicros(),
+						timer.getP50Micros(), timer.getP90Micros(),
+						timer.getP99Micros(), timer.getMaxMicros()));
+			}
+		}
+		for (Entry<String, Counter> entry : this.getCounters().entrySet()) {
+			if (entry.getValue().getCount() > 0) {
+				report.append(String.format(Locale.ROOT, "%s: count=%d%n",
+						entry.getKey(), entry.getValue().getCount()));
+			}
+		}
+		return report.toString();
+	}
+
+	/**
+	 * The attributes of a {@link Counter} published over JMX.
+	 */
+	public interface CounterMXBean {
+		/**
+		 * @return the count so far
+		 */
+		long getCount();
+	}
+
+	/**
+	 * A count of something happening, cheap to increment from many threads at
+	 * once.
+	 * 
+	 * @author 217262
+	 */
+	public static class Counter implements CounterMXBean {
+
+		private final LongAdder count = new LongAdder();
+
+		/**
+		 * Counts one more.
+		 */
+		public void increment() {
+			this.count.increment();
+		}
+
+		/**
+		 * @param amount
+		 *            the number to add to the count
+		 */
+		public void add(long amount) {
+			this.count.add(amount);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.Metrics.CounterMXBean#getCount() */
+		@Override
+		public long getCount() {
+			return this.count.sum();
+		}
+	}
+
+	/**
+	 * The attributes of a {@link Timer} published over JMX, with the times in
+	 * microseconds.
+	 */
+	public interface TimerMXBean {
+		/**
+		 * @return the number of times recorded
+		 */
+		long getCount();
+
+		/**
+		 * @return the average time
+		 */
+		double getMeanMicros();
+
+		/**
+		 * @return the median time
+		 */
+		double getP50Micros();
+
+		/**
+		 * @return the time 90 % of the times are at most
+		 */
+		double getP90Micros();
+
+		/**
+		 * @return the time 99 % of the times are at most
+		 */
+		double getP99Micros();
+
+		/**
+		 * @return the longest time
+		 */
+		double getMaxMicros();
+	}
+
+	/**
+	 * Times an operation, recording the times in nanoseconds in a
+	 * {@link Histogram}:
+	 * 
+	 * <pre>
+	 * long start = timer.start();
+	 * try {
+	 * 	// the operation
+	 * } finally {
+	 * 	timer.stop(start);
+	 * }
+	 * </pre>
+	 * 
+	 * @author 217262
+	 */
+	public static class Timer implements TimerMXBean {
+
+		private final Histogram histogram = new Histogram();
+
+		/**
+		 * @return the start time of an operation, for
+		 *         {@link #stop(long)}
+		 */
+		public long start() {
+			return System.nanoTime();
+		}
+
+		/**
+		 * Records the time since the operation started.
+		 * 
+		 * @param start
+		 *            the start time from {@link #start()}
+		 */
+		public void stop(long start) {
+			this.histogram.record(System.nanoTime() - start);
+		}
+
+		/**
+		 * @param nanos
+		 *            the time an operation took, in nanoseconds
+		 */
+		public void record(long nanos) {
+			this.histogram.record(nanos);
+		}
+
+		/**
+		 * @return the times recorded, in nanoseconds
+		 */
+		public Histogram getHistogram() {
+			return this.histogram;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.Metrics.TimerMXBean#getCount() */
+		@Override
+		public long getCount() {
+			return this.histogram.getCount();
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.Metrics.TimerMXBean#getMeanMicros() */
+		@Override
+		public double getMeanMicros() {
+			return this.histogram.getMean() / 1e3;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.Metrics.TimerMXBean#getP50Micros() */
+		@Override
+		public double getP50Micros() {
+			return this.histogram.getPercentile(0.5) / 1e3;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.Metrics.TimerMXBean#getP90Micros() */
+		@Override
+		public double getP90Micros() {
+			return this.histogram.getPercentile(0.9) / 1e3;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.Metrics.TimerMXBean#getP99Micros() */
+		@Override
+		public double getP99Micros() {
+			return this.histogram.getPercentile(0.99) / 1e3;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.Metrics.TimerMXBean#getMaxMicros() */
+		@Override
+		public double getMaxMicros() {
+			return this.histogram.getMax() / 1e3;
+		}
+	}
+
+	/**
+	 * A histogram of non-negative values, like the HdrHistogram: the values
+	 * are counted in buckets that grow with the values, 16 for each power of
+	 * two, so any value is known to within 1/16 of it while all values of a
+	 * <code>long</code> take less than a thousand buckets. Recording a value
+	 * is a few atomic operations, without locks or allocation. <br>
+	 * The statistics are read without stopping the recording, so they may
+	 * miss values recorded at the same time.
+	 * 
+	 * @author 217262
+	 */
+	public static class Histogram {
+
+		/** Each power of two is split in 2 to the power of this. */
+		private static final int SUB_BUCKET_BITS = 4;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		/** Enough buckets for {@link Long#MAX_VALUE} */
+		private static final int BUCKETS = (64 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		/**
+		 * @param value
+		 *            the value to record, negative values are recorded as 0
+		 */
+		public void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			this.counts.incrementAndGet(bucketOf(value));
+			this.sum.addAndGet(value);
+
+			long currentMax = this.max.get();
+			while (value > currentMax
+					&& !this.max.compareAndSet(currentMax, value)) {
+				currentMax = this.max.get();
+			}
+		}
+
+		/**
+		 * @return the index of the bucket of a non-negative value. The values
+		 *         below {@link #SUB_BUCKETS} have a bucket each, and each power
+		 *         of two above that is split into {@link #SUB_BUCKETS} buckets.
+		 */
+		static int bucketOf(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+			return ((shift + 1) << SUB_BUCKET_BITS)
+					+ (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		}
+
+		/**
+		 * @return the largest value in a bucket
+		 */
+		static long highestValueIn(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+			long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+			return lowest + (1L << shift) - 1;
+		}
+
+		/**
+		 * @return the number of values recorded
+		 */
+		public long getCount() {
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				count += this.counts.get(i);
+			}
+			return count;
+		}
+
+		/**
+		 * @return the average of the values, 0 if there are none
+		 */
+		public double getMean() {
+			long count = this.getCount();
+			return count == 0 ? 0 : (double) this.sum.get() / count;
+		}
+
+		/**
+		 * @return the largest value, 0 if there are none
+		 */
+		public long getMax() {
+			return this.max.get();
+		}
+
+		/**
+		 * @param fraction
+		 *            the fraction of the values, from 0 to 1
+		 * @return the smallest value that at least the given fraction of the
+		 *         values are at most, to within the precision of the buckets, or
+		 *         0 if there are no values
+		 */
+		public long getPercentile(double fraction) {
+			long[] snapshot = new long[BUCKETS];
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				snapshot[i] = this.counts.get(i);
+				count += snapshot[i];
+			}
+
+			long rank = Math.max(1, (long) Math.ceil(fraction * count));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += snapshot[i];
+				if (seen >= rank) {
+					return Math.min(highestValueIn(i), this.getMax());
+				}
+			}
+			return 0;
+		}
+	}
+}
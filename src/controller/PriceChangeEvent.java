@@ -0,0 +1,88 @@
+package controller;
+
+import java.util.Arrays;
+
+import javax.swing.event.ChangeEvent;
+
+import model.RecipeIngredients;
+
+/**
+ * A {@link ChangeEvent} telling which recipes have a new price, fired by the
+ * {@link RecipeCostEngine} when an ingredient price or the ingredients of a
+ * recipe change. Views showing prices only need to update the recipes named
+ * in the event. Views already following edits of the ingredients they show
+ * can tell the events caused by those edits with
+ * {@link #getEditedIngredients()}.
+ * 
+ * @author 217262
+ */
+public class PriceChangeEvent extends ChangeEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The recipes with a new price, sorted, or null for all of them */
+	private final int[] recipeIDs;
+	/**
+	 * The edited ingredients that caused the event, or null. Only compared
+	 * by identity, so not serialized.
+	 */
+	private final transient RecipeIngredients editedIngredients;
+
+	/**
+	 * Creates an event about the prices of some recipes.
+	 * 
+	 * @param source
+	 *            the engine pricing the recipes
+	 * @param recipeIDs
+	 *            IDs of the recipes with a new price in ascending order, or
+	 *            <code>null</code> if any price may have changed
+	 * @param editedIngredients
+	 *            the ingredients of a recipe whose edit changed its price, or
+	 *            <code>null</code> if something else changed
+	 */
+	PriceChangeEvent(Object source, int[] recipeIDs,
+			RecipeIngredients editedIngredients) {
+		super(source);
+		this.recipeIDs = recipeIDs;
+		this.editedIngredients = editedIngredients;
+	}
+
+	/**
+	 * @return IDs of the recipes with a new price in ascending order, or
+	 *         <code>null</code> if any price may have changed
+	 */
+	public int[] getRecipeIDs() {
+		return this.recipeIDs == null ? null : this.recipeIDs.clone();
+	}
+
+	/**
+	 * @return the ingredients of a recipe whose edit changed its price, or
+	 *         <code>null</code> if an ingredient or the lists changed
+	 */
+	public RecipeIngredients getEditedIngredients() {
+		return this.editedIngredients;
+	}
+
+	/**
+	 * @param recipeID
+	 *            ID number of a recipe, <code>null</code> for a recipe not yet
+	 *            saved
+	 * @return whether the price of the recipe may have changed
+	 */
+	public boolean affects(Integer recipeID) {
+		if (this.recipeIDs == null) {
+			return true;
+		}
+		return recipeID != null
+				&& Arrays.binarySearch(this.recipeIDs, recipeID) >= 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.EventObject#toString() */
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName()
+				+ (this.recipeIDs == null ? "[all]" : Arrays
+						.toString(this.recipeIDs));
+	}
+}
@@ -0,0 +1,335 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import model.Ingredient;
+import model.Recipe;
+import model.Unit;
+import controller.AvailableItems.AvailableIngredients;
+import controller.AvailableItems.AvailableRecipes;
+
+/**
+ * A read-only copy of the catalog in columns of primitives, for working out
+ * figures of every recipe at once. The ingredients are parallel arrays of
+ * unit prices and alcohol contents. The recipes are stored like a compressed
+ * sparse row matrix: the ingredients of the recipe at index <code>r</code>
+ * are the rows from <code>offsets[r]</code> up to
+ * <code>offsets[r + 1]</code>, each row giving the index of an ingredient
+ * and the amount of it in millilitres. <br>
+ * Pricing every recipe is then a single pass over the rows, without any of
+ * the maps and {@link model.Amount}s of the recipes, and without loading
+ * their ingredients one recipe at a time. A snapshot does not follow later
+ * changes, a new one has to be created for them.
+ * 
+ * @author 217262
+ */
+public class PricingSnapshot {
+
+	private static final Metrics.Timer CREATE_TIMER = Metrics.getInstance()
+			.timer("pricingSnapshot.create");
+
+	/** IDs of the ingredients in ascending order, by ingredient index */
+	private final int[] ingredientIDs;
+	/** The price of a millilitre of each ingredient */
+	private final double[] unitPrices;
+	/** The alcohol content of each ingredient, as a fraction */
+	private final double[] alcoholContents;
+
+	/** IDs of the recipes in ascending order, by recipe index */
+	private final int[] recipeIDs;
+	/** Where the rows of each recipe begin, and the end of the last one */
+	private final int[] offsets;
+	/** The ingredient index of each row */
+	private final int[] ingredientIndices;
+	/** The amount in millilitres of each row */
+	private final double[] millilitres;
+
+	/**
+	 * Creates a snapshot from finished columns.
+	 */
+	private PricingSnapshot(Builder builder) {
+		this.ingredientIDs = builder.ingredientIDs;
+		this.unitPrices = builder.unitPrices;
+		this.alcoholContents = builder.alcoholContents;
+		this.recipeIDs = builder.recipeIDs;
+		this.offsets = builder.offsets;
+		this.ingredientIndices = Arrays.copyOf(builder.ingredientIndices,
+				builder.rows);
+		this.millilitres = Arrays.copyOf(builder.millilitres, builder.rows);
+	}
+
+	/**
+	 * Creates a snapshot of the available ingredients and recipes as they are
+	 * now. The lists are copied right away, and the amounts of the
+	 * ingredients of every recipe are then read in one pass over the
+	 * database on the I/O thread. Must be called on the EDT.
+	 * 
+	 * @return the future snapshot, completed on the EDT, or completed
+	 *         exceptionally if the database could not be read
+	 */
+	public static CompletableFuture<PricingSnapshot> create() {
+		final long start = CREATE_TIMER.start();
+		final Builder builder = new Builder(AvailableIngredients.getInstance(),
+				AvailableRecipes.getInstance());
+		return AsyncDatabaseConnector.getInstance().submit(
+				new Callable<PricingSnapshot>() {
+					@Override
+					public PricingSnapshot call() {
+						try {
+							if (!DatabaseConnector.getInstance()
+									.loadRecipeAmounts(builder)) {
+								// a part of the rows would give wrong figures
+								throw new IllegalStateException(
+										"Could not read the recipe ingredients");
+							}
+							return builder.build();
+						} finally {
+							CREATE_TIMER.stop(start);
+						}
+					}
+				});
+	}
+
+	/**
+	 * @return the number of recipes in the snapshot
+	 */
+	public int getRecipeCount() {
+		return this.recipeIDs.length;
+	}
+
+	/**
+	 * @param recipeIndex
+	 *            index of a recipe in the snapshot
+	 * @return the ID of the recipe
+	 */
+	public int getRecipeID(int recipeIndex) {
+		return this.recipeIDs[recipeIndex];
+	}
+
+	/**
+	 * @param recipeID
+	 *            ID number of a recipe
+	 * @return the index of the recipe in the snapshot and in the arrays of
+	 *         figures, or a negative number if it is not in the snapshot
+	 */
+	public int indexOfRecipe(int recipeID) {
+		return Arrays.binarySearch(this.recipeIDs, recipeID);
+	}
+
+	/**
+	 * @return the number of ingredients in the snapshot
+	 */
+	public int getIngredientCount() {
+		return this.ingredientIDs.length;
+	}
+
+	/**
+	 * @return the number of ingredient rows of all recipes together
+	 */
+	public int getRowCount() {
+		return this.millilitres.length;
+	}
+
+	/**
+	 * Works out the price of every recipe.
+	 * 
+	 * @return the price of each recipe, by recipe index
+	 */
+	public double[] getPrices() {
+		return this.sumRows(this.unitPrices);
+	}
+
+	/**
+	 * Works out the volume of every recipe.
+	 * 
+	 * @return the total amount of the ingredients of each recipe in
+	 *         millilitres, by recipe index
+	 */
+	public double[] getVolumes() {
+		int recipes = this.recipeIDs.length;
+		double[] volumes = new double[recipes];
+		for (int r = 0; r < recipes; r++) {
+			double volume = 0;
+			for (int row = this.offsets[r], end = this.offsets[r + 1]; row < end; row++) {
+				volume += this.millilitres[row];
+			}
+			volumes[r] = volume;
+		}
+		return volumes;
+	}
+
+	/**
+	 * Works out the price of a millilitre of every recipe.
+	 * 
+	 * @return the price of each recipe divided by its volume, 0 for recipes
+	 *         without volume, by recipe index
+	 */
+	public double[] getCostsPerMillilitre() {
+		return this.perMillilitre(this.getPrices());
+	}
+
+	/**
+	 * Works out the alcohol content of every recipe, as mixed.
+	 * 
+	 * @return the alcohol content of each recipe as a fraction, 0 for recipes
+	 *         without volume, by recipe index
+	 */
+	public double[] getAlcoholContents() {
+		return this.perMillilitre(this.sumRows(this.alcoholContents));
+	}
+
+	/**
+	 * Adds up an ingredient figure times the amount of the ingredient over
+	 * the rows of each recipe.
+	 * 
+	 * @param perMillilitre
+	 *            the figure of a millilitre of each ingredient
+	 * @return the sum of each recipe, by recipe index
+	 */
+	private double[] sumRows(double[] perMillilitre) {
+		int recipes = this.recipeIDs.length;
+		double[] sums = new double[recipes];
+		for (int r = 0; r < recipes; r++) {
+			double sum = 0;
+			for (int row = this.offsets[r], end = this.offsets[r + 1]; row < end; row++) {
+				sum += perMillilitre[this.ingredientIndices[row]]
+						* this.millilitres[row];
+			}
+			sums[r] = sum;
+		}
+		return sums;
+	}
+
+	/**
+	 * Divides sums of recipes by their volumes, in place.
+	 * 
+	 * @param sums
+	 *            the sum of each recipe, by recipe index
+	 * @return the same array, holding the sums per millilitre
+	 */
+	private double[] perMillilitre(double[] sums) {
+		double[] volumes = this.getVolumes();
+		for (int r = 0; r < sums.length; r++) {
+			sums[r] = volumes[r] == 0 ? 0 : sums[r] / volumes[r];
+		}
+		return sums;
+	}
+
+	/**
+	 * Collects the columns of a snapshot. The ingredients and recipes are
+	 * copied from the lists on the EDT when the builder is created, and the
+	 * rows are then added on the I/O thread, grouped by recipe in ascending
+	 * order of recipe ID.
+	 */
+	static class Builder {
+
+		private final int[] ingredientIDs;
+		private final double[] unitPrices;
+		private final double[] alcoholContents;
+		private final int[] recipeIDs;
+		private final int[] offsets;
+
+		private int[] ingredientIndices = new int[1024];
+		private double[] millilitres = new double[1024];
+		private int rows;
+		/** Index of the recipe the next rows may belong to */
+		private int recipeIndex;
+
+		/**
+		 * Copies the ingredients and recipes. Must be called on the EDT.
+		 * 
+		 * @param ingredients
+		 *            the ingredients to include
+		 * @param recipes
+		 *            the recipes to include
+		 */
+		Builder(AvailableItems<Ingredient> ingredients,
+				AvailableItems<Recipe> recipes) {
+			// by ID, for finding the index of an ingredient of a row
+			ArrayList<Ingredient> byID = new ArrayList<Ingredient>(
+					ingredients.getSize());
+			for (int i = 0; i < ingredients.getSize(); i++) {
+				byID.add(ingredients.getElementAt(i));
+			}
+			Collections.sort(byID, new Comparator<Ingredient>() {
+				@Override
+				public int compare(Ingredient a, Ingredient b) {
+					return a.getID().compareTo(b.getID());
+				}
+			});
+
+			int count = byID.size();
+			this.ingredientIDs = new int[count];
+			this.unitPrices = new double[count];
+			this.alcoholContents = new double[count];
+			for (int i = 0; i < count; i++) {
+				Ingredient ingredient = byID.get(i);
+				this.ingredientIDs[i] = ingredient.getID();
+				this.unitPrices[i] = ingredient.getUnitPrice(Unit.ML);
+				this.alcoholContents[i] = ingredient.getAlcoholContent();
+			}
+
+			this.recipeIDs = new int[recipes.getSize()];
+			for (int i = 0; i < this.recipeIDs.length; i++) {
+				this.recipeIDs[i] = recipes.getElementAt(i).getID();
+			}
+			Arrays.sort(this.recipeIDs);
+			this.offsets = new int[this.recipeIDs.length + 1];
+		}
+
+		/**
+		 * Adds an ingredient row of a recipe. Rows of recipes or ingredients
+		 * not in the lists, changed since they were copied, are left out.
+		 * 
+		 * @param recipeID
+		 *            ID of the recipe, no lower than that of the previous row
+		 * @param ingredientID
+		 *            ID of the ingredient
+		 * @param amount
+		 *            the amount of the ingredient in millilitres
+		 */
+		void addRow(int recipeID, int ingredientID, double amount) {
+			// close the recipes before this one
+			while (this.recipeIndex < this.recipeIDs.length
+					&& this.recipeIDs[this.recipeIndex] < recipeID) {
+				this.offsets[++this.recipeIndex] = this.rows;
+			}
+			if (this.recipeIndex == this.recipeIDs.length
+					|| this.recipeIDs[this.recipeIndex] != recipeID) {
+				return;
+			}
+			int ingredientIndex = Arrays.binarySearch(this.ingredientIDs,
+					ingredientID);
+			if (ingredientIndex < 0) {
+				return;
+			}
+
+			if (this.rows == this.millilitres.length) {
+				this.ingredientIndices = Arrays.copyOf(this.ingredientIndices,
+						this.rows * 2);
+				this.millilitres = Arrays.copyOf(this.millilitres,
+						this.rows * 2);
+			}
+			this.ingredientIndices[this.rows] = ingredientIndex;
+			this.millilitres[this.rows] = amount;
+			this.rows++;
+		}
+
+		/**
+		 * Closes the remaining recipes and creates the snapshot.
+		 * 
+		 * @return the snapshot
+		 */
+		PricingSnapshot build() {
+			while (this.recipeIndex < this.recipeIDs.length) {
+				this.offsets[++this.recipeIndex] = this.rows;
+			}
+			return new PricingSnapshot(this);
+		}
+	}
+}
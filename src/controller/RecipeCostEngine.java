@@ -0,0 +1,340 @@
+package controller;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.event.ChangeListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import model.Amount;
+import model.Ingredient;
+import model.Recipe;
+import model.RecipeIngredients;
+import model.Unit;
+
+/**
+ * Prices recipes, keeping the price of each recipe and the unit price of each
+ * ingredient once they have been worked out. A cached price stays valid until
+ * something it was worked out from changes: an edit of the ingredients of the
+ * recipe, or a new price or container size of one of its ingredients. The
+ * engine keeps track of which ingredients each cached price depends on, so a
+ * changed ingredient only throws away the prices of the recipes using it. <br>
+ * Recipes are priced with the latest unit price of each ingredient, even
+ * when a recipe still holds an ingredient from before it changed and is yet
+ * to be reloaded. <br>
+ * Listeners are told which recipes have a new price with a
+ * {@link PriceChangeEvent}. The engine follows the changes patched into the
+ * lists of available items, so events are fired on the EDT.
+ * 
+ * @author 217262
+ */
+public class RecipeCostEngine {
+
+	private static final Metrics.Counter HITS = Metrics.getInstance().counter(
+			"recipeCost.hits");
+	private static final Metrics.Counter MISSES = Metrics.getInstance()
+			.counter("recipeCost.misses");
+	private static final Metrics.Counter INVALIDATED = Metrics.getInstance()
+			.counter("recipeCost.invalidated");
+
+	private static final RecipeCostEngine SINGLETON_INSTANCE = new RecipeCostEngine();
+
+	/** The price of a millilitre of each ingredient, keyed by ingredient ID */
+	private final IntObjectMap<Double> unitPrices = new IntObjectMap<Double>();
+	/** The cached price of each recipe, keyed by recipe ID */
+	private final IntObjectMap<CachedPrice> recipePrices = new IntObjectMap<CachedPrice>();
+	/** The ingredients each cached price was worked out from */
+	private final RecipeUsageIndex dependencies = new RecipeUsageIndex();
+
+	private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<ChangeListener>();
+
+	/**
+	 * A private constructor for prohibiting new instances to be created.
+	 */
+	private RecipeCostEngine() {
+	}
+
+	/**
+	 * Gets the singleton instance of this class
+	 * 
+	 * @return the singleton instance of this class
+	 */
+	public static RecipeCostEngine getInstance() {
+		return SINGLETON_INSTANCE;
+	}
+
+	/**
+	 * Registers a {@link ChangeListener} to be informed with a
+	 * {@link PriceChangeEvent} when the prices of recipes change.
+	 * 
+	 * @param listener
+	 *            the ChangeListener object
+	 */
+	public void addChangeListener(ChangeListener listener) {
+		this.changeListeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 *            a ChangeListener registered earlier
+	 */
+	public void removeChangeListener(ChangeListener listener) {
+		this.changeListeners.remove(listener);
+	}
+
+	/**
+	 * Gets the price of a recipe, working it out only if it is not cached.
+	 * Recipes not yet saved are priced every time.
+	 * 
+	 * @param recipe
+	 *            the recipe
+	 * @return the price of the ingredients used in the recipe
+	 */
+	public double getPrice(Recipe recipe) {
+		Integer ID = recipe.getID();
+		if (ID == null) {
+			return this.getPrice(recipe.getIngredients());
+		}
+		synchronized (this) {
+			CachedPrice cached = this.recipePrices.get(ID);
+			if (cached != null && cached.recipe == recipe) {
+				HITS.increment();
+				return cached.price;
+			}
+		}
+		MISSES.increment();
+
+		// may load the ingredients, so not while holding the lock
+		RecipeIngredients ingredients = recipe.getIngredients();
+		synchronized (this) {
+			int[] ingredientIDs = new int[ingredients.getRowCount()];
+			double price = this.price(ingredients, ingredientIDs);
+
+			CachedPrice replaced = this.recipePrices.put(ID, new CachedPrice(
+					recipe, price));
+			if (replaced != null) {
+				replaced.stopListening();
+			}
+			this.dependencies.setRecipe(ID, ingredientIDs);
+			ingredients.addTableModelListener(this.recipePrices.get(ID));
+			return price;
+		}
+	}
+
+	/**
+	 * Prices ingredients as they are, without caching the price. Meant for
+	 * ingredients being edited, which change between calls.
+	 * 
+	 * @param ingredients
+	 *            the ingredients of a recipe
+	 * @return the price of the ingredients
+	 */
+	public synchronized double getPrice(RecipeIngredients ingredients) {
+		return this.price(ingredients, null);
+	}
+
+	/**
+	 * Gets the price of a millilitre of an ingredient.
+	 * 
+	 * @param ingredient
+	 *            the ingredient
+	 * @return the price of a millilitre, as it is now if the ingredient has
+	 *         changed since the given instance was loaded
+	 */
+	public synchronized double getUnitPrice(Ingredient ingredient) {
+		if (ingredient.getID() == null) {
+			return ingredient.getUnitPrice(Unit.ML);
+		}
+		Double unitPrice = this.unitPrices.get(ingredient.getID());
+		if (unitPrice == null) {
+			unitPrice = ingredient.getUnitPrice(Unit.ML);
+			this.unitPrices.put(ingredient.getID(), unitPrice);
+		}
+		return unitPrice;
+	}
+
+	/**
+	 * Adds up the price of ingredients. Must be called while synchronized on
+	 * the engine.
+	 * 
+	 * @param ingredients
+	 *            the ingredients to price
+	 * @param ingredientIDs
+	 *            filled with the IDs of the ingredients, if not
+	 *            <code>null</code>
+	 * @return the price of the ingredients
+	 */
+	private double price(RecipeIngredients ingredients, int[] ingredientIDs) {
+		double price = 0;
+		int i = 0;
+		for (Entry<Ingredient, Amount> entry : ingredients.entrySet()) {
+			price += this.getUnitPrice(entry.getKey())
+					* entry.getValue().toUnit(Unit.ML);
+			if (ingredientIDs != null) {
+				ingredientIDs[i++] = entry.getKey().getID();
+			}
+		}
+		return price;
+	}
+
+	/**
+	 * Follows a change to an ingredient. If its unit price changed, the
+	 * prices of the recipes using it are thrown away and listeners told about
+	 * them.
+	 * 
+	 * @param ID
+	 *            ID number of the ingredient
+	 * @param ingredient
+	 *            the ingredient as it is stored now, <code>null</code> if it
+	 *            has been deleted
+	 */
+	void ingredientChanged(int ID, Ingredient ingredient) {
+		int[] affectedIDs;
+		synchronized (this) {
+			Double oldPrice = ingredient == null ? this.unitPrices.remove(ID)
+					: this.unitPrices.put(ID, ingredient.getUnitPrice(Unit.ML));
+			if (oldPrice == null || ingredient != null
+					&& oldPrice.equals(this.unitPrices.get(ID))) {
+				// not used in any cached price, or only the name etc. changed
+				return;
+			}
+			affectedIDs = this.dependencies.recipesUsing(ID);
+			for (int recipeID : affectedIDs) {
+				this.forget(recipeID);
+			}
+		}
+		if (affectedIDs.length > 0) {
+			this.firePriceChange(affectedIDs, null);
+		}
+	}
+
+	/**
+	 * Follows a change to a recipe, throwing away its price.
+	 * 
+	 * @param ID
+	 *            ID number of the recipe
+	 */
+	void recipeChanged(int ID) {
+		synchronized (this) {
+			if (!this.forget(ID)) {
+				return;
+			}
+		}
+		this.firePriceChange(new int[] { ID }, null);
+	}
+
+	/**
+	 * Throws away every cached price, when the lists have been reloaded and
+	 * anything may have changed.
+	 * 
+	 * @param ingredients
+	 *            whether to throw away the unit prices of the ingredients as
+	 *            well
+	 */
+	void clear(boolean ingredients) {
+		synchronized (this) {
+			if (ingredients) {
+				this.unitPrices.clear();
+			}
+			for (CachedPrice cached : this.recipePrices.values()) {
+				this.forget(cached.recipe.getID());
+			}
+		}
+		this.firePriceChange(null, null);
+	}
+
+	/**
+	 * @return the number of recipes with a cached price
+	 */
+	synchronized int size() {
+		return this.recipePrices.size();
+	}
+
+	/**
+	 * Throws away the cached price of a recipe. Must be called while
+	 * synchronized on the engine.
+	 * 
+	 * @param recipeID
+	 *            ID number of the recipe
+	 * @return whether the recipe had a cached price
+	 */
+	private boolean forget(int recipeID) {
+		CachedPrice cached = this.recipePrices.remove(recipeID);
+		if (cached == null) {
+			return false;
+		}
+		INVALIDATED.increment();
+		cached.stopListening();
+		this.dependencies.removeRecipe(recipeID);
+		return true;
+	}
+
+	/**
+	 * Informs listeners about new prices, outside the lock of the engine.
+	 * 
+	 * @param recipeIDs
+	 *            the recipes with a new price in ascending order, or
+	 *            <code>null</code> for all of them
+	 * @param editedIngredients
+	 *            the edited ingredients that changed the prices, if that was
+	 *            the cause
+	 */
+	private void firePriceChange(int[] recipeIDs,
+			RecipeIngredients editedIngredients) {
+		PriceChangeEvent event = new PriceChangeEvent(this, recipeIDs,
+				editedIngredients);
+		for (ChangeListener listener : this.changeListeners) {
+			listener.stateChanged(event);
+		}
+	}
+
+	/**
+	 * The price of a recipe, valid for as long as the recipe is the same
+	 * instance and its ingredients are not edited. Listens to the ingredients
+	 * to find out about edits.
+	 */
+	private class CachedPrice implements TableModelListener {
+
+		private final Recipe recipe;
+		private final double price;
+
+		/**
+		 * @param recipe
+		 *            the priced recipe
+		 * @param price
+		 *            its price
+		 */
+		CachedPrice(Recipe recipe, double price) {
+			this.recipe = recipe;
+			this.price = price;
+		}
+
+		/**
+		 * Stops listening to the ingredients, once the price is no longer
+		 * cached.
+		 */
+		void stopListening() {
+			this.recipe.getIngredients().removeTableModelListener(this);
+		}
+
+		/* (non-Javadoc)
+		 * @see
+		 * javax.swing.event.TableModelListener#tableChanged(javax.swing.event
+		 * .TableModelEvent) */
+		@Override
+		public void tableChanged(TableModelEvent e) {
+			int ID = this.recipe.getID();
+			synchronized (RecipeCostEngine.this) {
+				if (RecipeCostEngine.this.recipePrices.get(ID) != this) {
+					// already thrown away
+					return;
+				}
+				RecipeCostEngine.this.forget(ID);
+			}
+			RecipeCostEngine.this.firePriceChange(new int[] { ID },
+					(RecipeIngredients) e.getSource());
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import model.Recipe;
+import model.RecipeIngredients;
+import controller.DatabaseConnector.DBConst.RECIPE_INGREDIENT_JOINED_VIEW;
+
+/**
+ * Loads the ingredients of the recipes of a list once they are first needed.
+ * Each load also prefetches the ingredients of the recipes next to the asked
+ * one in the list as it is shown, sorted by name, so that the recipes the
+ * user moves on to from a selected one are usually loaded by then. The
+ * ingredients of up to
+ * {@link RECIPE_INGREDIENT_JOINED_VIEW#RECIPES_PER_SELECT} recipes are
+ * loaded with a single query. <br>
+ * Prefetched ingredients are handed over to their recipes right away, so a
+ * recipe either has its ingredients or will load them as they are stored
+ * when it is asked for them. If reading fails, no recipe of the batch gets
+ * any ingredients, and each loads them again when next asked. <br>
+ * The batches are meant for recipes looked at one at a time. Work on the
+ * whole catalog loads the ingredients of every recipe at once with
+ * {@link #loadAll(DatabaseConnector, Collection)}, in a single pass instead
+ * of a query per batch.
+ * 
+ * @author 217262
+ */
+class RecipeIngredientsLoader implements Recipe.IngredientsLoader {
+
+	private static final int BATCH_SIZE = RECIPE_INGREDIENT_JOINED_VIEW.RECIPES_PER_SELECT;
+
+	private final DatabaseConnector database;
+	/**
+	 * The recipes whose ingredients this loader loads, as they were parsed.
+	 * Sorted in place the first time ingredients are loaded, only the loader
+	 * uses it.
+	 */
+	private final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+	private boolean sorted;
+
+	/**
+	 * Creates a loader without any recipes yet.
+	 * 
+	 * @param database
+	 *            the database to load the ingredients from
+	 */
+	RecipeIngredientsLoader(DatabaseConnector database) {
+		this.database = database;
+	}
+
+	/**
+	 * Adds a recipe to load the ingredients of, before the recipe is handed
+	 * out to anyone.
+	 * 
+	 * @param recipe
+	 *            a recipe constructed with this loader
+	 */
+	synchronized void add(Recipe recipe) {
+		this.recipes.add(recipe);
+		this.sorted = false;
+	}
+
+	/**
+	 * Loads the ingredients of every given recipe that has not loaded them
+	 * yet, with a single pass over the joined view of recipes and
+	 * ingredients.
+	 * 
+	 * @param database
+	 *            the database to load the ingredients from
+	 * @param recipes
+	 *            the recipes, from any lists
+	 * @throws IllegalStateException
+	 *             if reading failed, in which case no recipe has been given
+	 *             any ingredients
+	 */
+	static void loadAll(DatabaseConnector database, Collection<Recipe> recipes) {
+		Map<Integer, RecipeIngredients> loaded = database
+				.getAllRecipeIngredients();
+		if (loaded == null) {
+			throw new IllegalStateException(
+					"Could not load the ingredients of the recipes");
+		}
+
+		for (Recipe recipe : recipes) {
+			if (recipe.hasIngredientsLoaded()) {
+				// may have been edited since, so leave it alone
+				continue;
+			}
+			RecipeIngredients ingredients = loaded.get(recipe.getID());
+			// no ingredients, so not in the joined view
+			recipe.supplyIngredients(ingredients == null ? new RecipeIngredients()
+					: ingredients);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see model.Recipe.IngredientsLoader#loadIngredients(model.Recipe) */
+	@Override
+	public RecipeIngredients loadIngredients(Recipe recipe) {
+		ArrayList<Recipe> batch = this.getBatch(recipe);
+		int[] IDs = new int[batch.size()];
+		for (int i = 0; i < IDs.length; i++) {
+			IDs[i] = batch.get(i).getID();
+		}
+
+		Map<Integer, RecipeIngredients> loaded = this.database
+				.getRecipeIngredients(IDs);
+		if (loaded == null) {
+			/* Empty ingredients would be taken for the stored ones, and saving
+			 * the recipe would then delete them, so none are supplied. */
+			throw new IllegalStateException(
+					"Could not load the ingredients of recipe "
+							+ recipe.getID());
+		}
+
+		// hand over the prefetched ones, which may have been loaded meanwhile
+		RecipeIngredients ingredients = null;
+		for (Recipe loadedRecipe : batch) {
+			RecipeIngredients recipeIngredients = loaded.get(loadedRecipe
+					.getID());
+			if (recipeIngredients == null) {
+				// no ingredients, so not in the joined view
+				recipeIngredients = new RecipeIngredients();
+			}
+			if (loadedRecipe == recipe) {
+				ingredients = recipeIngredients;
+			} else {
+				loadedRecipe.supplyIngredients(recipeIngredients);
+			}
+		}
+		return ingredients;
+	}
+
+	/**
+	 * Picks the recipes to load together: the asked one first, then the ones
+	 * around it in the sorted list that have not been loaded yet.
+	 * 
+	 * @param recipe
+	 *            the recipe whose ingredients are needed
+	 * @return the recipes to load, at most {@link #BATCH_SIZE}
+	 */
+	private synchronized ArrayList<Recipe> getBatch(Recipe recipe) {
+		if (!this.sorted) {
+			// the same order as in the list models
+			Collections.sort(this.recipes);
+			this.sorted = true;
+		}
+
+		ArrayList<Recipe> batch = new ArrayList<Recipe>(BATCH_SIZE);
+		batch.add(recipe);
+
+		int index = Collections.binarySearch(this.recipes, recipe);
+		if (index < 0) {
+			// not from this list after all, so it has no neighbours
+			return batch;
+		}
+
+		// a window around the recipe, mostly below it where the user scrolls
+		int from = Math.max(0, index - BATCH_SIZE / 4);
+		int to = Math.min(this.recipes.size(), from + BATCH_SIZE);
+		for (int i = from; i < to && batch.size() < BATCH_SIZE; i++) {
+			Recipe neighbour = this.recipes.get(i);
+			if (i != index && !neighbour.hasIngredientsLoaded()) {
+				batch.add(neighbour);
+			}
+		}
+		return batch;
+	}
+}
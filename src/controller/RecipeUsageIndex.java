@@ -0,0 +1,203 @@
+package controller;
+
+import java.util.Arrays;
+
+/**
+ * An index from each ingredient to the recipes using it, for finding the
+ * recipes affected by a change to an ingredient without going through every
+ * recipe. The index is kept in memory as sorted arrays of IDs, and a second
+ * index from each recipe to its ingredients tells which entries to change
+ * when a recipe changes. <br>
+ * The arrays in the index are never changed, a change replaces them with
+ * new ones. The index is loaded off the EDT and patched on it, so all
+ * methods synchronize on the index.
+ * 
+ * @author 217262
+ */
+class RecipeUsageIndex {
+
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * Sorted IDs of the recipes using each ingredient, keyed by ingredient
+	 * ID. Ingredients not used by any recipe have no entry.
+	 */
+	private final IntObjectMap<int[]> recipesByIngredient = new IntObjectMap<int[]>();
+	/**
+	 * Sorted IDs of the ingredients of each recipe, keyed by recipe ID.
+	 * Recipes without ingredients have no entry.
+	 */
+	private final IntObjectMap<int[]> ingredientsByRecipe = new IntObjectMap<int[]>();
+
+	/**
+	 * Replaces the contents of the index with the rows of the relationship
+	 * table.
+	 * 
+	 * @param ingredientIDs
+	 *            the ingredient ID of each row
+	 * @param recipeIDs
+	 *            the recipe ID of each row, sorted by recipe ID within the
+	 *            rows of each ingredient
+	 * @param rows
+	 *            the number of rows, which must be grouped by ingredient ID
+	 */
+	synchronized void setAll(int[] ingredientIDs, int[] recipeIDs, int rows) {
+		this.recipesByIngredient.clear();
+		this.ingredientsByRecipe.clear();
+
+		// the rows come grouped by ingredient, so cut them into slices
+		for (int from = 0; from < rows;) {
+			int to = from + 1;
+			while (to < rows && ingredientIDs[to] == ingredientIDs[from]) {
+				to++;
+			}
+			this.recipesByIngredient.put(ingredientIDs[from],
+					Arrays.copyOfRange(recipeIDs, from, to));
+			from = to;
+		}
+
+		/* Group the same rows by recipe by sorting them as recipe ID in the
+		 * high half and ingredient ID in the low half of a long. */
+		long[] byRecipe = new long[rows];
+		for (int i = 0; i < rows; i++) {
+			byRecipe[i] = ((long) recipeIDs[i] << 32)
+					| (ingredientIDs[i] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(byRecipe);
+		for (int from = 0; from < rows;) {
+			int recipeID = (int) (byRecipe[from] >> 32);
+			int to = from + 1;
+			while (to < rows && (int) (byRecipe[to] >> 32) == recipeID) {
+				to++;
+			}
+			int[] ingredients = new int[to - from];
+			for (int i = from; i < to; i++) {
+				ingredients[i - from] = (int) byRecipe[i];
+			}
+			this.ingredientsByRecipe.put(recipeID, ingredients);
+			from = to;
+		}
+	}
+
+	/**
+	 * Gets the recipes using an ingredient, in time proportional to their
+	 * number.
+	 * 
+	 * @param ingredientID
+	 *            ID number of the ingredient
+	 * @return the IDs of the recipes using the ingredient in ascending order,
+	 *         empty if there are none
+	 */
+	synchronized int[] recipesUsing(int ingredientID) {
+		int[] recipeIDs = this.recipesByIngredient.get(ingredientID);
+		return recipeIDs == null ? NONE : recipeIDs.clone();
+	}
+
+	/**
+	 * Replaces the ingredients of a recipe, after it has been saved.
+	 * 
+	 * @param recipeID
+	 *            ID number of the recipe
+	 * @param ingredientIDs
+	 *            IDs of all the ingredients of the recipe, in any order
+	 */
+	synchronized void setRecipe(int recipeID, int[] ingredientIDs) {
+		int[] newIDs = ingredientIDs.clone();
+		Arrays.sort(newIDs);
+		int[] oldIDs = newIDs.length == 0 ? this.ingredientsByRecipe
+				.remove(recipeID) : this.ingredientsByRecipe.put(recipeID,
+				newIDs);
+		if (oldIDs == null) {
+			oldIDs = NONE;
+		}
+
+		// only the ingredients added or removed change their entries
+		for (int ingredientID : oldIDs) {
+			if (Arrays.binarySearch(newIDs, ingredientID) < 0) {
+				removeFrom(this.recipesByIngredient, ingredientID, recipeID);
+			}
+		}
+		for (int ingredientID : newIDs) {
+			if (Arrays.binarySearch(oldIDs, ingredientID) < 0) {
+				addTo(this.recipesByIngredient, ingredientID, recipeID);
+			}
+		}
+	}
+
+	/**
+	 * Removes a recipe, after it has been deleted.
+	 * 
+	 * @param recipeID
+	 *            ID number of the recipe
+	 */
+	synchronized void removeRecipe(int recipeID) {
+		this.setRecipe(recipeID, NONE);
+	}
+
+	/**
+	 * Removes an ingredient from the index and from every recipe using it,
+	 * after it has been deleted.
+	 * 
+	 * @param ingredientID
+	 *            ID number of the ingredient
+	 * @return the IDs of the recipes that used the ingredient
+	 */
+	synchronized int[] removeIngredient(int ingredientID) {
+		int[] recipeIDs = this.recipesByIngredient.remove(ingredientID);
+		if (recipeIDs == null) {
+			return NONE;
+		}
+		for (int recipeID : recipeIDs) {
+			removeFrom(this.ingredientsByRecipe, recipeID, ingredientID);
+		}
+		return recipeIDs;
+	}
+
+	/**
+	 * Adds an ID to the sorted IDs of a key, replacing the array.
+	 */
+	private static void addTo(IntObjectMap<int[]> index, int key, int ID) {
+		int[] IDs = index.get(key);
+		if (IDs == null) {
+			index.put(key, new int[] { ID });
+			return;
+		}
+		int position = Arrays.binarySearch(IDs, ID);
+		if (position >= 0) {
+			return;
+		}
+		position = -position - 1;
+
+		int[] added = new int[IDs.length + 1];
+		System.arraycopy(IDs, 0, added, 0, position);
+		added[position] = ID;
+		System.arraycopy(IDs, position, added, position + 1, IDs.length
+				- position);
+		index.put(key, added);
+	}
+
+	/**
+	 * Removes an ID from the sorted IDs of a key, replacing the array or
+	 * removing the key once it has no IDs left.
+	 */
+	private static void removeFrom(IntObjectMap<int[]> index, int key, int ID) {
+		int[] IDs = index.get(key);
+		if (IDs == null) {
+			return;
+		}
+		int position = Arrays.binarySearch(IDs, ID);
+		if (position < 0) {
+			return;
+		}
+		if (IDs.length == 1) {
+			index.remove(key);
+			return;
+		}
+
+		int[] removed = new int[IDs.length - 1];
+		System.arraycopy(IDs, 0, removed, 0, position);
+		System.arraycopy(IDs, position + 1, removed, position, IDs.length
+				- position - 1);
+		index.put(key, removed);
+	}
+}
@@ -0,0 +1,608 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming readers of flat records, like the rows of a price list, from text
+ * formats. Only the current record is held in memory, so files of any size
+ * can be read. The characters are read through a buffer of a fixed size, so
+ * the reader passed in needs no buffering of its own. <br>
+ * Field names are not case sensitive, they are compared in lower case.
+ * 
+ * @author 217262
+ */
+abstract class RecordReader implements Closeable {
+
+	/**
+	 * Number of characters read from the underlying reader at a time.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Reader in;
+	private final char[] buffer;
+	private int position;
+	private int limit;
+	/** Whether the buffer has been filled at least once. */
+	private boolean started;
+	/** The line of the last character read, starting from 1. */
+	private int lineNumber;
+	/** The line the current record starts on. */
+	private int recordLineNumber;
+
+	/**
+	 * Creates a reader of records from the given characters.
+	 * 
+	 * @param in
+	 *            the characters to read, which are closed with this reader
+	 */
+	RecordReader(Reader in) {
+		this.in = in;
+		this.buffer = new char[BUFFER_SIZE];
+		this.lineNumber = 1;
+	}
+
+	/**
+	 * Moves on to the next record.
+	 * 
+	 * @return <code>false</code> if there are no more records
+	 * @throws IOException
+	 *             if reading failed or the input is malformed
+	 */
+	abstract boolean next() throws IOException;
+
+	/**
+	 * @param field
+	 *            name of a field, in lower case
+	 * @return the value of the field in the current record, or
+	 *         <code>null</code> if the record does not have it
+	 */
+	abstract String get(String field);
+
+	/**
+	 * @return the line the current record starts on in the input, starting
+	 *         from 1
+	 */
+	int getLineNumber() {
+		return this.recordLineNumber;
+	}
+
+	/**
+	 * Marks the line of the last character read as the start of the current
+	 * record.
+	 */
+	protected final void startRecord() {
+		this.recordLineNumber = this.lineNumber;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close() */
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+	/**
+	 * @return the next character, or -1 at the end of the input
+	 * @throws IOException
+	 *             if reading failed
+	 */
+	protected final int read() throws IOException {
+		if (this.position == this.limit && !this.fill()) {
+			return -1;
+		}
+		char c = this.buffer[this.position++];
+		if (c == '\n') {
+			this.lineNumber++;
+		}
+		return c;
+	}
+
+	/**
+	 * @return the next character without consuming it, or -1 at the end of
+	 *         the input
+	 * @throws IOException
+	 *             if reading failed
+	 */
+	protected final int peek() throws IOException {
+		if (this.position == this.limit && !this.fill()) {
+			return -1;
+		}
+		return this.buffer[this.position];
+	}
+
+	/**
+	 * @return the characters that have been read ahead into the buffer and not
+	 *         consumed yet, at least one unless at the end of the input
+	 * @throws IOException
+	 *             if reading failed
+	 */
+	protected final CharSequence lookAhead() throws IOException {
+		if (this.position == this.limit && !this.fill()) {
+			return "";
+		}
+		return CharBuffer.wrap(this.buffer, this.position, this.limit
+				- this.position);
+	}
+
+	/**
+	 * Reads more characters into the buffer.
+	 * 
+	 * @return <code>false</code> at the end of the input
+	 */
+	private boolean fill() throws IOException {
+		int count;
+		do {
+			count = this.in.read(this.buffer);
+		} while (count == 0);
+		if (count < 0) {
+			return false;
+		}
+		this.position = 0;
+		this.limit = count;
+
+		// skip the byte order mark some editors write in front of UTF-8
+		if (!this.started) {
+			this.started = true;
+			if (this.buffer[0] == '\uFEFF') {
+				this.position = 1;
+				return this.position < this.limit || this.fill();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param message
+	 *            what is wrong with the input
+	 * @return an exception telling where the input is malformed
+	 */
+	protected final IOException syntaxError(String message) {
+		return new IOException(message + " on line " + this.lineNumber);
+	}
+
+	/**
+	 * A reader of comma separated values (CSV) as described in RFC 4180. The
+	 * first row holds the names of the fields. Fields can be quoted with
+	 * double quotes, so that they can contain separators, line breaks and
+	 * doubled double quotes. The separator is detected from the first row:
+	 * the one of comma, semicolon or tab that it has most of, as spreadsheets
+	 * in many locales use semicolons.
+	 * 
+	 * @author 217262
+	 */
+	static class CsvReader extends RecordReader {
+
+		/** The separators detected, in order of preference. */
+		private static final char[] SEPARATORS = { ',', ';', '\t' };
+
+		private char separator;
+		/** Index of each field in a row, by the name of the field. */
+		private final Map<String, Integer> columns;
+		/** The values of the current row. */
+		private final ArrayList<String> values;
+		/** Buffer for building the value of a field. */
+		private final StringBuilder field;
+
+		/**
+		 * Creates a reader of CSV, reading the row of field names.
+		 * 
+		 * @param in
+		 *            the characters to read
+		 * @throws IOException
+		 *             if reading failed, or there are no field names
+		 */
+		CsvReader(Reader in) throws IOException {
+			super(in);
+			this.columns = new HashMap<String, Integer>();
+			this.values = new ArrayList<String>();
+			this.field = new StringBuilder();
+
+			if (!this.readHeader()) {
+				throw this.syntaxError("No field names");
+			}
+		}
+
+		/**
+		 * Reads the first row, with the separator that the start of it has
+		 * most of.
+		 */
+		private boolean readHeader() throws IOException {
+			CharSequence start = this.lookAhead();
+			int[] counts = new int[SEPARATORS.length];
+			boolean quoted = false;
+			for (int i = 0; i < start.length(); i++) {
+				char c = start.charAt(i);
+				if (c == '"') {
+					quoted = !quoted;
+				} else if (!quoted && (c == '\n' || c == '\r')) {
+					break;
+				}
+				for (int j = 0; j < SEPARATORS.length && !quoted; j++) {
+					if (c == SEPARATORS[j]) {
+						counts[j]++;
+					}
+				}
+			}
+			int best = 0;
+			for (int j = 1; j < SEPARATORS.length; j++) {
+				if (counts[j] > counts[best]) {
+					best = j;
+				}
+			}
+			this.separator = SEPARATORS[best];
+
+			if (!this.readRow()) {
+				return false;
+			}
+			for (int i = 0; i < this.values.size(); i++) {
+				String name = this.values.get(i).trim()
+						.toLowerCase(Locale.ROOT);
+				if (!this.columns.containsKey(name)) {
+					this.columns.put(name, i);
+				}
+			}
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.RecordReader#next() */
+		@Override
+		boolean next() throws IOException {
+			return this.readRow();
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.RecordReader#get(java.lang.String) */
+		@Override
+		String get(String name) {
+			Integer index = this.columns.get(name);
+			if (index == null || index >= this.values.size()) {
+				return null;
+			}
+			return this.values.get(index);
+		}
+
+		/**
+		 * Reads a row of values, skipping empty lines.
+		 * 
+		 * @return <code>false</code> at the end of the input
+		 */
+		private boolean readRow() throws IOException {
+			this.values.clear();
+
+			int c = this.read();
+			while (c == '\r' || c == '\n') {
+				c = this.read();
+			}
+			if (c == -1) {
+				return false;
+			}
+			this.startRecord();
+
+			while (true) {
+				this.field.setLength(0);
+				if (c == '"') {
+					// quoted field, ends at a quote that is not doubled
+					while (true) {
+						c = this.read();
+						if (c == -1) {
+							throw this.syntaxError("Unterminated quoted field");
+						}
+						if (c == '"') {
+							if (this.peek() != '"') {
+								break;
+							}
+							this.read();
+						}
+						this.field.append((char) c);
+					}
+					c = this.read();
+					if (c != this.separator && c != '\r' && c != '\n'
+							&& c != -1) {
+						throw this
+								.syntaxError("Unexpected character after quoted field");
+					}
+				} else {
+					while (c != this.separator && c != '\r' && c != '\n'
+							&& c != -1) {
+						this.field.append((char) c);
+						c = this.read();
+					}
+				}
+				this.values.add(this.field.toString());
+
+				if (c != this.separator) {
+					break;
+				}
+				c = this.read();
+			}
+
+			if (c == '\r' && this.peek() == '\n') {
+				this.read();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A reader of JSON objects, either in a single array or one after another
+	 * (JSON Lines). The fields of the objects are read as records: strings,
+	 * numbers and booleans are all read as strings. Nested objects and
+	 * arrays are skipped, and read as <code>null</code> like
+	 * <code>null</code> itself.
+	 * 
+	 * @author 217262
+	 */
+	static class JsonReader extends RecordReader {
+
+		/** The fields of the current object. */
+		private final Map<String, String> record;
+		/** Buffer for building strings and numbers. */
+		private final StringBuilder token;
+		/** Whether the objects are in an array. */
+		private boolean inArray;
+		private boolean started;
+		private boolean finished;
+
+		/**
+		 * Creates a reader of JSON objects.
+		 * 
+		 * @param in
+		 *            the characters to read
+		 */
+		JsonReader(Reader in) {
+			super(in);
+			this.record = new HashMap<String, String>();
+			this.token = new StringBuilder();
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.RecordReader#next() */
+		@Override
+		boolean next() throws IOException {
+			if (this.finished) {
+				return false;
+			}
+
+			int c = this.skipWhitespace();
+			if (!this.started) {
+				this.started = true;
+				if (c == '[') {
+					this.inArray = true;
+					c = this.skipWhitespace();
+					if (c == ']') {
+						return this.finish();
+					}
+				}
+			} else if (this.inArray) {
+				if (c == ']') {
+					return this.finish();
+				}
+				if (c != ',') {
+					throw this.syntaxError("Expected ',' or ']'");
+				}
+				c = this.skipWhitespace();
+			}
+
+			if (c == -1) {
+				if (this.inArray) {
+					throw this.syntaxError("Unterminated array");
+				}
+				this.finished = true;
+				return false;
+			}
+			if (c != '{') {
+				throw this.syntaxError("Expected an object");
+			}
+			this.startRecord();
+			this.readObject();
+			return true;
+		}
+
+		/**
+		 * Ends reading at the end of the array, after which only whitespace
+		 * may follow.
+		 */
+		private boolean finish() throws IOException {
+			this.finished = true;
+			if (this.skipWhitespace() != -1) {
+				throw this.syntaxError("Unexpected content after the array");
+			}
+			return false;
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.RecordReader#get(java.lang.String) */
+		@Override
+		String get(String name) {
+			return this.record.get(name);
+		}
+
+		/**
+		 * Reads the fields of an object whose opening brace has been read.
+		 */
+		private void readObject() throws IOException {
+			this.record.clear();
+
+			int c = this.skipWhitespace();
+			if (c == '}') {
+				return;
+			}
+			while (true) {
+				if (c != '"') {
+					throw this.syntaxError("Expected a field name");
+				}
+				String name = this.readString().toLowerCase(Locale.ROOT);
+				if (this.skipWhitespace() != ':') {
+					throw this.syntaxError("Expected ':'");
+				}
+				this.record.put(name, this.readValue());
+
+				c = this.skipWhitespace();
+				if (c == '}') {
+					return;
+				}
+				if (c != ',') {
+					throw this.syntaxError("Expected ',' or '}'");
+				}
+				c = this.skipWhitespace();
+			}
+		}
+
+		/**
+		 * @return a value as a string, <code>null</code> for null
+		 */
+		private String readValue() throws IOException {
+			int c = this.skipWhitespace();
+			switch (c) {
+				case '"':
+					return this.readString();
+				case 't':
+					this.expect("rue");
+					return "true";
+				case 'f':
+					this.expect("alse");
+					return "false";
+				case 'n':
+					this.expect("ull");
+					return null;
+				case '{':
+				case '[':
+					this.skipNested();
+					return null;
+				default:
+					if (c != '-' && (c < '0' || c > '9')) {
+						throw this.syntaxError("Expected a value");
+					}
+					this.token.setLength(0);
+					this.token.append((char) c);
+					while (isNumberPart(this.peek())) {
+						this.token.append((char) this.read());
+					}
+					return this.token.toString();
+			}
+		}
+
+		/**
+		 * @return whether the character can be a part of a number
+		 */
+		private static boolean isNumberPart(int c) {
+			return (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E'
+					|| c == '-' || c == '+';
+		}
+
+		/**
+		 * Reads a string whose opening quote has been read.
+		 */
+		private String readString() throws IOException {
+			this.token.setLength(0);
+			while (true) {
+				int c = this.read();
+				switch (c) {
+					case -1:
+						throw this.syntaxError("Unterminated string");
+					case '"':
+						return this.token.toString();
+					case '\\':
+						this.token.append(this.readEscape());
+						break;
+					default:
+						this.token.append((char) c);
+				}
+			}
+		}
+
+		/**
+		 * Reads an escape sequence whose backslash has been read.
+		 */
+		private char readEscape() throws IOException {
+			int c = this.read();
+			switch (c) {
+				case '"':
+				case '\\':
+				case '/':
+					return (char) c;
+				case 'b':
+					return '\b';
+				case 'f':
+					return '\f';
+				case 'n':
+					return '\n';
+				case 'r':
+					return '\r';
+				case 't':
+					return '\t';
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(this.read(), 16);
+						if (digit < 0) {
+							throw this.syntaxError("Invalid unicode escape");
+						}
+						code = code * 16 + digit;
+					}
+					return (char) code;
+				default:
+					throw this.syntaxError("Invalid escape");
+			}
+		}
+
+		/**
+		 * Skips a nested object or array whose opening bracket has been read,
+		 * along with everything in it.
+		 */
+		private void skipNested() throws IOException {
+			for (int depth = 1; depth > 0;) {
+				int c = this.read();
+				switch (c) {
+					case -1:
+						throw this.syntaxError("Unterminated value");
+					case '"':
+						// may contain brackets
+						this.readString();
+						break;
+					case '{':
+					case '[':
+						depth++;
+						break;
+					case '}':
+					case ']':
+						depth--;
+						break;
+					default:
+						break;
+				}
+			}
+		}
+
+		/**
+		 * Reads the rest of a literal.
+		 */
+		private void expect(String rest) throws IOException {
+			for (int i = 0; i < rest.length(); i++) {
+				if (this.read() != rest.charAt(i)) {
+					throw this.syntaxError("Invalid literal");
+				}
+			}
+		}
+
+		/**
+		 * @return the next character that is not whitespace, or -1 at the end
+		 *         of the input
+		 */
+		private int skipWhitespace() throws IOException {
+			int c;
+			do {
+				c = this.read();
+			} while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+			return c;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package controller;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 import model.Amount;
 import model.Ingredient;
@@ -32,6 +34,17 @@ abstract class ResultSetParser<T> {
 	 */
 	public abstract T parseResultSet(ResultSet resultset) throws SQLException;
 
+	/**
+	 * @param parser
+	 *            the name of a parser
+	 * @return the counter of the rows the parser has parsed, named
+	 *         <code>parser.</code> followed by the name of the parser and
+	 *         <code>.rows</code>
+	 */
+	static Metrics.Counter rowCounter(String parser) {
+		return Metrics.getInstance().counter("parser." + parser + ".rows");
+	}
+
 	/**
 	 * A perser of {@link Ingredient}s.
 	 * 
@@ -39,11 +52,40 @@ abstract class ResultSetParser<T> {
 	 */
 	static class IngredientParser extends ResultSetParser<Ingredient> {
 
+		private static final Metrics.Counter ROWS = rowCounter("ingredient");
+
+		/**
+		 * The shared instances to return in place of the parsed ones, or
+		 * <code>null</code> if every parsed ingredient is a new instance.
+		 */
+		private final IngredientIdentityMap identityMap;
+
+		/**
+		 * Creates a parser returning a new instance for each row, for
+		 * ingredients that are not kept after use.
+		 */
+		IngredientParser() {
+			this(null);
+		}
+
+		/**
+		 * Creates a parser returning the shared instance of each parsed
+		 * ingredient.
+		 * 
+		 * @param identityMap
+		 *            the shared instances of the ingredients
+		 */
+		IngredientParser(IngredientIdentityMap identityMap) {
+			this.identityMap = identityMap;
+		}
+
 		/* (non-Javadoc)
 		 * @see controller.ResultSetParser#parseResultSet(java.sql.ResultSet) */
 		@Override
 		public Ingredient parseResultSet(ResultSet resultset)
 				throws SQLException {
+			ROWS.increment();
+
 			/* Gets each field from the result set using DBConst column values */
 
 			int ID = resultset.getInt(DBConst.INGREDIENT_TABLE.ID_COLUMN);
@@ -56,7 +98,7 @@ abstract class ResultSetParser<T> {
 
 			Amount containerSize = new Amount(
 					resultset
-							.getInt(DBConst.INGREDIENT_TABLE.CONTAINER_SIZE_VALUE_COLUMN),
+							.getDouble(DBConst.INGREDIENT_TABLE.CONTAINER_SIZE_VALUE_COLUMN),
 					Unit.valueOf(resultset
 							.getString(DBConst.INGREDIENT_TABLE.CONTAINER_SIZE_UNIT_COLUMN)));
 
@@ -69,8 +111,12 @@ abstract class ResultSetParser<T> {
 			String comment = resultset
 					.getString(DBConst.INGREDIENT_TABLE.COMMENT_COLUMN);
 
-			return new Ingredient(ID, name, alcoholContent, containerSize,
-					containerPrize, store, comment);
+			Ingredient ingredient = new Ingredient(ID, name, alcoholContent,
+					containerSize, containerPrize, store, comment);
+			if (this.identityMap != null) {
+				ingredient = this.identityMap.intern(ingredient);
+			}
+			return ingredient;
 		}
 	}
 
@@ -81,27 +127,194 @@ abstract class ResultSetParser<T> {
 	 */
 	static class RecipeParser extends ResultSetParser<Recipe> {
 
+		private static final Metrics.Counter ROWS = rowCounter("recipe");
+
+		/**
+		 * Ingredients of all recipes loaded in advance, or <code>null</code>
+		 * if the ingredients are to be fetched separately for each recipe.
+		 */
+		private final Map<Integer, RecipeIngredients> preloadedIngredients;
+		/**
+		 * Loader of the ingredients of the parsed recipes once they are
+		 * needed, or <code>null</code> if they are fetched when parsing.
+		 */
+		private final RecipeIngredientsLoader lazyLoader;
+
+		/**
+		 * Creates a parser that fetches the ingredients of each parsed recipe
+		 * from the database separately.
+		 */
+		RecipeParser() {
+			this(null, null);
+		}
+
+		/**
+		 * Creates a parser that takes the ingredients of each parsed recipe
+		 * from a map loaded in advance, for instance by a
+		 * {@link RecipeIngredientsParser}.
+		 * 
+		 * @param preloadedIngredients
+		 *            the ingredients of each recipe, keyed by recipe ID
+		 */
+		RecipeParser(Map<Integer, RecipeIngredients> preloadedIngredients) {
+			this(preloadedIngredients, null);
+		}
+
+		/**
+		 * Creates a parser of recipes whose ingredients are loaded only once
+		 * they are needed. Every parsed recipe is added to the loader, which
+		 * loads the ingredients of the recipes next to each other together.
+		 * 
+		 * @param lazyLoader
+		 *            the loader of the ingredients of the parsed recipes
+		 */
+		RecipeParser(RecipeIngredientsLoader lazyLoader) {
+			this(null, lazyLoader);
+		}
+
+		private RecipeParser(
+				Map<Integer, RecipeIngredients> preloadedIngredients,
+				RecipeIngredientsLoader lazyLoader) {
+			this.preloadedIngredients = preloadedIngredients;
+			this.lazyLoader = lazyLoader;
+		}
+
 		/* (non-Javadoc)
 		 * @see controller.ResultSetParser#parseResultSet(java.sql.ResultSet) */
 		@Override
 		public Recipe parseResultSet(ResultSet resultset) throws SQLException {
+			ROWS.increment();
 
 			// get ID
 			int ID = resultset.getInt(DBConst.RECIPE_TABLE.ID_COLUMN);
 			// get name
 			String name = resultset.getString(DBConst.RECIPE_TABLE.NAME_COLUMN);
-
-			DatabaseConnector db = DatabaseConnector.getInstance();
-
-			// get ingredients
-			RecipeIngredients ingredients = db.getRecipeIngredients(ID);
-
 			// get instructions
 			String instructions = resultset
 					.getString(DBConst.RECIPE_TABLE.INSTRUCTIONS_COLUMN);
 
+			if (this.lazyLoader != null) {
+				// the ingredients are left for later
+				Recipe recipe = Recipe.newLazyInstance(ID, name,
+						this.lazyLoader, instructions);
+				this.lazyLoader.add(recipe);
+				return recipe;
+			}
+
+			// get ingredients
+			RecipeIngredients ingredients;
+			if (this.preloadedIngredients != null) {
+				ingredients = this.preloadedIngredients.get(ID);
+				if (ingredients == null) {
+					// recipes without ingredients are not in the joined view
+					ingredients = new RecipeIngredients();
+				}
+			} else {
+				ingredients = DatabaseConnector.getInstance()
+						.getRecipeIngredients(ID);
+			}
+
 			return new Recipe(ID, name, ingredients, instructions);
 		}
 
 	}
+
+	/**
+	 * A parser of rows in the view joining recipes with their ingredients (
+	 * {@link DBConst.RECIPE_INGREDIENT_JOINED_VIEW}). Each parsed row is added
+	 * to the {@link RecipeIngredients} of its recipe, so that the ingredients
+	 * of any number of recipes can be collected while streaming through a
+	 * single result set.
+	 * 
+	 * @author 217262
+	 */
+	static class RecipeIngredientsParser extends ResultSetParser<Integer> {
+
+		private static final Metrics.Counter ROWS = rowCounter("recipeIngredients");
+
+		/**
+		 * The view contains all columns of the ingredient table, so the
+		 * ingredient part of each row is parsed like any ingredient.
+		 */
+		private final IngredientParser ingredientParser;
+		private final AmountParser amountParser = new AmountParser();
+
+		/**
+		 * The ingredients parsed so far, keyed by recipe ID.
+		 */
+		private final Map<Integer, RecipeIngredients> parsedIngredients = new HashMap<Integer, RecipeIngredients>();
+
+		/**
+		 * Creates a parser putting the shared instance of each ingredient in
+		 * the parsed {@link RecipeIngredients}, so that recipes using the same
+		 * ingredient do not each hold a copy of it.
+		 * 
+		 * @param identityMap
+		 *            the shared instances of the ingredients
+		 */
+		RecipeIngredientsParser(IngredientIdentityMap identityMap) {
+			this.ingredientParser = new IngredientParser(identityMap);
+		}
+
+		/* (non-Javadoc)
+		 * @see controller.ResultSetParser#parseResultSet(java.sql.ResultSet) */
+		/**
+		 * @return the ID of the recipe the parsed row belongs to
+		 */
+		@Override
+		public Integer parseResultSet(ResultSet resultset) throws SQLException {
+			ROWS.increment();
+
+			int recipeID = resultset
+					.getInt(DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.RECIPE_ID_COLUMN);
+
+			Ingredient ingredient = this.ingredientParser
+					.parseResultSet(resultset);
+
+			Amount amount = this.amountParser.parseResultSet(resultset);
+
+			// add to the ingredients of the recipe, creating them if needed
+			RecipeIngredients ingredients = this.parsedIngredients
+					.get(recipeID);
+			if (ingredients == null) {
+				ingredients = new RecipeIngredients();
+				this.parsedIngredients.put(recipeID, ingredients);
+			}
+			ingredients.put(ingredient, amount);
+
+			return recipeID;
+		}
+
+		/**
+		 * @return the ingredients parsed so far, keyed by recipe ID. Recipes
+		 *         without any ingredients have no entry.
+		 */
+		Map<Integer, RecipeIngredients> getParsedIngredients() {
+			return this.parsedIngredients;
+		}
+	}
+
+	/**
+	 * A parser of the amount of an ingredient in a recipe, from any result set
+	 * with the amount columns of the relationship table.
+	 * 
+	 * @author 217262
+	 */
+	static class AmountParser extends ResultSetParser<Amount> {
+
+		private static final Metrics.Counter ROWS = rowCounter("amount");
+
+		/* (non-Javadoc)
+		 * @see controller.ResultSetParser#parseResultSet(java.sql.ResultSet) */
+		@Override
+		public Amount parseResultSet(ResultSet resultset) throws SQLException {
+			ROWS.increment();
+
+			return new Amount(
+					resultset
+							.getDouble(DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.AMOUNT_VALUE_COLUMN),
+					Unit.valueOf(resultset
+							.getString(DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE.AMOUNT_UNIT_COLUMN)));
+		}
+	}
 }
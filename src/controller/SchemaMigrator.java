@@ -0,0 +1,140 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import controller.DatabaseConnector.DBConst.RECIPE_INGREDIENT_RELATIONSHIP_TABLE;
+
+/**
+ * Brings the schema of the database up to date when the application starts.
+ * The version of the schema is kept in <code>PRAGMA user_version</code>, and
+ * every migration after the stored version is run in order, each in a
+ * transaction of its own that also stores its version. A database that is
+ * already up to date is left untouched. <br>
+ * Migrations that have been released must never be changed, changes to the
+ * schema are always made by adding a new migration to the end.
+ * 
+ * @author 217262
+ */
+class SchemaMigrator {
+
+	/**
+	 * The statements of each migration, the migration to version N at index
+	 * N - 1.
+	 */
+	private static final String[][] MIGRATIONS = {
+			// 1: covering index by recipe
+			{ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.CREATE_BY_RECIPE_INDEX },
+			// 2: index by ingredient
+			{ RECIPE_INGREDIENT_RELATIONSHIP_TABLE.CREATE_BY_INGREDIENT_INDEX } };
+
+	private final ConnectionPool pool;
+
+	/**
+	 * Creates a migrator for the database of the given pool.
+	 * 
+	 * @param pool
+	 *            the pool of connections to the database
+	 */
+	SchemaMigrator(ConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the version of the schema this application expects
+	 */
+	static int getLatestVersion() {
+		return MIGRATIONS.length;
+	}
+
+	/**
+	 * Runs the migrations the database has not had yet. If any were run, the
+	 * statistics used by the query planner (<code>sqlite_stat1</code>) are
+	 * refreshed afterwards so that the new indexes get used.
+	 * 
+	 * @return the number of migrations run
+	 * @throws SQLException
+	 *             if a migration failed, in which case the database is left at
+	 *             the version of the last successful migration
+	 */
+	int migrate() throws SQLException {
+		Connection conn = this.pool.acquireForWriting();
+		try {
+			int version = this.getVersion(conn);
+			if (version > getLatestVersion()) {
+				// written by a newer version of the application, leave it be
+				System.err.println("SchemaMigrator: database schema version "
+						+ version + " is newer than the supported version "
+						+ getLatestVersion());
+				return 0;
+			}
+
+			int migrated = 0;
+			for (; version < getLatestVersion(); version++) {
+				this.runMigration(conn, version + 1);
+				migrated++;
+			}
+
+			if (migrated > 0) {
+				this.execute(conn, "ANALYZE");
+			}
+			return migrated;
+		} finally {
+			this.pool.release(conn);
+		}
+	}
+
+	/**
+	 * Runs a single migration and stores its version, all in one
+	 * transaction.
+	 */
+	private void runMigration(Connection conn, int version)
+			throws SQLException {
+		conn.setAutoCommit(false);
+		try {
+			for (String sql : MIGRATIONS[version - 1]) {
+				this.execute(conn, sql);
+			}
+			// pragmas take no parameters, the version is a plain number
+			this.execute(conn, "PRAGMA user_version = " + version);
+			conn.commit();
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * @return the version of the schema stored in the database, 0 for a
+	 *         database that has never been migrated
+	 */
+	private int getVersion(Connection conn) throws SQLException {
+		Statement stat = conn.createStatement();
+		try {
+			ResultSet resultSet = stat.executeQuery("PRAGMA user_version");
+			try {
+				return resultSet.next() ? resultSet.getInt(1) : 0;
+			} finally {
+				resultSet.close();
+			}
+		} finally {
+			stat.close();
+		}
+	}
+
+	/**
+	 * Executes SQL that is only run once, so it is not worth caching.
+	 */
+	private void execute(Connection conn, String sql) throws SQLException {
+		Statement stat = conn.createStatement();
+		try {
+			stat.executeUpdate(sql);
+		} finally {
+			stat.close();
+		}
+	}
+}
@@ -28,8 +28,8 @@ public class Sipper {
 	private static AvailableItems<Ingredient> ingredientList;
 
 	/**
-	 * The main method, which calls helper methods to load data lists from the
-	 * database and build the main window and GUI.
+	 * The main method, which calls helper methods to build the main window and
+	 * GUI, and to load data lists from the database in the background.
 	 * 
 	 * @param args
 	 *            any eventual runtime arguments (not implemented for any usage)
@@ -46,6 +46,11 @@ public class Sipper {
 				createAndShowGUI();
 			}
 		});
+
+		/* Load the lists in the background, the window is filled in as they
+		 * arrive. Ingredients first, since editing recipes uses them. */
+		ingredientList.reload();
+		recipeList.reload();
 	}
 
 	/**
@@ -57,7 +62,7 @@ public class Sipper {
 	private static void initializeLists() {
 
 		/* Initialize lists as empty so that loading the lists can fail
-		 * gracefully. */
+		 * gracefully, and the window can be shown before they are loaded. */
 		recipeList = AvailableRecipes.getInstance();
 		ingredientList = AvailableIngredients.getInstance();
 
@@ -0,0 +1,170 @@
+package controller;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.RandomAccess;
+
+import model.ListedItem;
+
+/**
+ * A list of {@link ListedItem}s that is always kept in their natural order.
+ * Items are inserted at and removed from the position found by a binary
+ * search, so the list never needs to be sorted as a whole after it has been
+ * filled, and the index of every change is known when it happens. The items
+ * are also indexed by ID. <br>
+ * The list cannot be modified through the {@link java.util.List} methods,
+ * since they would allow putting items out of order.
+ * 
+ * @author 217262
+ * @param <T>
+ *            type of the items in the list
+ */
+class SortedItemList<T extends ListedItem> extends AbstractList<T> implements
+		RandomAccess {
+
+	/**
+	 * The items in sorted order. Inserting in the middle shifts the items
+	 * after the position with a single array copy.
+	 */
+	private final ArrayList<T> items;
+	/**
+	 * Index of the items by ID, kept in sync with the list.
+	 */
+	private final IntObjectMap<T> itemsByID;
+
+	/**
+	 * Creates an empty list.
+	 */
+	SortedItemList() {
+		this.items = new ArrayList<T>();
+		this.itemsByID = new IntObjectMap<T>();
+	}
+
+	/**
+	 * Replaces the contents of the list, sorting the new items once.
+	 * 
+	 * @param newItems
+	 *            the new contents of the list
+	 */
+	void setAll(Collection<? extends T> newItems) {
+		this.items.clear();
+		this.items.addAll(newItems);
+		Collections.sort(this.items);
+
+		this.itemsByID.clear();
+		for (T item : this.items) {
+			this.itemsByID.put(item.getID(), item);
+		}
+	}
+
+	/**
+	 * Inserts the item at its sorted position.
+	 * 
+	 * @param item
+	 *            the item to insert, which must not already be in the list
+	 * @return the index the item was inserted at
+	 */
+	int insert(T item) {
+		int index = Collections.binarySearch(this.items, item);
+		if (index >= 0) {
+			throw new IllegalArgumentException("Item is already in the list");
+		}
+
+		index = -index - 1;
+		this.items.add(index, item);
+		this.itemsByID.put(item.getID(), item);
+
+		return index;
+	}
+
+	/**
+	 * Removes the item at the given index.
+	 * 
+	 * @param index
+	 *            the index of the item
+	 * @return the removed item
+	 */
+	@Override
+	public T remove(int index) {
+		T item = this.items.remove(index);
+		this.itemsByID.remove(item.getID());
+		return item;
+	}
+
+	/**
+	 * @param item
+	 *            an item
+	 * @return the index of the item, or a negative value if it is not in the
+	 *         list
+	 */
+	int indexOfItem(T item) {
+		int index = Collections.binarySearch(this.items, item);
+		if (index >= 0 && this.items.get(index) == item) {
+			return index;
+		}
+		// renamed in place since it was inserted, so it is out of order
+		for (int i = 0; i < this.items.size(); i++) {
+			if (this.items.get(i) == item) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param ID
+	 *            ID number of an item
+	 * @return the index of the item with the given ID, or -1 if there is none
+	 */
+	int indexOfID(int ID) {
+		T item = this.itemsByID.get(ID);
+		if (item == null) {
+			return -1;
+		}
+		return this.indexOfItem(item);
+	}
+
+	/**
+	 * @param ID
+	 *            ID number of an item
+	 * @return the item with the given ID, or <code>null</code> if there is
+	 *         none
+	 */
+	T getByID(int ID) {
+		return this.itemsByID.get(ID);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractList#get(int) */
+	@Override
+	public T get(int index) {
+		return this.items.get(index);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#size() */
+	@Override
+	public int size() {
+		return this.items.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#contains(java.lang.Object) */
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof ListedItem) || ((ListedItem) o).getID() == null) {
+			return false;
+		}
+		// items are not equal unless identical, so look up the instance by ID
+		return this.itemsByID.get(((ListedItem) o).getID()) == o;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#toArray() */
+	@Override
+	public Object[] toArray() {
+		return this.items.toArray();
+	}
+}
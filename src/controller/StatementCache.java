@@ -0,0 +1,119 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of {@link PreparedStatement}s belonging to one pooled connection,
+ * keyed by their SQL text. Since all SQL used by {@link DatabaseConnector} is
+ * parameterized, every query and update of a given kind has the same text, and
+ * SQLite only has to parse and plan it the first time it runs on the
+ * connection. <br>
+ * Statements handed out by the cache stay open and must not be closed by the
+ * caller, only their result sets. Requesting the same SQL again resets the
+ * statement, so it must not happen while a result set of the statement is
+ * still being read. The cache is only used by the thread that has checked out
+ * its connection, so it needs no synchronization of its own.
+ * 
+ * @author 217262
+ */
+class StatementCache {
+
+	/**
+	 * Maximum number of statements kept open per connection. The SQL of the
+	 * application comes in a handful of shapes, so this is never reached in
+	 * practice but keeps unexpected ad hoc SQL from piling up.
+	 */
+	private static final int MAX_STATEMENTS = 32;
+
+	private final Connection connection;
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	/**
+	 * Counters shared by all caches of a pool.
+	 */
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
+	/**
+	 * Creates an empty cache for the given connection.
+	 * 
+	 * @param connection
+	 *            the connection the statements are prepared on
+	 * @param hits
+	 *            counter to increment when a statement is reused
+	 * @param misses
+	 *            counter to increment when a statement has to be prepared
+	 */
+	StatementCache(Connection connection, AtomicLong hits, AtomicLong misses) {
+		this.connection = connection;
+		this.hits = hits;
+		this.misses = misses;
+		// access ordered, so that the least recently used goes first
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16,
+				0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, PreparedStatement> eldest) {
+				if (this.size() > MAX_STATEMENTS) {
+					StatementCache.closeQuietly(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets a prepared statement for the given SQL, with all parameters
+	 * cleared.
+	 * 
+	 * @param sql
+	 *            the SQL of the statement
+	 * @return a statement that is ready to have its parameters set
+	 * @throws SQLException
+	 *             if the statement could not be prepared
+	 */
+	PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement statement = this.statements.get(sql);
+
+		if (statement != null) {
+			this.hits.incrementAndGet();
+			// unset parameters must be null, not left over from the last use
+			statement.clearParameters();
+		} else {
+			this.misses.incrementAndGet();
+			statement = this.connection.prepareStatement(sql);
+			this.statements.put(sql, statement);
+		}
+
+		return statement;
+	}
+
+	/**
+	 * Closes all cached statements, for instance before the connection itself
+	 * is closed.
+	 */
+	void clear() {
+		Iterator<PreparedStatement> iterator = this.statements.values()
+				.iterator();
+		while (iterator.hasNext()) {
+			closeQuietly(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// Nothing to be done, the statement is being thrown away anyway.
+			e.printStackTrace();
+		}
+	}
+}
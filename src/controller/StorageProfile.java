@@ -0,0 +1,153 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The SQLite settings applied to every connection the {@link ConnectionPool}
+ * opens. SQLite keeps most of these per connection, so they have to be set
+ * again on each one, right after it has been opened. <br>
+ * The default profile uses a write-ahead log (WAL), which lets readers go on
+ * while a write is in progress and makes a commit append to the log instead of
+ * rewriting the database through a rollback journal. Together with
+ * <code>synchronous=NORMAL</code> a commit no longer waits for the disk at all,
+ * only checkpoints do. Foreign keys are switched on, so that the cascades
+ * declared in the schema are enforced. <br>
+ * Each setting can be overridden with a system property named
+ * <code>sipper.db.</code> followed by the name of the pragma, for instance
+ * <code>-Dsipper.db.journal_mode=DELETE</code>.
+ * 
+ * @author 217262
+ */
+class StorageProfile {
+
+	/**
+	 * The prefix of the system properties overriding the settings.
+	 */
+	private static final String PROPERTY_PREFIX = "sipper.db.";
+
+	/**
+	 * The default profile.
+	 */
+	static final StorageProfile DEFAULT = new StorageProfile("WAL", "NORMAL",
+			8000, "MEMORY", true, 64L * 1024 * 1024);
+
+	private final String journalMode;
+	private final String synchronous;
+	/** Size of the page cache of each connection, in pages */
+	private final int cacheSize;
+	private final String tempStore;
+	private final boolean foreignKeys;
+	/** Maximum number of bytes of the database to access through mmap */
+	private final long mmapSize;
+
+	/**
+	 * Creates a profile with the given settings.
+	 * 
+	 * @param journalMode
+	 *            the journal mode, like <code>WAL</code> or <code>DELETE</code>
+	 * @param synchronous
+	 *            how carefully commits are synced to disk, like
+	 *            <code>NORMAL</code> or <code>FULL</code>
+	 * @param cacheSize
+	 *            size of the page cache of each connection, in pages
+	 * @param tempStore
+	 *            where temporary tables and indexes are kept, like
+	 *            <code>MEMORY</code> or <code>FILE</code>
+	 * @param foreignKeys
+	 *            whether foreign key constraints are enforced
+	 * @param mmapSize
+	 *            the number of bytes of the database to access through memory
+	 *            mapped I/O, 0 for none
+	 */
+	StorageProfile(String journalMode, String synchronous, int cacheSize,
+			String tempStore, boolean foreignKeys, long mmapSize) {
+		this.journalMode = journalMode;
+		this.synchronous = synchronous;
+		this.cacheSize = cacheSize;
+		this.tempStore = tempStore;
+		this.foreignKeys = foreignKeys;
+		this.mmapSize = mmapSize;
+	}
+
+	/**
+	 * Creates a profile from the default one, with the settings given as
+	 * system properties overridden.
+	 * 
+	 * @return the profile to use
+	 */
+	static StorageProfile fromSystemProperties() {
+		String journalMode = System.getProperty(PROPERTY_PREFIX
+				+ "journal_mode", DEFAULT.journalMode);
+		String synchronous = System.getProperty(PROPERTY_PREFIX
+				+ "synchronous", DEFAULT.synchronous);
+		int cacheSize = Integer.getInteger(PROPERTY_PREFIX + "cache_size",
+				DEFAULT.cacheSize);
+		String tempStore = System.getProperty(PROPERTY_PREFIX + "temp_store",
+				DEFAULT.tempStore);
+		boolean foreignKeys = Boolean.parseBoolean(System.getProperty(
+				PROPERTY_PREFIX + "foreign_keys",
+				String.valueOf(DEFAULT.foreignKeys)));
+		long mmapSize = Long.getLong(PROPERTY_PREFIX + "mmap_size",
+				DEFAULT.mmapSize);
+
+		return new StorageProfile(journalMode, synchronous, cacheSize,
+				tempStore, foreignKeys, mmapSize);
+	}
+
+	/**
+	 * Applies the profile to a newly opened connection.
+	 * 
+	 * @param conn
+	 *            a connection that is not in a transaction
+	 * @return the journal mode in effect afterwards, in lower case. Asking
+	 *         for WAL may not succeed, for instance on network file systems.
+	 * @throws SQLException
+	 *             if a setting could not be applied
+	 */
+	String apply(Connection conn) throws SQLException {
+		Statement stat = conn.createStatement();
+		try {
+			/* The values are checked by SQLite, which ignores values it does
+			 * not know. Pragmas take no parameters, so they are concatenated. */
+			String mode = this.query(stat, "PRAGMA journal_mode = "
+					+ this.journalMode);
+			stat.executeUpdate("PRAGMA synchronous = " + this.synchronous);
+			stat.executeUpdate("PRAGMA cache_size = " + this.cacheSize);
+			stat.executeUpdate("PRAGMA temp_store = " + this.tempStore);
+			stat.executeUpdate("PRAGMA foreign_keys = "
+					+ (this.foreignKeys ? "ON" : "OFF"));
+			// SQLite before 3.7.17 does not know this one and ignores it
+			stat.executeUpdate("PRAGMA mmap_size = " + this.mmapSize);
+
+			return mode == null ? null : mode.toLowerCase();
+		} finally {
+			stat.close();
+		}
+	}
+
+	/**
+	 * @return the first column of the first row returned by the SQL, or
+	 *         <code>null</code> if it returns no rows
+	 */
+	private String query(Statement stat, String sql) throws SQLException {
+		ResultSet resultSet = stat.executeQuery(sql);
+		try {
+			return resultSet.next() ? resultSet.getString(1) : null;
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString() */
+	@Override
+	public String toString() {
+		return "journal_mode=" + this.journalMode + ", synchronous="
+				+ this.synchronous + ", cache_size=" + this.cacheSize
+				+ ", temp_store=" + this.tempStore + ", foreign_keys="
+				+ this.foreignKeys + ", mmap_size=" + this.mmapSize;
+	}
+}
@@ -0,0 +1,393 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import model.Ingredient;
+import model.ListedItem;
+import model.Recipe;
+
+/**
+ * A write-behind queue for edits to the database. Saves and removals are
+ * queued instead of being written right away, and the queued writes are
+ * committed together in a single transaction by
+ * {@link DatabaseConnector#writeGroup(List)} (a group commit). A group is
+ * written once {@link #getMaxBatch()} writes are pending, or
+ * {@link #getMaxDelayMillis()} milliseconds after the first of them was
+ * queued, whichever comes first. A write that fails is undone on its own: its
+ * futures complete with -1, and the rest of its group is still committed.
+ * <br>
+ * Writes to the same item are coalesced while they are pending: only the last
+ * save or removal of an item is written, and the futures of all the writes it
+ * replaced complete with its outcome. Items without an ID are new, so each
+ * save of one is written on its own. <br>
+ * The groups are written on a thread of the queue, which is also where
+ * listeners are informed and the futures complete. {@link #flush()} writes
+ * everything queued so far, and is called when the application shuts down.
+ * 
+ * @author 217262
+ */
+class WriteBehindQueue {
+
+	/**
+	 * Number of pending writes that triggers a group commit by default.
+	 */
+	static final int DEFAULT_MAX_BATCH = 256;
+	/**
+	 * Time in milliseconds a write may wait for others by default.
+	 */
+	static final long DEFAULT_MAX_DELAY_MILLIS = 50;
+
+	private final DatabaseConnector database;
+	private final int maxBatch;
+	private final long maxDelayMillis;
+
+	/**
+	 * The single thread writing the groups, so that they are written in the
+	 * order they were queued.
+	 */
+	private final ScheduledExecutorService writer;
+
+	/**
+	 * The pending writes by the item they write, in the order they were last
+	 * queued, so that an item is written after the items it was saved after.
+	 * Guarded by <code>this</code>.
+	 */
+	private LinkedHashMap<Key, PendingWrite> pending;
+	/**
+	 * The scheduled commit of the pending writes, <code>null</code> if none is
+	 * scheduled. Guarded by <code>this</code>.
+	 */
+	private ScheduledFuture<?> scheduledCommit;
+
+	/**
+	 * Creates a queue writing to the given database with the default limits.
+	 * 
+	 * @param database
+	 *            the database to write to
+	 */
+	WriteBehindQueue(DatabaseConnector database) {
+		this(database, DEFAULT_MAX_BATCH, DEFAULT_MAX_DELAY_MILLIS);
+	}
+
+	/**
+	 * Creates a queue writing to the given database.
+	 * 
+	 * @param database
+	 *            the database to write to
+	 * @param maxBatch
+	 *            the number of pending writes that triggers a commit
+	 * @param maxDelayMillis
+	 *            the time in milliseconds a write may wait for others
+	 */
+	WriteBehindQueue(DatabaseConnector database, int maxBatch,
+			long maxDelayMillis) {
+		if (maxBatch < 1 || maxDelayMillis < 0) {
+			throw new IllegalArgumentException("Invalid limits: " + maxBatch
+					+ ", " + maxDelayMillis);
+		}
+		this.database = database;
+		this.maxBatch = maxBatch;
+		this.maxDelayMillis = maxDelayMillis;
+		this.pending = new LinkedHashMap<Key, PendingWrite>();
+
+		this.writer = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"Sipper write-behind");
+						// flushed by the shutdown hook, not by keeping it alive
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * @return the number of pending writes that triggers a commit
+	 */
+	int getMaxBatch() {
+		return this.maxBatch;
+	}
+
+	/**
+	 * @return the time in milliseconds a write may wait for others
+	 */
+	long getMaxDelayMillis() {
+		return this.maxDelayMillis;
+	}
+
+	/**
+	 * @return the number of writes waiting to be committed
+	 */
+	synchronized int getPendingCount() {
+		return this.pending.size();
+	}
+
+	/**
+	 * Queues saving an ingredient.
+	 * 
+	 * @param ingredient
+	 *            the ingredient to save
+	 * @return the future ID of the saved ingredient, -1 if saving failed
+	 * @see DatabaseConnector#updateIngredient(Ingredient)
+	 */
+	CompletableFuture<Integer> updateIngredient(Ingredient ingredient) {
+		return this.enqueue(new PendingWrite(
+				DatabaseChangeEvent.Kind.INGREDIENT, ingredient, false));
+	}
+
+	/**
+	 * Queues saving a recipe with its ingredients.
+	 * 
+	 * @param recipe
+	 *            the recipe to save
+	 * @return the future ID of the saved recipe, -1 if saving failed
+	 * @see DatabaseConnector#updateRecipe(Recipe)
+	 */
+	CompletableFuture<Integer> updateRecipe(Recipe recipe) {
+		return this.enqueue(new PendingWrite(DatabaseChangeEvent.Kind.RECIPE,
+				recipe, false));
+	}
+
+	/**
+	 * Queues removing an ingredient.
+	 * 
+	 * @param ingredient
+	 *            the ingredient to remove
+	 * @return the future ID of the removed ingredient, -1 if removing failed
+	 * @see DatabaseConnector#removeIngredient(Ingredient)
+	 */
+	CompletableFuture<Integer> removeIngredient(Ingredient ingredient) {
+		return this.enqueue(new PendingWrite(
+				DatabaseChangeEvent.Kind.INGREDIENT, ingredient, true));
+	}
+
+	/**
+	 * Queues removing a recipe.
+	 * 
+	 * @param recipe
+	 *            the recipe to remove
+	 * @return the future ID of the removed recipe, -1 if removing failed
+	 * @see DatabaseConnector#removeRecipe(Recipe)
+	 */
+	CompletableFuture<Integer> removeRecipe(Recipe recipe) {
+		return this.enqueue(new PendingWrite(DatabaseChangeEvent.Kind.RECIPE,
+				recipe, true));
+	}
+
+	/**
+	 * Commits all writes queued so far, without waiting for the limits.
+	 * 
+	 * @return a future completed once they have been written, and listeners
+	 *         have been informed
+	 */
+	CompletableFuture<Void> flush() {
+		final CompletableFuture<Void> flushed = new CompletableFuture<Void>();
+
+		this.writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					WriteBehindQueue.this.commit();
+				} finally {
+					flushed.complete(null);
+				}
+			}
+		});
+
+		return flushed;
+	}
+
+	/**
+	 * Commits the pending writes and stops the writer thread. Writes queued
+	 * afterwards are rejected.
+	 * 
+	 * @param timeoutMillis
+	 *            the longest time in milliseconds to wait for the commit
+	 */
+	void close(long timeoutMillis) {
+		this.flush();
+		this.writer.shutdown();
+		try {
+			this.writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Adds a write to the pending ones, replacing a pending write to the same
+	 * item, and triggers a commit if a limit has been reached.
+	 */
+	private CompletableFuture<Integer> enqueue(PendingWrite write) {
+		CompletableFuture<Integer> future = write.futures.get(0);
+
+		synchronized (this) {
+			PendingWrite replaced = this.pending.remove(write.key);
+			if (replaced != null) {
+				// the last write wins, and completes for all of them
+				write.futures.addAll(0, replaced.futures);
+			}
+			this.pending.put(write.key, write);
+
+			if (this.pending.size() >= this.maxBatch) {
+				this.scheduleCommit(0);
+			} else if (this.scheduledCommit == null) {
+				this.scheduleCommit(this.maxDelayMillis);
+			}
+		}
+
+		return future;
+	}
+
+	/**
+	 * Schedules a commit after the given delay, replacing a commit scheduled
+	 * for later. Called while holding the lock.
+	 */
+	private void scheduleCommit(long delayMillis) {
+		if (this.scheduledCommit != null) {
+			if (this.scheduledCommit.getDelay(TimeUnit.MILLISECONDS) <= delayMillis) {
+				return;
+			}
+			this.scheduledCommit.cancel(false);
+		}
+
+		this.scheduledCommit = this.writer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				WriteBehindQueue.this.commit();
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Takes all pending writes and writes them as one group. Only run on the
+	 * writer thread.
+	 */
+	private void commit() {
+		List<PendingWrite> writes;
+		synchronized (this) {
+			if (this.scheduledCommit != null) {
+				this.scheduledCommit.cancel(false);
+				this.scheduledCommit = null;
+			}
+			if (this.pending.isEmpty()) {
+				return;
+			}
+			writes = new ArrayList<PendingWrite>(this.pending.values());
+			// swap in a new map, so queueing goes on during the commit
+			this.pending = new LinkedHashMap<Key, PendingWrite>();
+		}
+
+		int[] IDs = null;
+		try {
+			IDs = this.database.writeGroup(writes);
+		} finally {
+			for (int i = 0; i < writes.size(); i++) {
+				int ID = IDs == null ? -1 : IDs[i];
+				for (CompletableFuture<Integer> future : writes.get(i).futures) {
+					future.complete(ID);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Identifies the item written by a pending write.
+	 */
+	private static class Key {
+
+		private final DatabaseChangeEvent.Kind kind;
+		/**
+		 * The ID of the item, or <code>null</code> for a new item, which is
+		 * only equal to itself.
+		 */
+		private final Integer ID;
+
+		Key(DatabaseChangeEvent.Kind kind, Integer ID) {
+			this.kind = kind;
+			this.ID = ID;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode() */
+		@Override
+		public int hashCode() {
+			return this.ID == null ? System.identityHashCode(this) : 31
+					* this.kind.hashCode() + this.ID;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object) */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key) || this.ID == null) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.kind == other.kind && this.ID.equals(other.ID);
+		}
+	}
+
+	/**
+	 * A save or removal of an item waiting to be written.
+	 */
+	static class PendingWrite {
+
+		private final DatabaseChangeEvent.Kind kind;
+		private final ListedItem item;
+		private final boolean removal;
+		private final Key key;
+		/**
+		 * The futures of this write and of the writes it replaced.
+		 */
+		private final List<CompletableFuture<Integer>> futures;
+
+		PendingWrite(DatabaseChangeEvent.Kind kind, ListedItem item,
+				boolean removal) {
+			if (removal && item.getID() == null) {
+				throw new IllegalArgumentException(
+						"Cannot remove an item without an ID");
+			}
+			this.kind = kind;
+			this.item = item;
+			this.removal = removal;
+			this.key = new Key(kind, item.getID());
+			this.futures = new ArrayList<CompletableFuture<Integer>>(1);
+			this.futures.add(new CompletableFuture<Integer>());
+		}
+
+		/**
+		 * @return the kind of the written item
+		 */
+		DatabaseChangeEvent.Kind getKind() {
+			return this.kind;
+		}
+
+		/**
+		 * @return the written item
+		 */
+		ListedItem getItem() {
+			return this.item;
+		}
+
+		/**
+		 * @return whether the item is removed rather than saved
+		 */
+		boolean isRemoval() {
+			return this.removal;
+		}
+	}
+}
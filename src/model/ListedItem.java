@@ -4,6 +4,8 @@
 package model;
 
 import java.awt.Component;
+import java.text.CollationKey;
+import java.text.Collator;
 
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.JLabel;
@@ -31,10 +33,52 @@ public abstract class ListedItem implements Comparable<ListedItem> {
 	 */
 	public abstract Integer getID();
 
+	/**
+	 * Collator defining the order of the names. Differences in case are
+	 * ignored, differences in accents are not. Collators are not thread safe,
+	 * so it is only used while synchronized on it.
+	 */
+	private static final Collator NAME_COLLATOR;
+	static {
+		NAME_COLLATOR = Collator.getInstance();
+		NAME_COLLATOR.setStrength(Collator.SECONDARY);
+	}
+
+	/**
+	 * The collation key of the name, computed when first needed. Comparing
+	 * two keys is a plain comparison of their contents, so the case folding
+	 * and locale rules are applied once per name instead of once per
+	 * comparison.
+	 */
+	private volatile CollationKey sortKey;
+
+	/**
+	 * Gets the key the item is sorted by. The key is cached, and made again
+	 * only if the name has been replaced since.
+	 * 
+	 * @return the collation key of the name of the item
+	 */
+	private CollationKey getSortKey() {
+		String name = this.getName();
+		if (name == null) {
+			name = "";
+		}
+
+		CollationKey key = this.sortKey;
+		// the key remembers its name, so a renamed item is noticed here
+		if (key == null || key.getSourceString() != name) {
+			synchronized (NAME_COLLATOR) {
+				key = NAME_COLLATOR.getCollationKey(name);
+			}
+			this.sortKey = key;
+		}
+		return key;
+	}
+
 	@Override
 	public int compareTo(ListedItem other) {
 		// compare the ingredients based on names
-		int nameCompare = this.getName().compareToIgnoreCase(other.getName());
+		int nameCompare = this.getSortKey().compareTo(other.getSortKey());
 		if (nameCompare == 0) {
 			// same names compare by difference in ID
 			return this.getID() - other.getID();
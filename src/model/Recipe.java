@@ -21,9 +21,15 @@ public class Recipe extends ListedItem {
 	 */
 	private final String name;
 	/**
-	 * The list of ingredients used in the drink.
+	 * The list of ingredients used in the drink, or <code>null</code> until
+	 * they have been loaded.
 	 */
-	private final RecipeIngredients ingredients;
+	private volatile RecipeIngredients ingredients;
+	/**
+	 * Loads the ingredients when they are first needed, or <code>null</code>
+	 * if they were given to the constructor.
+	 */
+	private final IngredientsLoader loader;
 	/**
 	 * The instructions for preparing the drink.
 	 */
@@ -43,12 +49,60 @@ public class Recipe extends ListedItem {
 	 */
 	public Recipe(Integer ID, String name, RecipeIngredients ingredients,
 			String instructions) {
+		this(ID, name, ingredients, null, instructions);
+	}
+
+	private Recipe(Integer ID, String name, RecipeIngredients ingredients,
+			IngredientsLoader loader, String instructions) {
 		this.ID = ID;
 		this.name = name;
 		this.ingredients = ingredients;
+		this.loader = loader;
 		this.instructions = instructions;
 	}
 
+	/**
+	 * Creates a recipe whose ingredients are loaded only once they are first
+	 * asked for. Lists of recipes mostly show just their names, so the
+	 * ingredients of recipes never looked at are never loaded.
+	 * 
+	 * @param ID
+	 *            unique ID of the recipe
+	 * @param name
+	 *            name of drink
+	 * @param loader
+	 *            the loader of the ingredients and amounts used in the recipe
+	 * @param instructions
+	 *            optional instructions for prepaoring the recipe
+	 * @return the recipe, without its ingredients
+	 */
+	public static Recipe newLazyInstance(Integer ID, String name,
+			IngredientsLoader loader, String instructions) {
+		return new Recipe(ID, name, null, loader, instructions);
+	}
+
+	/**
+	 * Loads the ingredients of recipes that are constructed without them.
+	 * 
+	 * @author 217262
+	 */
+	public interface IngredientsLoader {
+
+		/**
+		 * Loads the ingredients of a recipe. The loader may load the
+		 * ingredients of other recipes at the same time, and hand them over
+		 * with {@link Recipe#supplyIngredients(RecipeIngredients)}.
+		 * 
+		 * @param recipe
+		 *            the recipe whose ingredients are needed
+		 * @return the ingredients of the recipe, empty if it has none
+		 * @throws IllegalStateException
+		 *             if the ingredients could not be loaded, in which case
+		 *             the recipe tries again when next asked for them
+		 */
+		RecipeIngredients loadIngredients(Recipe recipe);
+	}
+
 	/**
 	 * @return the ID of the drink
 	 */
@@ -66,10 +120,51 @@ public class Recipe extends ListedItem {
 	}
 
 	/**
+	 * Gets the ingredients, loading them first if they have not been loaded
+	 * yet. Loading them queries the database on the calling thread, so views
+	 * have them loaded in the background before showing a recipe on the EDT.
+	 * 
 	 * @return the ingredients used in the drink
+	 * @throws IllegalStateException
+	 *             if loading the ingredients failed, in which case they are
+	 *             loaded again on the next call
+	 * @see #hasIngredientsLoaded()
 	 */
 	public RecipeIngredients getIngredients() {
-		return this.ingredients;
+		RecipeIngredients loaded = this.ingredients;
+		if (loaded == null) {
+			/* Not loaded while synchronized, since the loader may supply the
+			 * ingredients of other recipes at the same time. */
+			this.supplyIngredients(this.loader.loadIngredients(this));
+			loaded = this.ingredients;
+		}
+		return loaded;
+	}
+
+	/**
+	 * @return whether the ingredients have been loaded, so that
+	 *         {@link #getIngredients()} returns without loading them
+	 */
+	public boolean hasIngredientsLoaded() {
+		return this.ingredients != null;
+	}
+
+	/**
+	 * Hands over the ingredients of a recipe constructed without them, unless
+	 * they have been loaded already.
+	 * 
+	 * @param loadedIngredients
+	 *            the ingredients of this recipe
+	 * @return <code>true</code> if the ingredients were taken,
+	 *         <code>false</code> if the recipe already had them
+	 */
+	public synchronized boolean supplyIngredients(
+			RecipeIngredients loadedIngredients) {
+		if (this.ingredients != null) {
+			return false;
+		}
+		this.ingredients = loadedIngredients;
+		return true;
 	}
 
 	/**
@@ -85,7 +180,8 @@ public class Recipe extends ListedItem {
 	public double getPrice() {
 		double price = 0;
 
-		for (Entry<Ingredient, Amount> entry : this.ingredients.entrySet()) {
+		for (Entry<Ingredient, Amount> entry : this.getIngredients()
+				.entrySet()) {
 			// add up the price of each ingredient
 			double ingredientPrice = entry.getKey().getUnitPrice(Unit.CL)
 					* entry.getValue().toUnit(Unit.CL);
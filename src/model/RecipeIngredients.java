@@ -3,11 +3,15 @@
  */
 package model;
 
-import java.util.Iterator;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 
 import controller.AvailableItems.AvailableIngredients;
@@ -37,6 +41,20 @@ public class RecipeIngredients extends AbstractTableModel {
 	 * A list of the used ingredients and corresponding amounts.
 	 */
 	private final TreeMap<Ingredient, Amount> map;
+	/**
+	 * The keys of the map in the same order, giving the ingredient on each
+	 * row of the table without walking the map. Kept in sync with the map.
+	 */
+	private final ArrayList<Ingredient> rows;
+
+	/**
+	 * Number of batches of edits currently begun, but not ended.
+	 */
+	private int batchDepth;
+	/**
+	 * Whether the table has changed during the current batch.
+	 */
+	private boolean changedInBatch;
 
 	/**
 	 * Constructor which initializes the {@link TreeMap} that backs this
@@ -44,6 +62,7 @@ public class RecipeIngredients extends AbstractTableModel {
 	 */
 	public RecipeIngredients() {
 		this.map = new TreeMap<Ingredient, Amount>();
+		this.rows = new ArrayList<Ingredient>();
 	}
 
 	/**
@@ -57,9 +76,86 @@ public class RecipeIngredients extends AbstractTableModel {
 		if (ingredient == null || amount == null) {
 			return;
 		} else {
+			int row = Collections.binarySearch(this.rows, ingredient);
 			this.map.put(ingredient, amount);
-			// Table has most likely changed, fire event.
-			this.fireTableStructureChanged();
+
+			if (row < 0) {
+				// a new key, insert it in the same position as in the map
+				row = -row - 1;
+				this.rows.add(row, ingredient);
+				this.fireChange(row, TableModelEvent.ALL_COLUMNS,
+						TableModelEvent.INSERT);
+			} else {
+				// only the amount changed
+				this.fireChange(row, TableModelEvent.ALL_COLUMNS,
+						TableModelEvent.UPDATE);
+			}
+		}
+	}
+
+	/**
+	 * Puts all the given ingredients and amounts in the table, as a single
+	 * batch of edits.
+	 * 
+	 * @param amounts
+	 *            the ingredients and their amounts
+	 * @see #beginBatch()
+	 */
+	public void putAll(Map<? extends Ingredient, ? extends Amount> amounts) {
+		this.beginBatch();
+		try {
+			for (Entry<? extends Ingredient, ? extends Amount> entry : amounts
+					.entrySet()) {
+				this.put(entry.getKey(), entry.getValue());
+			}
+		} finally {
+			this.endBatch();
+		}
+	}
+
+	/**
+	 * Begins a batch of edits. Until the batch is ended with
+	 * {@link #endBatch()}, edits fire no events of their own. Batches may be
+	 * nested, only the outermost one fires an event.
+	 */
+	public void beginBatch() {
+		this.batchDepth++;
+	}
+
+	/**
+	 * Ends a batch of edits begun with {@link #beginBatch()}. If the table
+	 * changed during the batch, listeners are told that all of its data may
+	 * have changed, with one single event.
+	 */
+	public void endBatch() {
+		if (this.batchDepth == 0) {
+			throw new IllegalStateException("No batch of edits has begun");
+		}
+		this.batchDepth--;
+
+		if (this.batchDepth == 0 && this.changedInBatch) {
+			this.changedInBatch = false;
+			this.fireTableDataChanged();
+		}
+	}
+
+	/**
+	 * Tells the listeners about a change to a single row, or just notes the
+	 * change if a batch of edits is going on.
+	 * 
+	 * @param row
+	 *            the changed row
+	 * @param column
+	 *            the changed column, or {@link TableModelEvent#ALL_COLUMNS}
+	 * @param type
+	 *            the type of the change, as defined in {@link TableModelEvent}
+	 */
+	private void fireChange(int row, int column, int type) {
+		if (this.batchDepth > 0) {
+			this.changedInBatch = true;
+		} else {
+			this.fireTableChanged(new TableModelEvent(this, row, row, column,
+					type));
 		}
 	}
 
@@ -74,26 +170,32 @@ public class RecipeIngredients extends AbstractTableModel {
 	private Amount remove(Ingredient ingredient) {
 		// Save result
 		Amount amount = this.map.remove(ingredient);
-		// Fire event because table changes.
-		this.fireTableStructureChanged();
+		if (amount != null) {
+			int row = Collections.binarySearch(this.rows, ingredient);
+			this.rows.remove(row);
+			// Fire event because table changes.
+			this.fireChange(row, TableModelEvent.ALL_COLUMNS,
+					TableModelEvent.DELETE);
+		}
 
 		return amount;
 	}
 
 	/**
-	 * @return a set view of the mappings contained in this map
+	 * @return an unmodifiable set view of the mappings contained in this map
 	 * @see java.util.TreeMap#entrySet()
 	 */
 	public Set<Entry<Ingredient, Amount>> entrySet() {
-		return this.map.entrySet();
+		// not modifiable, since the rows would not follow the changes
+		return Collections.unmodifiableMap(this.map).entrySet();
 	}
 
 	/**
-	 * @return a set view of the keys contained in this map
+	 * @return an unmodifiable set view of the keys contained in this map
 	 * @see java.util.TreeMap#keySet()
 	 */
 	public Set<Ingredient> keySet() {
-		return this.map.keySet();
+		return Collections.unmodifiableSet(this.map.keySet());
 	}
 
 	/**
@@ -103,17 +205,9 @@ public class RecipeIngredients extends AbstractTableModel {
 	 *         {@link Amount}
 	 */
 	private Entry<Ingredient, Amount> getEntryAtRow(int rowIndex) {
-		Iterator<Entry<Ingredient, Amount>> iterator = this.map.entrySet()
-				.iterator();
-		Entry<Ingredient, Amount> entry;
-
-		// iterates all the way to the correct rows
-		do {
-			entry = iterator.next();
-			rowIndex--;
-		} while (iterator.hasNext() && rowIndex >= 0);
-
-		return entry;
+		Ingredient ingredient = this.rows.get(rowIndex);
+		return new SimpleImmutableEntry<Ingredient, Amount>(ingredient,
+				this.map.get(ingredient));
 	}
 
 	/* (non-Javadoc)
@@ -167,6 +261,7 @@ public class RecipeIngredients extends AbstractTableModel {
 				 * exit */
 				return;
 			}
+			// the row moves, put and remove fire events of their own
 			this.put(newIngredient, entry.getValue());
 			this.remove(oldIngredient);
 
@@ -174,19 +269,23 @@ public class RecipeIngredients extends AbstractTableModel {
 			// parse to double and set to amount value
 			try {
 				double doubleValue = Double.parseDouble((String) value);
-				entry.getValue().setQuantity(doubleValue);
+				if (doubleValue != entry.getValue().getQuantity()) {
+					entry.getValue().setQuantity(doubleValue);
+					this.fireChange(rowIndex, columnIndex,
+							TableModelEvent.UPDATE);
+				}
 			} catch (NumberFormatException e) {
 				// do nothing, wrong format
 			}
 
 		} else if (columnIndex == UNIT_COL && value instanceof Unit) {
 			// set to amount unit
-			entry.getValue().setUnit((Unit) value);
+			if (value != entry.getValue().getUnit()) {
+				entry.getValue().setUnit((Unit) value);
+				this.fireChange(rowIndex, columnIndex, TableModelEvent.UPDATE);
+			}
 
 		}
-
-		// fire updated if any changes were made
-		this.fireTableStructureChanged();
 	}
 
 	/* (non-Javadoc)
@@ -9,6 +9,7 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
+import java.util.function.Consumer;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
@@ -23,11 +24,16 @@ import javax.swing.JTable;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 
 import model.Recipe;
 import model.RecipeIngredients;
+import controller.AvailableItems.AvailableRecipes;
+import controller.PriceChangeEvent;
+import controller.RecipeCostEngine;
 
 /**
  * A panel for displaying and editing the properties of a {@link Recipe}.
@@ -41,8 +47,12 @@ public class RecipeEditPanel extends ItemEditPanel<Recipe> {
 	private final JTextArea instructionArea;
 	private final JTable ingredientTable;
 	private Recipe uneditedItem;
+	/** A selected recipe to show once its ingredients have been loaded */
+	private Recipe pendingItem;
 	private final IngredientButtons ingredientButtons;
 	private final JComponent[] editComponents;
+	/** Keeps the price up to date with the ingredients being displayed */
+	private final PriceUpdateListener priceUpdateListener = new PriceUpdateListener();
 
 	/**
 	 * Constructor which initializes all display components of the panel, places
@@ -145,10 +155,18 @@ public class RecipeEditPanel extends ItemEditPanel<Recipe> {
 		this.ingredientTable.setTableHeader(null);
 		// ingredientScrollPane.setBorder(BorderFactory.createEmptyBorder());
 		// System.out.println("RecipeEditPanel.RecipeEditPanel()"+ingredientScrollPane.getForeground());
+
+		// follow new prices of the ingredients of the displayed recipe
+		RecipeCostEngine.getInstance().addChangeListener(
+				this.priceUpdateListener);
 	}
 
 	@Override
 	public void setEditMode(boolean editEnabled) {
+		if (editEnabled && this.pendingItem != null) {
+			// edit the selected recipe, even if it has to be loaded right here
+			this.showRecipe(this.pendingItem);
+		}
 		super.setEditMode(editEnabled);
 		// Hide these buttons entirely
 		this.ingredientButtons.setVisible(editEnabled);
@@ -159,8 +177,43 @@ public class RecipeEditPanel extends ItemEditPanel<Recipe> {
 		return this.editComponents;
 	}
 
+	/**
+	 * Shows a recipe right away if its ingredients have been loaded.
+	 * Otherwise they are loaded in the background first, and the previous
+	 * recipe stays shown meanwhile, so that the EDT never waits for the
+	 * database. A recipe selected in between takes the place of the one
+	 * being loaded.
+	 * 
+	 * @see view.ItemEditPanel#updateDisplayedItem(java.lang.Object)
+	 */
 	@Override
 	protected void updateDisplayedItem(Recipe recipe) {
+		if (recipe.hasIngredientsLoaded()) {
+			this.showRecipe(recipe);
+			return;
+		}
+
+		this.pendingItem = recipe;
+		AvailableRecipes.getInstance().loadIngredientsAsync(recipe)
+				.thenAccept(new Consumer<Recipe>() {
+					@Override
+					public void accept(Recipe loaded) {
+						if (RecipeEditPanel.this.pendingItem == loaded) {
+							RecipeEditPanel.this.showRecipe(loaded);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Shows a recipe in the fields of the panel.
+	 * 
+	 * @param recipe
+	 *            the recipe to show, with its ingredients loaded unless they
+	 *            may be loaded on the EDT
+	 */
+	private void showRecipe(Recipe recipe) {
+		this.pendingItem = null;
 
 		// store the unedited item as a clone
 		this.uneditedItem = Recipe.newInstance(recipe);
@@ -168,15 +221,19 @@ public class RecipeEditPanel extends ItemEditPanel<Recipe> {
 		// reload all fields with data from the new recipe
 		this.nameField.setText(recipe.getName());
 
-		this.priceLabel.setText(CURRENCY_FORMAT.format(recipe.getPrice()));
+		this.priceLabel.setText(CURRENCY_FORMAT.format(RecipeCostEngine
+				.getInstance().getPrice(recipe)));
 
 		this.instructionArea.setText(recipe.getInstructions());
 
+		// stop listening to the ingredients of the previous recipe
+		this.ingredientTable.getModel().removeTableModelListener(
+				this.priceUpdateListener);
+
 		this.ingredientTable.setModel(recipe.getIngredients());
 
 		// make the price field update when changes are made
-		recipe.getIngredients()
-				.addTableModelListener(new PriceUpdateListener());
+		recipe.getIngredients().addTableModelListener(this.priceUpdateListener);
 	}
 
 	/* (non-Javadoc)
@@ -201,7 +258,15 @@ public class RecipeEditPanel extends ItemEditPanel<Recipe> {
 		return new Recipe(ID, name, ingredients, instructions);
 	}
 
-	private class PriceUpdateListener implements TableModelListener {
+	/**
+	 * Updates the price when the displayed ingredients are edited, or when the
+	 * cost engine tells that the price of the displayed recipe has changed
+	 * for another reason. Edits of the displayed ingredients also reach the
+	 * engine, and its events about them are ignored, so that each edit prices
+	 * the table once.
+	 */
+	private class PriceUpdateListener implements TableModelListener,
+			ChangeListener {
 
 		/* (non-Javadoc)
 		 * @see
@@ -209,11 +274,38 @@ public class RecipeEditPanel extends ItemEditPanel<Recipe> {
 		 * .TableModelEvent) */
 		@Override
 		public void tableChanged(TableModelEvent arg0) {
-			// Update price to match the new ingredients
-			RecipeEditPanel.this.priceLabel.setText(CURRENCY_FORMAT
-					.format(RecipeEditPanel.this.getEditedItem().getPrice()));
+			this.updatePrice();
+		}
+
+		/* (non-Javadoc)
+		 * @see
+		 * javax.swing.event.ChangeListener#stateChanged(javax.swing.event.ChangeEvent
+		 * ) */
+		@Override
+		public void stateChanged(ChangeEvent e) {
+			PriceChangeEvent change = (PriceChangeEvent) e;
+			Recipe displayed = RecipeEditPanel.this.uneditedItem;
+			if (displayed == null
+					|| change.getEditedIngredients() == RecipeEditPanel.this.ingredientTable
+							.getModel()) {
+				// edits of the table are followed through tableChanged
+				return;
+			}
+			if (change.affects(displayed.getID())) {
+				this.updatePrice();
+			}
 		}
 
+		/**
+		 * Prices the ingredients as they are in the table, edited or not.
+		 */
+		private void updatePrice() {
+			RecipeIngredients ingredients = (RecipeIngredients) RecipeEditPanel.this.ingredientTable
+					.getModel();
+			RecipeEditPanel.this.priceLabel.setText(CURRENCY_FORMAT
+					.format(RecipeCostEngine.getInstance()
+							.getPrice(ingredients)));
+		}
 	}
 
 	/**
@@ -19,6 +19,13 @@ import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableColumn;
 
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
 import model.Amount;
 import model.Ingredient;
 import model.ListedItem;
@@ -79,13 +86,41 @@ public class RecipeIngredientsTable extends JTable {
 	 * @see javax.swing.JTable#tableChanged(javax.swing.event.TableModelEvent) */
 	@Override
 	public void tableChanged(TableModelEvent e) {
+		TableChangedEvent event = new TableChangedEvent();
+		event.begin();
+
 		super.tableChanged(e);
 
-		// For some reason the cell editors need to be reassigned every time...
+		/* The columns are only created anew when the structure of the table
+		 * changes, which is also when the cell editors need to be reassigned.
+		 * Changes to rows and cells keep the columns as they are. */
+		boolean structureChanged = e == null
+				|| e.getFirstRow() == TableModelEvent.HEADER_ROW;
+		if (structureChanged) {
+			this.setUpColumns();
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.structureChanged = structureChanged;
+			if (e != null) {
+				event.type = e.getType() == TableModelEvent.INSERT ? "INSERT"
+						: e.getType() == TableModelEvent.DELETE ? "DELETE"
+								: "UPDATE";
+				event.firstRow = e.getFirstRow();
+				event.lastRow = e.getLastRow();
+			}
+			event.rowCount = this.getRowCount();
+			event.commit();
+		}
+	}
 
+	/**
+	 * Sets the widths, editors and renderers of the columns of the table.
+	 */
+	private void setUpColumns() {
 		// check that there actually are enough columns
-		if (this.getColumnCount() > RecipeIngredients.INGREDIENT_COL
-				&& this.getColumnCount() > RecipeIngredients.UNIT_COL) {
+		if (this.hasAllColumns()) {
 
 			// Get columns
 			TableColumn nameColumn = this.getColumnModel().getColumn(
@@ -109,6 +144,47 @@ public class RecipeIngredientsTable extends JTable {
 		}
 	}
 
+	/**
+	 * @return whether the columns of the table have been created
+	 */
+	private boolean hasAllColumns() {
+		return this.getColumnCount() > RecipeIngredients.INGREDIENT_COL
+				&& this.getColumnCount() > RecipeIngredients.UNIT_COL;
+	}
+
+	/**
+	 * The Java Flight Recorder event of the table handling a change of its
+	 * model, which is done on the EDT.
+	 * 
+	 * @author 217262
+	 */
+	@Name("lime.sipper.TableChanged")
+	@Label("Recipe Ingredients Table Changed")
+	@Description("The table of the ingredients of a recipe handling a change of its model on the EDT")
+	@Category({ "Sipper", "View" })
+	@StackTrace(false)
+	static class TableChangedEvent extends Event {
+
+		@Label("Type")
+		@Description("INSERT, UPDATE or DELETE")
+		String type;
+
+		@Label("First Row")
+		@Description("The first changed row, -1 for the header")
+		int firstRow;
+
+		@Label("Last Row")
+		int lastRow;
+
+		@Label("Structure Changed")
+		@Description("Whether the columns were set up again")
+		boolean structureChanged;
+
+		@Label("Row Count")
+		@Description("The number of rows after the change")
+		int rowCount;
+	}
+
 	/**
 	 * A {@link ListDataListener} that keeps track of when the
 	 * {@link AvailableIngredients} change and updates the renderer in the table
@@ -135,6 +211,15 @@ public class RecipeIngredientsTable extends JTable {
 			ingredientComboBox.setRenderer(new ListedItem.ItemCellRenderer());
 			RecipeIngredientsTable.this.ingredientEditor = new DefaultCellEditor(
 					ingredientComboBox);
+
+			// the columns stay in place, so give the new editor to them
+			if (RecipeIngredientsTable.this.hasAllColumns()) {
+				RecipeIngredientsTable.this
+						.getColumnModel()
+						.getColumn(RecipeIngredients.INGREDIENT_COL)
+						.setCellEditor(
+								RecipeIngredientsTable.this.ingredientEditor);
+			}
 		}
 
 		/* (non-Javadoc)
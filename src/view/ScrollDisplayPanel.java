@@ -11,12 +11,16 @@ import java.awt.FlowLayout;
 import java.awt.ScrollPane;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import javax.swing.JButton;
 import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JToggleButton;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 
 import model.ListedItem;
 import controller.AvailableItems;
@@ -75,8 +79,52 @@ public class ScrollDisplayPanel<T extends ListedItem> extends JPanel {
 		// this.scrollList.addListSelectionListener(this.displayPanel);
 		this.scrollList.addListSelectionListener(this.editPanel);
 
-		// Select the first item in the list
+		// Select the first item in the list, or once there are items in it
 		this.scrollList.setSelectedIndex(0);
+		availableItems.addListDataListener(new FirstItemSelector());
+	}
+
+	/**
+	 * A {@link ListDataListener} that selects the first item of the list when
+	 * items arrive in it while nothing is selected, like when the list has
+	 * been loaded in the background.
+	 * 
+	 * @author 217262
+	 */
+	private class FirstItemSelector implements ListDataListener {
+
+		private void selectFirstIfNone() {
+			if (ScrollDisplayPanel.this.scrollList.getSelectedIndex() == -1) {
+				ScrollDisplayPanel.this.scrollList.setSelectedIndex(0);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see
+		 * javax.swing.event.ListDataListener#contentsChanged(javax.swing.event
+		 * .ListDataEvent) */
+		@Override
+		public void contentsChanged(ListDataEvent e) {
+			this.selectFirstIfNone();
+		}
+
+		/* (non-Javadoc)
+		 * @see
+		 * javax.swing.event.ListDataListener#intervalAdded(javax.swing.event
+		 * .ListDataEvent) */
+		@Override
+		public void intervalAdded(ListDataEvent e) {
+			this.selectFirstIfNone();
+		}
+
+		/* (non-Javadoc)
+		 * @see
+		 * javax.swing.event.ListDataListener#intervalRemoved(javax.swing.event
+		 * .ListDataEvent) */
+		@Override
+		public void intervalRemoved(ListDataEvent e) {
+			// nothing arrived
+		}
 	}
 
 	/**
@@ -229,9 +277,23 @@ public class ScrollDisplayPanel<T extends ListedItem> extends JPanel {
 		}
 
 		private void addNewItem() {
-			int newItemID = ScrollDisplayPanel.this.availableItems
-					.addEmptyItem();
-			ScrollDisplayPanel.this.scrollList.setSelectedValueByID(newItemID);
+			this.selectWhenSaved(ScrollDisplayPanel.this.availableItems
+					.addEmptyItemAsync());
+		}
+
+		/**
+		 * Selects the saved item once it has been saved in the background.
+		 * 
+		 * @param savedID
+		 *            the future ID of the saved item, completed on the EDT
+		 */
+		private void selectWhenSaved(CompletableFuture<Integer> savedID) {
+			savedID.thenAccept(new Consumer<Integer>() {
+				@Override
+				public void accept(Integer ID) {
+					ScrollDisplayPanel.this.scrollList.setSelectedValueByID(ID);
+				}
+			});
 		}
 
 		/**
@@ -243,14 +305,21 @@ public class ScrollDisplayPanel<T extends ListedItem> extends JPanel {
 			T selectedItem = (T) ScrollDisplayPanel.this.scrollList
 					.getSelectedValue();
 
-			int valinta = JOptionPane.showConfirmDialog(null,
-					"Haluatko varmasti poistaa '" + selectedItem.getName()
-							+ "' listalta?",
+			String message = "Haluatko varmasti poistaa '"
+					+ selectedItem.getName() + "' listalta?";
+			// tell what else the removal affects, if anything
+			String warning = ScrollDisplayPanel.this.availableItems
+					.getRemovalWarning(selectedItem);
+			if (warning != null) {
+				message = warning + "\n\n" + message;
+			}
+
+			int valinta = JOptionPane.showConfirmDialog(null, message,
 					"Poista " + selectedItem.getName(),
 					JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
 
 			if (valinta == JOptionPane.OK_OPTION) {
-				ScrollDisplayPanel.this.availableItems.remove(selectedItem);
+				ScrollDisplayPanel.this.availableItems.removeAsync(selectedItem);
 			}
 			// Get out of the edit mode
 			this.setEditMode(false);
@@ -263,11 +332,9 @@ public class ScrollDisplayPanel<T extends ListedItem> extends JPanel {
 
 			T unedited = ScrollDisplayPanel.this.editPanel.getUneditedItem();
 
-			int ID = ScrollDisplayPanel.this.availableItems
-					.updateItem(unedited);
-
-			// Sets the unedited value as selected
-			ScrollDisplayPanel.this.scrollList.setSelectedValueByID(ID);
+			// Sets the unedited value as selected once saved
+			this.selectWhenSaved(ScrollDisplayPanel.this.availableItems
+					.updateItemAsync(unedited));
 
 			// Cancel exits the edit mode.
 			this.setEditMode(false);
@@ -279,10 +346,9 @@ public class ScrollDisplayPanel<T extends ListedItem> extends JPanel {
 		private void saveEdits() {
 			T edited = ScrollDisplayPanel.this.editPanel.getEditedItem();
 
-			int ID = ScrollDisplayPanel.this.availableItems.updateItem(edited);
-
-			// Sets the edited value as selected
-			ScrollDisplayPanel.this.scrollList.setSelectedValueByID(ID);
+			// Sets the edited value as selected once saved
+			this.selectWhenSaved(ScrollDisplayPanel.this.availableItems
+					.updateItemAsync(edited));
 
 			// Exits the edit mode
 			this.setEditMode(false);